@@ -0,0 +1,267 @@
+package com.sunchao.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * <p>
+ * The hooks through which the event bus reports its activity to a
+ * monitoring facility.
+ * </p>
+ * <p>
+ * This version emits JDK Flight Recorder events. Each hook first checks
+ * whether its event is enabled by a running recording; if not, the JIT
+ * removes the allocation of the event, so the cost is close to zero.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class EventBusRecorder {
+
+	/** The JFR type of the listener invocation event */
+	private static final jdk.jfr.EventType LISTENER_TYPE =
+			jdk.jfr.EventType.getEventType(ListenerInvocationEvent.class);
+
+	private EventBusRecorder()
+	{
+	}
+
+	/**
+	 * Starts recording the delivery of an event.
+	 *
+	 * @return
+	 *        the token passed to {@link #endFire}, <b>null</b> if disabled.
+	 */
+	static Object beginFire()
+	{
+		FireEvent event = new FireEvent();
+		if (!event.isEnabled())
+		{
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends recording the delivery of an event.
+	 *
+	 * @param token
+	 *            the token returned by {@link #beginFire()}.
+	 * @param eventType
+	 *            the type of the delivered event.
+	 * @param listenerCount
+	 *            the number of listeners the event was delivered to.
+	 */
+	static void endFire(Object token, EventType<?> eventType, int listenerCount)
+	{
+		if (token != null)
+		{
+			FireEvent event = (FireEvent) token;
+			event.end();
+			if (event.shouldCommit())
+			{
+				event.eventType = eventType.getName();
+				event.listenerCount = listenerCount;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the invocations of listeners are to be timed.
+	 */
+	static boolean isListenerTimingEnabled()
+	{
+		return LISTENER_TYPE.isEnabled();
+	}
+
+	/**
+	 * Wraps a listener, so that its slow invocations are recorded.
+	 *
+	 * @param listener
+	 *            the listener to be invoked.
+	 * @param listenerClass
+	 *            the class of the registered listener.
+	 * @param eventType
+	 *            the type of the delivered event.
+	 * @return
+	 *            the timed listener.
+	 */
+	static EventListener<?> timeListener(EventListener<?> listener,
+			Class<?> listenerClass, EventType<?> eventType)
+	{
+		return new TimedListener(listener, listenerClass, eventType);
+	}
+
+	/**
+	 * Records an error event.
+	 *
+	 * @param eventType
+	 *            the type of the error event.
+	 * @param operationType
+	 *            the operation type which occurs the error.
+	 * @param cause
+	 *            the error.
+	 */
+	static void recordError(EventType<?> eventType, EventType<?> operationType,
+			Throwable cause)
+	{
+		ErrorEvent event = new ErrorEvent();
+		if (event.isEnabled())
+		{
+			event.eventType = eventType.getName();
+			event.operationType = operationType == null ? null
+					: operationType.getName();
+			if (cause != null)
+			{
+				event.causeClass = cause.getClass();
+				event.message = cause.getMessage();
+			}
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records a change of a list of event listeners.
+	 *
+	 * @param action
+	 *            the kind of the change, like "ADD", "REMOVE" or "CLEAR".
+	 * @param registration
+	 *            the added or removed registration, <b>null</b> for "CLEAR".
+	 */
+	static void recordRegistryChange(String action,
+			EventListenerRegistrationData<?> registration)
+	{
+		RegistryChangeEvent event = new RegistryChangeEvent();
+		if (event.isEnabled())
+		{
+			event.action = action;
+			if (registration != null)
+			{
+				event.eventType = registration.getEventType().getName();
+				event.listenerClass = registration.getListener().getClass();
+				event.parallelSafe = registration.isParallelSafe();
+			}
+			event.commit();
+		}
+	}
+
+	/**
+	 * <p>
+	 * A listener which records its invocations taking longer than the
+	 * threshold of the recording.
+	 * </p>
+	 */
+	private static final class TimedListener implements EventListener<Event>
+	{
+		/** the listener to be invoked */
+		private final EventListener<?> listener;
+
+		/** the class of the registered listener */
+		private final Class<?> listenerClass;
+
+		/** the type of the delivered event */
+		private final EventType<?> eventType;
+
+		private TimedListener(EventListener<?> listener, Class<?> listenerClass,
+				EventType<?> eventType)
+		{
+			this.listener = listener;
+			this.listenerClass = listenerClass;
+			this.eventType = eventType;
+		}
+
+		@Override
+		public void onEvent(Event event)
+		{
+			ListenerInvocationEvent invocation = new ListenerInvocationEvent();
+			invocation.begin();
+			try
+			{
+				EventListenerList.invoke(listener, event);
+			}
+			finally
+			{
+				invocation.end();
+				if (invocation.shouldCommit())
+				{
+					invocation.eventType = eventType.getName();
+					invocation.listenerClass = listenerClass;
+					invocation.commit();
+				}
+			}
+		}
+	}
+
+	@Name("com.sunchao.event.Fire")
+	@Label("Event Fire")
+	@Description("Delivery of an event to its listeners")
+	@Category({ "Tomsun Tools", "Event Bus" })
+	@StackTrace(false)
+	static final class FireEvent extends jdk.jfr.Event
+	{
+		@Label("Event Type")
+		String eventType;
+
+		@Label("Listener Count")
+		int listenerCount;
+	}
+
+	@Name("com.sunchao.event.ListenerInvocation")
+	@Label("Slow Listener Invocation")
+	@Description("Invocation of an event listener above the threshold")
+	@Category({ "Tomsun Tools", "Event Bus" })
+	@Threshold("10 ms")
+	static final class ListenerInvocationEvent extends jdk.jfr.Event
+	{
+		@Label("Event Type")
+		String eventType;
+
+		@Label("Listener Class")
+		Class<?> listenerClass;
+	}
+
+	@Name("com.sunchao.event.Error")
+	@Label("Event Error")
+	@Description("An error event fired by an event source")
+	@Category({ "Tomsun Tools", "Event Bus" })
+	static final class ErrorEvent extends jdk.jfr.Event
+	{
+		@Label("Event Type")
+		String eventType;
+
+		@Label("Operation Type")
+		String operationType;
+
+		@Label("Cause Class")
+		Class<?> causeClass;
+
+		@Label("Message")
+		String message;
+	}
+
+	@Name("com.sunchao.event.RegistryChange")
+	@Label("Listener Registry Change")
+	@Description("A listener was added to or removed from an event listener list")
+	@Category({ "Tomsun Tools", "Event Bus" })
+	static final class RegistryChangeEvent extends jdk.jfr.Event
+	{
+		@Label("Action")
+		String action;
+
+		@Label("Event Type")
+		String eventType;
+
+		@Label("Listener Class")
+		Class<?> listenerClass;
+
+		@Label("Parallel Safe")
+		boolean parallelSafe;
+	}
+}
@@ -0,0 +1,147 @@
+package com.sunchao.complex.base64;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>
+ * The Base64 inner loops on 128 bit vectors, 4 groups at a time.
+ * </p>
+ * <p>
+ * Encoding shuffles 12 bytes into the 16 lanes of their groups, extracts the
+ * 6 bit values with shifts and masks on the 32 bit lanes, and turns them into
+ * characters by adding the offset of their range of the alphabet. Decoding
+ * checks that the 16 characters are in the alphabet, subtracts the offsets,
+ * packs the 6 bit values into 24 bits per 32 bit lane, and gathers the 12
+ * bytes with a shuffle. The whole vector is stored when the next step
+ * overwrites its last 4 bytes; the last step of a run stores its 12 bytes as
+ * two lanes, as masked stores are not compiled into vector instructions yet.
+ * The results are the same as those of the scalar loops.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class VectorCodec {
+
+	/** The number of groups of a step */
+	static final int GROUPS = 4;
+
+	/** The shape of the vectors */
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_128;
+
+	/** The lanes of the 3 bytes of each group, as 2 big-endian halves */
+	private static final VectorShuffle<Byte> ENCODE_SHUFFLE = VectorShuffle
+			.fromValues(SPECIES, 1, 0, 2, 1, 4, 3, 5, 4, 7, 6, 8, 7, 10, 9, 11, 10);
+
+	/** The lanes of the 3 decoded bytes of each group */
+	private static final VectorShuffle<Byte> DECODE_SHUFFLE = VectorShuffle
+			.fromValues(SPECIES, 2, 1, 0, 6, 5, 4, 10, 9, 8, 14, 13, 12, 0, 0, 0, 0);
+
+	/** The little-endian long view of a byte array, the order of the lanes */
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(
+			long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** The little-endian int view of a byte array */
+	private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(
+			int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private VectorCodec() {
+	}
+
+	/**
+	 * Encodes the leading groups of 3 bytes, 4 at a time.
+	 *
+	 * @return The number of groups encoded.
+	 */
+	static int encode(byte[] src, int s, byte[] dst, int d, int groups) {
+		int done = 0;
+		// 16 bytes are loaded for the 12 of a step
+		while (groups - done >= GROUPS && s + 16 <= src.length) {
+			IntVector x = ByteVector.fromArray(SPECIES, src, s)
+					.rearrange(ENCODE_SHUFFLE).reinterpretAsInts();
+			ByteVector values = x.lanewise(VectorOperators.LSHR, 10).and(0x3F)
+					.or(x.lanewise(VectorOperators.LSHL, 4).and(0x3F00))
+					.or(x.lanewise(VectorOperators.LSHR, 6).and(0x3F0000))
+					.or(x.lanewise(VectorOperators.LSHL, 8).and(0x3F000000))
+					.reinterpretAsBytes();
+			ByteVector offsets = ByteVector.broadcast(SPECIES, (byte) 'A')
+					.blend((byte) ('a' - 26), values.compare(VectorOperators.GE, (byte) 26))
+					.blend((byte) ('0' - 52), values.compare(VectorOperators.GE, (byte) 52))
+					.blend((byte) ('+' - 62), values.compare(VectorOperators.EQ, (byte) 62))
+					.blend((byte) ('/' - 63), values.compare(VectorOperators.EQ, (byte) 63));
+			values.add(offsets).intoArray(dst, d);
+			s += 12;
+			d += 16;
+			done += GROUPS;
+		}
+		return done;
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters, 4 at a time. The
+	 * decoding stops before a step holding another character.
+	 *
+	 * @return The number of groups decoded.
+	 */
+	static int decode(byte[] src, int s, byte[] dst, int d, int groups) {
+		if (!isAlphabet(ByteVector.fromArray(SPECIES, src, s))) {
+			return 0;
+		}
+		int done = 0;
+		while (true) {
+			ByteVector bytes = decode(ByteVector.fromArray(SPECIES, src, s));
+			done += GROUPS;
+			boolean next = groups - done >= GROUPS
+					&& isAlphabet(ByteVector.fromArray(SPECIES, src, s + 16));
+			if (next) {
+				bytes.intoArray(dst, d);
+			} else {
+				LONGS.set(dst, d, bytes.reinterpretAsLongs().lane(0));
+				INTS.set(dst, d + 8, bytes.reinterpretAsInts().lane(2));
+				return done;
+			}
+			s += 16;
+			d += 12;
+		}
+	}
+
+	/**
+	 * Returns whether all the characters belong to the alphabet.
+	 */
+	private static boolean isAlphabet(ByteVector chars) {
+		return chars.compare(VectorOperators.GE, (byte) 'A')
+				.and(chars.compare(VectorOperators.LE, (byte) 'Z'))
+				.or(chars.compare(VectorOperators.GE, (byte) 'a')
+						.and(chars.compare(VectorOperators.LE, (byte) 'z')))
+				.or(chars.compare(VectorOperators.GE, (byte) '0')
+						.and(chars.compare(VectorOperators.LE, (byte) '9')))
+				.or(chars.compare(VectorOperators.EQ, (byte) '+'))
+				.or(chars.compare(VectorOperators.EQ, (byte) '/'))
+				.allTrue();
+	}
+
+	/**
+	 * Decodes 16 alphabet characters into the first 12 lanes.
+	 */
+	private static ByteVector decode(ByteVector chars) {
+		ByteVector offsets = ByteVector.broadcast(SPECIES, (byte) -'A')
+				.blend((byte) (26 - 'a'), chars.compare(VectorOperators.GE, (byte) 'a'))
+				.blend((byte) (52 - '0'), chars.compare(VectorOperators.LE, (byte) '9'))
+				.blend((byte) (62 - '+'), chars.compare(VectorOperators.EQ, (byte) '+'))
+				.blend((byte) (63 - '/'), chars.compare(VectorOperators.EQ, (byte) '/'));
+		IntVector x = chars.add(offsets).reinterpretAsInts();
+		return x.lanewise(VectorOperators.LSHL, 18).and(0xFC0000)
+				.or(x.lanewise(VectorOperators.LSHL, 4).and(0x3F000))
+				.or(x.lanewise(VectorOperators.LSHR, 10).and(0xFC0))
+				.or(x.lanewise(VectorOperators.LSHR, 24))
+				.reinterpretAsBytes().rearrange(DECODE_SHUFFLE);
+	}
+}
@@ -0,0 +1,51 @@
+package com.sunchao.complex.base64;
+
+/**
+ * <p>
+ * The hooks for vector implementations of the Base64 inner loops.
+ * </p>
+ * <p>
+ * This version hands the groups to {@link VectorCodec} when the
+ * <code>jdk.incubator.vector</code> module is part of the runtime, which
+ * needs <code>--add-modules jdk.incubator.vector</code>; otherwise it does
+ * nothing, and {@link VectorCodec} is never loaded. The vectors are also
+ * disabled by the <code>com.sunchao.base64.noVector</code> system property.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class VectorKernels {
+
+	/** The flag whether the vector API is available */
+	private static final boolean ENABLED = ModuleLayer.boot()
+			.findModule("jdk.incubator.vector").isPresent()
+			&& !Boolean.getBoolean("com.sunchao.base64.noVector");
+
+	private VectorKernels() {
+	}
+
+	/**
+	 * Encodes the leading groups of 3 bytes.
+	 *
+	 * @return The number of groups encoded.
+	 */
+	static int encode(byte[] src, int s, byte[] dst, int d, int groups) {
+		if (!ENABLED || groups < VectorCodec.GROUPS) {
+			return 0;
+		}
+		return VectorCodec.encode(src, s, dst, d, groups);
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters.
+	 *
+	 * @return The number of groups decoded.
+	 */
+	static int decode(byte[] src, int s, byte[] dst, int d, int groups) {
+		if (!ENABLED || groups < VectorCodec.GROUPS) {
+			return 0;
+		}
+		return VectorCodec.decode(src, s, dst, d, groups);
+	}
+}
@@ -0,0 +1,139 @@
+package com.sunchao.event;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * <p>
+ * Factory of the event listeners invoking subscriber methods.
+ * </p>
+ * <p>
+ * This version generates a direct implementation of {@link EventListener}
+ * for each subscriber method through the {@code LambdaMetafactory}, so the
+ * invocation costs the same as a hand-written listener. If the subscriber
+ * class is not visible from this library, the listener falls back to a
+ * bound method handle.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class ListenerInvokers {
+
+	/** The type of the {@code onEvent()} method */
+	static final MethodType ON_EVENT = MethodType.methodType(void.class,
+			Event.class);
+
+	private ListenerInvokers()
+	{
+	}
+
+	/**
+	 * Creates an event listener invoking the given subscriber method.
+	 *
+	 * @param subscriber
+	 *             the subscriber object, ignored for a static method.
+	 * @param method
+	 *             the public subscriber method with a single event parameter.
+	 * @return
+	 *             the event listener.
+	 */
+	static EventListener<Event> create(Object subscriber, Method method)
+	{
+		if (isVisible(method.getDeclaringClass())
+				&& isVisible(method.getParameterTypes()[0]))
+		{
+			try
+			{
+				return createLambdaListener(subscriber, method);
+			}
+			catch (Throwable t)
+			{
+				// fall back to the method handle below
+			}
+		}
+		return createHandleListener(subscriber, method);
+	}
+
+	/**
+	 * Creates an event listener invoking the given subscriber method through
+	 * a method handle.
+	 *
+	 * @param subscriber
+	 *             the subscriber object, ignored for a static method.
+	 * @param method
+	 *             the public subscriber method with a single event parameter.
+	 * @return
+	 *             the event listener.
+	 */
+	static EventListener<Event> createHandleListener(Object subscriber,
+			Method method)
+	{
+		MethodHandle handle;
+		try
+		{
+			handle = MethodHandles.publicLookup().unreflect(method);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalArgumentException(
+					"Subscriber method is not accessible: " + method, e);
+		}
+		if (!Modifier.isStatic(method.getModifiers()))
+		{
+			handle = handle.bindTo(subscriber);
+		}
+		return new MethodHandleListener(handle.asType(ON_EVENT), method);
+	}
+
+	/**
+	 * Generates an implementation of {@link EventListener} whose
+	 * {@code onEvent()} method calls the subscriber method directly.
+	 */
+	@SuppressWarnings("unchecked")
+	private static EventListener<Event> createLambdaListener(Object subscriber,
+			Method method) throws Throwable
+	{
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle impl = lookup.unreflect(method);
+		boolean isStatic = Modifier.isStatic(method.getModifiers());
+		MethodType factoryType = isStatic
+				? MethodType.methodType(EventListener.class)
+				: MethodType.methodType(EventListener.class,
+						method.getDeclaringClass());
+		CallSite site = LambdaMetafactory.metafactory(lookup, "onEvent",
+				factoryType, ON_EVENT, impl, MethodType.methodType(void.class,
+						method.getParameterTypes()[0]));
+		return isStatic ? (EventListener<Event>) site.getTarget().invoke()
+				: (EventListener<Event>) site.getTarget().invoke(subscriber);
+	}
+
+	/**
+	 * Checks whether the generated listener, which is defined along with
+	 * this class, can link against the given public class.
+	 */
+	private static boolean isVisible(Class<?> type)
+	{
+		for (Class<?> c = type; c != null; c = c.getDeclaringClass())
+		{
+			if (!Modifier.isPublic(c.getModifiers()))
+			{
+				return false;
+			}
+		}
+		try
+		{
+			return Class.forName(type.getName(), false,
+					ListenerInvokers.class.getClassLoader()) == type;
+		}
+		catch (ClassNotFoundException e)
+		{
+			return false;
+		}
+	}
+}
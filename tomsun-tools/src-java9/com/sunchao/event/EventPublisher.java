@@ -0,0 +1,340 @@
+package com.sunchao.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A {@link Flow.Publisher} view of the events of a given type of an
+ * {@link EventSource}.
+ * </p>
+ * <p>
+ * Each subscription registers its own event listener at the event source
+ * and removes it again when it is cancelled. The events are buffered in a
+ * bounded queue per subscriber and only passed on as far as the subscriber
+ * has requested them. If the queue of a subscriber is full, the
+ * {@link OverflowStrategy} of the publisher is applied to the producer,
+ * i.e. the thread which fired the event.
+ * </p>
+ * <p>
+ * The event source has no notion of an end of its events, so subscribers
+ * are never completed; a subscription ends with its cancellation or with an
+ * error.
+ * </p>
+ * <p>
+ * The reactive streams interfaces exist only since java 9, so this class
+ * requires java 9 or later; it is only part of the multi-release layer for
+ * java 9, and not found on older runtimes.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ * @param <T>
+ *            the type of the published events
+ */
+public class EventPublisher<T extends Event> implements Flow.Publisher<T> {
+
+	/**
+	 * <p>
+	 * The strategies applied to the producer when a new event does not fit
+	 * into the buffer of a subscriber.
+	 * </p>
+	 */
+	public enum OverflowStrategy {
+		/** The producer waits until the subscriber makes room. */
+		BLOCK,
+		/** The new event is dropped for this subscriber. */
+		DROP_LATEST,
+		/** The oldest buffered event is dropped to make room. */
+		DROP_OLDEST,
+		/** The subscription is cancelled and the subscriber gets an error. */
+		ERROR
+	}
+
+	/** The source of the published events */
+	private final EventSource eventSource;
+
+	/** The type of the published events */
+	private final EventType<T> eventType;
+
+	/** The capacity of the buffer of each subscriber */
+	private final int bufferSize;
+
+	/** The strategy applied if the buffer of a subscriber is full */
+	private final OverflowStrategy overflowStrategy;
+
+	/**
+	 * Creates a new instance of {@code EventPublisher}.
+	 *
+	 * @param source
+	 *             the event source (must not be <b>null</b>).
+	 * @param eventType
+	 *             the type of the published events (must not be <b>null</b>).
+	 * @param bufferSize
+	 *             the capacity of the buffer of each subscriber (must be
+	 *             greater than 0).
+	 * @param overflowStrategy
+	 *             the strategy applied if a buffer is full (must not be
+	 *             <b>null</b>).
+	 */
+	public EventPublisher(EventSource source, EventType<T> eventType,
+			int bufferSize, OverflowStrategy overflowStrategy)
+	{
+		if (source == null)
+		{
+			throw new IllegalArgumentException("Event source must not be null!");
+		}
+		if (eventType == null)
+		{
+			throw new IllegalArgumentException("Event type must not be null!");
+		}
+		if (bufferSize < 1)
+		{
+			throw new IllegalArgumentException(
+					"Buffer size must be greater than 0: " + bufferSize);
+		}
+		if (overflowStrategy == null)
+		{
+			throw new IllegalArgumentException(
+					"Overflow strategy must not be null!");
+		}
+
+		this.eventSource = source;
+		this.eventType = eventType;
+		this.bufferSize = bufferSize;
+		this.overflowStrategy = overflowStrategy;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber)
+	{
+		if (subscriber == null)
+		{
+			throw new NullPointerException("Subscriber must not be null!");
+		}
+
+		EventSubscription subscription = new EventSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.register();
+	}
+
+	/**
+	 * <p>
+	 * The subscription of a single subscriber, which is also the event
+	 * listener registered for it.
+	 * </p>
+	 * <p>
+	 * All signals to the subscriber are emitted by a drain loop which is
+	 * entered by at most one thread at a time, either the producer or the
+	 * thread requesting more events.
+	 * </p>
+	 */
+	private class EventSubscription implements Flow.Subscription,
+			EventListener<T>
+	{
+		/** the subscriber */
+		private final Flow.Subscriber<? super T> subscriber;
+
+		/** the buffered events */
+		private final BlockingQueue<T> queue;
+
+		/** the outstanding demand of the subscriber */
+		private final AtomicLong requested = new AtomicLong();
+
+		/** the number of pending drain requests */
+		private final AtomicInteger wip = new AtomicInteger();
+
+		/** the error to be signalled to the subscriber */
+		private volatile Throwable error;
+
+		/** the flag whether the subscription is cancelled */
+		private volatile boolean cancelled;
+
+		private EventSubscription(Flow.Subscriber<? super T> subscriber)
+		{
+			this.subscriber = subscriber;
+			this.queue = new ArrayBlockingQueue<T>(bufferSize);
+		}
+
+		@Override
+		public void onEvent(T event)
+		{
+			if (cancelled)
+			{
+				return;
+			}
+			if (!queue.offer(event))
+			{
+				drain();
+				if (!queue.offer(event))
+				{
+					overflow(event);
+				}
+			}
+			drain();
+		}
+
+		@Override
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				fail(new IllegalArgumentException(
+						"Requested events must be greater than 0: " + n));
+				return;
+			}
+			long current;
+			long next;
+			do
+			{
+				current = requested.get();
+				next = current + n;
+				if (next < 0)
+				{
+					next = Long.MAX_VALUE;
+				}
+			}
+			while (!requested.compareAndSet(current, next));
+			drain();
+		}
+
+		@Override
+		public void cancel()
+		{
+			if (!cancelled)
+			{
+				cancelled = true;
+				eventSource.removeEventListener(eventType, this);
+				drain();
+			}
+		}
+
+		/**
+		 * Registers the subscription at the event source unless it was
+		 * already cancelled by the subscriber.
+		 */
+		private void register()
+		{
+			eventSource.addEventListener(eventType, this);
+			if (cancelled)
+			{
+				eventSource.removeEventListener(eventType, this);
+			}
+		}
+
+		/**
+		 * Applies the overflow strategy to an event which does not fit into
+		 * the full buffer.
+		 */
+		private void overflow(T event)
+		{
+			switch (overflowStrategy)
+			{
+			case BLOCK:
+				// a cancellation clears the queue in the drain loop, which
+				// wakes the producer up
+				try
+				{
+					if (!cancelled)
+					{
+						queue.put(event);
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				break;
+			case DROP_OLDEST:
+				while (!queue.offer(event))
+				{
+					queue.poll();
+				}
+				break;
+			case ERROR:
+				fail(new IllegalStateException(
+						"Buffer of subscriber overflowed: " + bufferSize));
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * Cancels the subscription and signals the error to the subscriber.
+		 */
+		private void fail(Throwable cause)
+		{
+			if (error == null)
+			{
+				error = cause;
+			}
+			cancel();
+		}
+
+		/**
+		 * Emits as many buffered events as requested, and the error or the
+		 * clean up after a cancellation.
+		 */
+		private void drain()
+		{
+			if (wip.getAndIncrement() != 0)
+			{
+				return;
+			}
+
+			int missed = 1;
+			for (;;)
+			{
+				if (cancelled)
+				{
+					queue.clear();
+					Throwable cause = error;
+					if (cause != null)
+					{
+						error = null;
+						subscriber.onError(cause);
+					}
+				}
+				else
+				{
+					long demand = requested.get();
+					long emitted = 0;
+					T event;
+					while (emitted != demand && !cancelled
+							&& (event = queue.poll()) != null)
+					{
+						try
+						{
+							subscriber.onNext(event);
+						}
+						catch (RuntimeException ex)
+						{
+							// the subscription is cancelled, and the next
+							// round of the loop signals the error; the
+							// producer does not see it
+							fail(ex);
+						}
+						emitted++;
+					}
+					if (emitted != 0 && demand != Long.MAX_VALUE)
+					{
+						requested.addAndGet(-emitted);
+					}
+				}
+
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+				{
+					break;
+				}
+			}
+		}
+	}
+}
@@ -1,465 +1,648 @@
-package com.sunchao.complex.base64;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
-
-/**
- * <p>
- * Base64 encoding and decoding utility methods, both for binary and textual
- * information.
- * </p>
- * 
- * @author Administrator
- *
- */
-public class Base64 {
-
-	
-	/**
-	 * <p>
-	 * Decodes the supplied string.
-	 * </p>
-	 * <p>
-	 * The supplied string is decoded into a binary sequence, and then the
-	 * sequence is encoded with the system default charset and returned.
-	 * </p>
-	 * 
-	 * @param str
-	 *            The encoded string.
-	 * @return The decoded string.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 */
-	public static String decode(String str) throws IOException{
-		byte[] bytes;
-		try {
-			bytes = str.getBytes("ASCII");
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("ASCII is not unsupported!", e);
-		}
-		byte[] decoded = decode(bytes);
-		return new String(decoded);
-	}
-	
-	/**
-	 * <p>
-	 * Decodes the supplied string.
-	 * </p>
-	 * <p>
-	 * The supplied string is decoded into a binary sequence, and then the
-	 * sequence is encoded with the supplied charset and returned.
-	 * </p>
-	 * 
-	 * @param str
-	 *            The encoded string.
-	 * @param charset
-	 *            The charset name.
-	 * @return The decoded string.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 * 
-	 */
-	public static String decode(String str, String charset) throws IOException{
-		byte[] bytes;
-		try {
-			bytes = str.getBytes("ASCII");
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("ASCII is not unsupported!", e);
-		}
-		byte[] decoded = decode(bytes);
-		try {
-			return new String(decoded, charset);
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("Unsupported charset! " + charset, e);
-		}
-	}
-	
-	/**
-	 * <p>
-	 * Decodes a binary sequence.
-	 * </p>
-	 * <p>
-	 * If data are large, i.e. if you are working with large binary files,
-	 * consider to use a {@link Base64InputStream} instead of loading too much
-	 * data in memory.
-	 * </p>
-	 * 
-	 * @param bytes
-	 *            The encoded sequence.
-	 * @return The decoded sequence.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 * 
-	 */
-	public static byte[] decode(byte[] bytes) throws IOException{
-	  ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-	  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-	  try {
-		decode(inputStream, outputStream);
-	  } catch (IOException e) {
-		throw new RuntimeException("Unexpectd I/O error", e);
-	  } finally {
-		  try {
-			inputStream.close();
-		} catch (IOException e) {
-			;
-		}
-		  try {
-			outputStream.close();
-		} catch (IOException e) {
-			;
-		}
-	  }
-	  return outputStream.toByteArray();
-	}
-	
-	/**
-	 * <p>
-	 * Decodes a binary sequence.
-	 * </p>
-	 * <p>
-	 * If data are large, i.e. if you are working with large binary files,
-	 * consider to use a {@link Base64InputStream} instead of loading too much
-	 * data in memory.
-	 * </p>
-	 * 
-	 * @param bytes
-	 *            The encoded sequence.
-	 * @return The decoded sequence.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 * 
-	 */
-	public static void decode(InputStream inputStream, OutputStream outputStream)
-			throws IOException{
-			copy(new Base64InputStream(inputStream), outputStream);
-	}
-	
-	/**
-	 * <p>
-	 * Decodes data from the given source file contents and writes them in the
-	 * given target file.
-	 * </p>
-	 * 
-	 * @param source
-	 *            The source file, from which encoded data are read.
-	 * @param target
-	 *            The target file, in which decoded data are written.
-	 * @throws IOException
-	 *             If an I/O error occurs.
-	 * 
-	 */
-	public static void decode(File source, File target) throws IOException {
-		InputStream inputStream = null;
-		OutputStream outputStream = null;
-		try {
-			inputStream = new FileInputStream(source);
-			outputStream = new FileOutputStream(target);
-			decode(inputStream, outputStream);
-		} finally {
-			if(outputStream != null){
-				try {
-					outputStream.close();
-				} catch (IOException e) {
-					;
-				}
-			}
-			if(inputStream != null){
-				try {
-					inputStream.close();
-				} catch (IOException e) {
-					;
-				}
-			}
-		}
-	}
-	
-	
-	/**
-	 * <p>
-	 * Encodes a string.
-	 * </p>
-	 * <p>
-	 * Before the string is encoded in Base64, it is converted in a binary
-	 * sequence using the system default charset.
-	 * </p>
-	 * 
-	 * @param str
-	 *            The source string.
-	 * @return The encoded string.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-     */    
-	public static String encoding(String str) 
-			throws IOException {
-		byte[] bytes = str.getBytes();
-		byte[] encoded = encode(bytes);
-		try {
-			return new String(encoded, "ASCII");
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("ASCII is not supported!", e);
-		}
-	}
-	
-	/**
-	 * <p>
-	 * Encodes a string.
-	 * </p>
-	 * <p>
-	 * Before the string is encoded in Base64, it is converted in a binary
-	 * sequence using the supplied charset.
-	 * </p>
-	 * 
-	 * @param str
-	 *            The source string
-	 * @param charset
-	 *            The charset name.
-	 * @return The encoded string.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 */            
-	public static String encode(String str, String charset) 
-			throws IOException {
-		byte[] bytes;
-		try {
-			bytes = str.getBytes(charset);
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(" Unsupported charset! " + charset, e);
-		}
-		byte[] encoded = encode(bytes);
-		try {
-			return new String(encoded, "ASCII");
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("ASCII is not supported!", e);
-		}
-	}
-	
-	/**
-	 * <p>
-	 * Encodes a binary sequence.
-	 * </p>
-	 * <p>
-	 * If data are large, i.e. if you are working with large binary files,
-	 * consider to use a {@link Base64OutputStream} instead of loading too much
-	 * data in memory.
-	 * </p>
-	 * 
-	 * @param bytes
-	 *            The source sequence.
-	 * @return The encoded sequence.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 */
-	public static byte[] encode(byte[] bytes) throws IOException{
-		return encode(bytes, 0);
-	}
-	
-	/**
-	 * <p>
-	 * Encodes a binary sequence, wrapping every encoded line every
-	 * <em>wrapAt</em> characters. A <em>wrapAt</em> value less than 1 disables
-	 * wrapping.
-	 * </p>
-	 * <p>
-	 * If data are large, i.e. if you are working with large binary files,
-	 * consider to use a {@link Base64OutputStream} instead of loading too much
-	 * data in memory.
-	 * </p>
-	 * 
-	 * @param bytes
-	 *            The source sequence.
-	 * @param wrapAt
-	 *            The max line length for encoded data. If less than 1 no wrap
-	 *            is applied.
-	 * @return The encoded sequence.
-	 * @throws RuntimeException
-	 *             If an unexpected error occurs.
-	 */            
-	public static byte[] encode(byte[] bytes, int wrapAt) 
-			 throws IOException {
-		ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		try {
-		     encode(inputStream, outputStream, wrapAt);
-		} catch (IOException e){
-			throw new RuntimeException("Unexpected I/O");
-		} finally {
-			try {
-				inputStream.close();
-			} catch (IOException e) {
-				 ;
-			}
-			try {
-				outputStream.close();
-			} catch (IOException e) {
-				  ;
-			}	
-		}
-		return outputStream.toByteArray();
-	}
-	
-	/**
-	 * <p>
-	 * Encodes data from the given input stream and writes them in the given
-	 * output stream.
-	 * </p>
-	 * <p>
-	 * The supplied input stream is read until its end is reached, but it's not
-	 * closed by this method.
-	 * </p>
-	 * <p>
-	 * The supplied output stream is nor flushed neither closed by this method.
-	 * </p>
-	 * 
-	 * @param inputStream
-	 *            The input stream.
-	 * @param outputStream
-	 *            The output stream.
-	 * @throws IOException
-	 *             If an I/O error occurs.
-	 */
-	public static void encode(InputStream inputStream, OutputStream outputStream)
-			throws IOException{
-		encode(inputStream, outputStream, 0);
-	}
-	
-	/**
-	 * <p>
-	 * Encodes data from the given input stream and writes them in the given
-	 * output stream, wrapping every encoded line every <em>wrapAt</em>
-	 * characters. A <em>wrapAt</em> value less than 1 disables wrapping.
-	 * </p>
-	 * <p>
-	 * The supplied input stream is read until its end is reached, but it's not
-	 * closed by this method.
-	 * </p>
-	 * <p>
-	 * The supplied output stream is nor flushed neither closed by this method.
-	 * </p>
-	 * 
-	 * @param inputStream
-	 *            The input stream from which clear data are read.
-	 * @param outputStream
-	 *            The output stream in which encoded data are written.
-	 * @param wrapAt
-	 *            The max line length for encoded data. If less than 1 no wrap
-	 *            is applied.
-	 * @throws IOException
-	 *             If an I/O error occurs.
-	 */
-	public static void encode(InputStream inputStream, OutputStream outputStream,
-			int wrapAt) throws IOException{
-		Base64OutputStream aux = new Base64OutputStream(outputStream);
-		copy(inputStream, aux);
-		aux.commit();
-	}
-	
-	/**
-	 * <p>
-	 * Encodes data from the given source file contents and writes them in the
-	 * given target file, wrapping every encoded line every <em>wrapAt</em>
-	 * characters. A <em>wrapAt</em> value less than 1 disables wrapping.
-	 * </p>
-	 * 
-	 * @param source
-	 *            The source file, from which decoded data are read.
-	 * @param target
-	 *            The target file, in which encoded data are written.
-	 * @param wrapAt
-	 *            The max line length for encoded data. If less than 1 no wrap
-	 *            is applied.
-	 * @throws IOException
-	 *             If an I/O error occurs.
-	 * 
-	 */
-	public static void encode(File source, File target, int wrapAt) 
-			throws IOException {
-		InputStream inputStream = null;
-		OutputStream outputStream = null;
-		try {
-			inputStream = new FileInputStream(source);
-			outputStream = new FileOutputStream(target);
-			Base64.encode(inputStream, outputStream, wrapAt);
-		} finally {
-			if(outputStream != null){
-				try {
-					outputStream.close();
-				} catch (IOException e) {
-					    ;
-				}
-			}
-			if(inputStream != null){
-				try {
-					inputStream.close();
-				} catch (IOException e) {
-					     ;
-				}
-			}
-		}
-	}
-	
-	/**
-	 * <p>
-	 * Encodes data from the given source file contents and writes them in the
-	 * given target file.
-	 * </p>
-	 * 
-	 * @param source
-	 *            The source file, from which decoded data are read.
-	 * @param target
-	 *            The target file, in which encoded data are written.
-	 * @throws IOException
-	 *             If an I/O error occurs.
-	 * 
-	 */
-	public static void encode(File source, File target) throws IOException {
-		InputStream inputStream = null;
-		OutputStream outputStream = null;
-		try {
-			inputStream = new FileInputStream(source);
-			outputStream = new FileOutputStream(target);
-			Base64.encode(inputStream, outputStream);
-		} finally {
-			if(outputStream != null){
-				try {
-					outputStream.close();
-				} catch (IOException e) {
-				       ;
-				}
-			}
-			if(inputStream != null){
-				try {
-					inputStream.close();
-				} catch (IOException e) {
-				    	;
-				}
-		    }
-		}
-	}
-	
-	/**
-	 * Copies data from a stream to another.
-	 * 
-	 * @param inputStream
-	 *            The input stream.
-	 * @param outputStream
-	 *            The output stream.
-	 * @throws IOException
-	 *             If a unexpected I/O error occurs.
-	 */
-	private static void copy(InputStream inputStream, OutputStream outputStream) 
-			throws IOException{
-		byte[] b = new byte[1024];
-		int len;
-		while ((len = inputStream.read(b)) != -1) {
-			outputStream.write(b, 0, len);
-		}
-	}
-}
+package com.sunchao.complex.base64;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Base64 encoding and decoding utility methods, both for binary and textual
+ * information.
+ * </p>
+ * 
+ * @author Administrator
+ *
+ */
+public class Base64 {
+
+	/**
+	 * The size of the copy buffer.
+	 */
+	private static final int COPY_BUFFER_SIZE = 8192;
+
+	/**
+	 * The copy buffer of the current thread, reused between the calls.
+	 */
+	private static final ThreadLocal<byte[]> copyBuffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[COPY_BUFFER_SIZE];
+		}
+	};
+	
+	/**
+	 * <p>
+	 * Decodes the supplied string.
+	 * </p>
+	 * <p>
+	 * The supplied string is decoded into a binary sequence, and then the
+	 * sequence is encoded with the system default charset and returned.
+	 * </p>
+	 * 
+	 * @param str
+	 *            The encoded string.
+	 * @return The decoded string.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 */
+	public static String decode(String str) throws IOException{
+		return new String(decodeChars(str));
+	}
+	
+	/**
+	 * <p>
+	 * Decodes the supplied string.
+	 * </p>
+	 * <p>
+	 * The supplied string is decoded into a binary sequence, and then the
+	 * sequence is encoded with the supplied charset and returned.
+	 * </p>
+	 * 
+	 * @param str
+	 *            The encoded string.
+	 * @param charset
+	 *            The charset name.
+	 * @return The decoded string.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 * 
+	 */
+	public static String decode(String str, String charset) throws IOException{
+		byte[] decoded = decodeChars(str);
+		try {
+			return new String(decoded, charset);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("Unsupported charset! " + charset, e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a binary sequence.
+	 * </p>
+	 * <p>
+	 * If data are large, i.e. if you are working with large binary files,
+	 * consider to use a {@link Base64InputStream} instead of loading too much
+	 * data in memory.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The encoded sequence.
+	 * @return The decoded sequence.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 * 
+	 */
+	public static byte[] decode(byte[] bytes) throws IOException{
+	  if (bytes == null) {
+		  throw new IllegalArgumentException("Bytes must not be null!");
+	  }
+	  try {
+		return Base64Codec.decode(bytes, 0, bytes.length);
+	  } catch (IOException e) {
+		throw new RuntimeException("Unexpectd I/O error", e);
+	  }
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a binary sequence over itself, without allocating another array.
+	 * The decoded data are written from <em>off</em>, and CR and LF characters
+	 * are skipped like in {@link #decode(byte[])}. The content of the range
+	 * past the decoded length is unspecified.
+	 * </p>
+	 * 
+	 * @param buf
+	 *            The encoded sequence, overwritten with the decoded one.
+	 * @param off
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The length of the decoded data.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 * 
+	 */
+	public static int decodeInPlace(byte[] buf, int off, int len) {
+	  try {
+		return Base64Codec.decodeInPlace(buf, off, len);
+	  } catch (IOException e) {
+		throw new RuntimeException("Unexpectd I/O error", e);
+	  }
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a binary sequence like {@link #decode(byte[])}, splitting the
+	 * work on the available processors.
+	 * </p>
+	 * <p>
+	 * Sequences of 1 MB or more are decoded in segments, as tasks of a fork join
+	 * pool; smaller ones are decoded on the calling thread.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The encoded sequence.
+	 * @return The decoded sequence.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 * 
+	 */
+	public static byte[] decodeParallel(byte[] bytes) {
+	  if (bytes == null) {
+		  throw new IllegalArgumentException("Bytes must not be null!");
+	  }
+	  try {
+		return ParallelCodec.decode(bytes, 0, bytes.length);
+	  } catch (IOException e) {
+		throw new RuntimeException("Unexpectd I/O error", e);
+	  }
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a binary sequence.
+	 * </p>
+	 * <p>
+	 * If data are large, i.e. if you are working with large binary files,
+	 * consider to use a {@link Base64InputStream} instead of loading too much
+	 * data in memory.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The encoded sequence.
+	 * @return The decoded sequence.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 * 
+	 */
+	public static void decode(InputStream inputStream, OutputStream outputStream)
+			throws IOException{
+			copy(new Base64InputStream(inputStream), outputStream);
+	}
+	
+	/**
+	 * <p>
+	 * Decodes data from the given source file contents and writes them in the
+	 * given target file.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which encoded data are read.
+	 * @param target
+	 *            The target file, in which decoded data are written.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 * 
+	 */
+	public static void decode(File source, File target) throws IOException {
+		InputStream inputStream = null;
+		OutputStream outputStream = null;
+		try {
+			inputStream = new FileInputStream(source);
+			outputStream = new FileOutputStream(target);
+			decode(inputStream, outputStream);
+		} finally {
+			if(outputStream != null){
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+					;
+				}
+			}
+			if(inputStream != null){
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * <p>
+	 * Encodes a string.
+	 * </p>
+	 * <p>
+	 * Before the string is encoded in Base64, it is converted in a binary
+	 * sequence using the system default charset.
+	 * </p>
+	 * 
+	 * @param str
+	 *            The source string.
+	 * @return The encoded string.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+     */    
+	public static String encoding(String str) 
+			throws IOException {
+		return encodeString(str.getBytes());
+	}
+	
+	/**
+	 * <p>
+	 * Encodes a string.
+	 * </p>
+	 * <p>
+	 * Before the string is encoded in Base64, it is converted in a binary
+	 * sequence using the supplied charset.
+	 * </p>
+	 * 
+	 * @param str
+	 *            The source string
+	 * @param charset
+	 *            The charset name.
+	 * @return The encoded string.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 */            
+	public static String encode(String str, String charset) 
+			throws IOException {
+		byte[] bytes;
+		try {
+			bytes = str.getBytes(charset);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(" Unsupported charset! " + charset, e);
+		}
+		return encodeString(bytes);
+	}
+	
+	/**
+	 * <p>
+	 * Encodes a binary sequence.
+	 * </p>
+	 * <p>
+	 * If data are large, i.e. if you are working with large binary files,
+	 * consider to use a {@link Base64OutputStream} instead of loading too much
+	 * data in memory.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The source sequence.
+	 * @return The encoded sequence.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 */
+	public static byte[] encode(byte[] bytes) throws IOException{
+		return encode(bytes, 0);
+	}
+	
+	/**
+	 * <p>
+	 * Encodes a binary sequence, wrapping every encoded line every
+	 * <em>wrapAt</em> characters. A <em>wrapAt</em> value less than 1 disables
+	 * wrapping.
+	 * </p>
+	 * <p>
+	 * If data are large, i.e. if you are working with large binary files,
+	 * consider to use a {@link Base64OutputStream} instead of loading too much
+	 * data in memory.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The source sequence.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The encoded sequence.
+	 * @throws RuntimeException
+	 *             If an unexpected error occurs.
+	 */            
+	public static byte[] encode(byte[] bytes, int wrapAt) 
+			 throws IOException {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Bytes must not be null!");
+		}
+		return Base64Codec.encode(bytes, 0, bytes.length, wrapAt);
+	}
+	
+	/**
+	 * <p>
+	 * Encodes a binary sequence like {@link #encode(byte[], int)}, splitting
+	 * the work on the available processors.
+	 * </p>
+	 * <p>
+	 * Sequences of 1 MB or more are encoded in segments, as tasks of a fork join
+	 * pool; smaller ones are encoded on the calling thread.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            The source sequence.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The encoded sequence.
+	 */
+	public static byte[] encodeParallel(byte[] bytes, int wrapAt) {
+		if (bytes == null) {
+			throw new IllegalArgumentException("Bytes must not be null!");
+		}
+		return ParallelCodec.encode(bytes, 0, bytes.length, wrapAt);
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given input stream and writes them in the given
+	 * output stream.
+	 * </p>
+	 * <p>
+	 * The supplied input stream is read until its end is reached, but it's not
+	 * closed by this method.
+	 * </p>
+	 * <p>
+	 * The supplied output stream is nor flushed neither closed by this method.
+	 * </p>
+	 * 
+	 * @param inputStream
+	 *            The input stream.
+	 * @param outputStream
+	 *            The output stream.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 */
+	public static void encode(InputStream inputStream, OutputStream outputStream)
+			throws IOException{
+		encode(inputStream, outputStream, 0);
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given input stream and writes them in the given
+	 * output stream, wrapping every encoded line every <em>wrapAt</em>
+	 * characters. A <em>wrapAt</em> value less than 1 disables wrapping.
+	 * </p>
+	 * <p>
+	 * The supplied input stream is read until its end is reached, but it's not
+	 * closed by this method.
+	 * </p>
+	 * <p>
+	 * The supplied output stream is nor flushed neither closed by this method.
+	 * </p>
+	 * 
+	 * @param inputStream
+	 *            The input stream from which clear data are read.
+	 * @param outputStream
+	 *            The output stream in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 */
+	public static void encode(InputStream inputStream, OutputStream outputStream,
+			int wrapAt) throws IOException{
+		Base64OutputStream aux = new Base64OutputStream(outputStream, wrapAt);
+		copy(inputStream, aux);
+		aux.commit();
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given source file contents and writes them in the
+	 * given target file, wrapping every encoded line every <em>wrapAt</em>
+	 * characters. A <em>wrapAt</em> value less than 1 disables wrapping.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 * 
+	 */
+	public static void encode(File source, File target, int wrapAt) 
+			throws IOException {
+		InputStream inputStream = null;
+		OutputStream outputStream = null;
+		try {
+			inputStream = new FileInputStream(source);
+			outputStream = new FileOutputStream(target);
+			Base64.encode(inputStream, outputStream, wrapAt);
+		} finally {
+			if(outputStream != null){
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+					    ;
+				}
+			}
+			if(inputStream != null){
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					     ;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given source file contents and writes them in the
+	 * given target file.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 * 
+	 */
+	public static void encode(File source, File target) throws IOException {
+		InputStream inputStream = null;
+		OutputStream outputStream = null;
+		try {
+			inputStream = new FileInputStream(source);
+			outputStream = new FileOutputStream(target);
+			Base64.encode(inputStream, outputStream);
+		} finally {
+			if(outputStream != null){
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+				       ;
+				}
+			}
+			if(inputStream != null){
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+				    	;
+				}
+		    }
+		}
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given source file contents and writes them in the
+	 * given target file, wrapping every encoded line every <em>wrapAt</em>
+	 * characters, like {@link #encode(File, File, int)}.
+	 * </p>
+	 * <p>
+	 * The files are memory mapped, and the source is encoded in chunks on as
+	 * many threads as processors; this is much faster for large files.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 * 
+	 */
+	public static void encodeMapped(File source, File target, int wrapAt)
+			throws IOException {
+		MappedCodec.encode(source, target, wrapAt,
+				Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * <p>
+	 * Decodes data from the given source file contents and writes them in the
+	 * given target file, like {@link #decode(File, File)}.
+	 * </p>
+	 * <p>
+	 * The files are memory mapped, and the source is decoded in chunks on as
+	 * many threads as processors; this is much faster for large files.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which encoded data are read.
+	 * @param target
+	 *            The target file, in which decoded data are written.
+	 * @throws IOException
+	 *             If an I/O error occurs, or if the encoded data are not
+	 *             valid.
+	 * 
+	 */
+	public static void decodeMapped(File source, File target) throws IOException {
+		MappedCodec.decode(source, target,
+				Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * <p>
+	 * Encodes data from the given source file contents and writes them in the
+	 * given target file, wrapping every encoded line every <em>wrapAt</em>
+	 * characters, like {@link #encode(File, File, int)}.
+	 * </p>
+	 * <p>
+	 * The source is read and the target written asynchronously, while the
+	 * previous chunk is encoded, so the disk and the processor work at the
+	 * same time.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @param listener
+	 *            The listener of the progress and the throughput, or
+	 *            <b>null</b>.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 * 
+	 */
+	public static void encodePipelined(File source, File target, int wrapAt,
+			Base64ProgressListener listener) throws IOException {
+		PipelinedCodec.encode(source, target, wrapAt, listener);
+	}
+	
+	/**
+	 * <p>
+	 * Decodes data from the given source file contents and writes them in the
+	 * given target file, like {@link #decode(File, File)}.
+	 * </p>
+	 * <p>
+	 * The source is read and the target written asynchronously, while the
+	 * previous chunk is decoded, so the disk and the processor work at the
+	 * same time.
+	 * </p>
+	 * 
+	 * @param source
+	 *            The source file, from which encoded data are read.
+	 * @param target
+	 *            The target file, in which decoded data are written.
+	 * @param listener
+	 *            The listener of the progress and the throughput, or
+	 *            <b>null</b>.
+	 * @throws IOException
+	 *             If an I/O error occurs, or if the encoded data are not
+	 *             valid.
+	 * 
+	 */
+	public static void decodePipelined(File source, File target,
+			Base64ProgressListener listener) throws IOException {
+		PipelinedCodec.decode(source, target, listener);
+	}
+	
+	/**
+	 * Decodes a string straight from its characters.
+	 * 
+	 * @param str
+	 *            The encoded string.
+	 * @return The decoded sequence.
+	 */
+	private static byte[] decodeChars(String str) {
+		try {
+			return Base64Codec.decode(str, 0, str.length());
+		} catch (IOException e) {
+			throw new RuntimeException("Unexpectd I/O error", e);
+		}
+	}
+	
+	/**
+	 * Encodes a binary sequence into a string. The encoded bytes are turned
+	 * into the string as US-ASCII, which is cheaper than going through a
+	 * character array, as the compact strings of java 9 and later compress
+	 * the characters back into bytes.
+	 * 
+	 * @param bytes
+	 *            The source sequence.
+	 * @return The encoded string.
+	 */
+	private static String encodeString(byte[] bytes) {
+		byte[] encoded = Base64Codec.encode(bytes, 0, bytes.length);
+		return new String(encoded, StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * Copies data from a stream to another.
+	 * 
+	 * @param inputStream
+	 *            The input stream.
+	 * @param outputStream
+	 *            The output stream.
+	 * @throws IOException
+	 *             If a unexpected I/O error occurs.
+	 */
+	private static void copy(InputStream inputStream, OutputStream outputStream) 
+			throws IOException{
+		byte[] b = copyBuffer.get();
+		int len;
+		while ((len = inputStream.read(b)) != -1) {
+			outputStream.write(b, 0, len);
+		}
+	}
+}
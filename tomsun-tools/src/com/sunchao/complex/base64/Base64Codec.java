@@ -0,0 +1,794 @@
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * <p>
+ * Table-driven Base64 encoding and decoding of byte arrays.
+ * </p>
+ * <p>
+ * The methods work directly on arrays, in loops over whole groups of 3 bytes
+ * and 4 characters, see {@link Base64Kernels}. The variants writing into a
+ * caller supplied buffer do not allocate anything; the exact size of the
+ * buffer is given by {@link #encodedLength(int, int)} and
+ * {@link #decodedLength(byte[], int, int)}. The encoded data and the accepted
+ * input are the same as those of {@link Base64OutputStream} and
+ * {@link Base64InputStream}. The encoded data can also be decoded in place,
+ * see {@link #decodeInPlace(byte[], int, int)}, or only validated, see
+ * {@link #isValid(byte[], int, int)}.
+ * </p>
+ * <p>
+ * The encoded data can also be written as characters, into an array or an
+ * {@link Appendable}, and decoded from a character array or a
+ * {@link CharSequence}, such as a {@link String}, without going through an
+ * intermediate byte array.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+public final class Base64Codec {
+
+	/**
+	 * The length of the source data encoded at a time into an appendable.
+	 */
+	private static final int CHUNK_SIZE = 3 * 1024;
+
+	private Base64Codec() {
+	}
+
+	/**
+	 * <p>
+	 * Returns the length of the encoded data, including the line breaks.
+	 * </p>
+	 *
+	 * @param len
+	 *            The length of the source data.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The length of the encoded data.
+	 */
+	public static int encodedLength(int len, int wrapAt) {
+		if (len < 0) {
+			throw new IllegalArgumentException("Length must not be negative: " + len);
+		}
+		long quanta = (len + 2L) / 3;
+		long length = quanta * 4;
+		if (wrapAt > 0 && quanta > 0) {
+			length += (quanta - 1) / lineQuanta(wrapAt) * 2;
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Encoded data too large: " + len);
+		}
+		return (int) length;
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into a new array, without wrapping.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @return The encoded sequence.
+	 */
+	public static byte[] encode(byte[] src, int srcOff, int len) {
+		return encode(src, srcOff, len, 0);
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into a new array, wrapping every encoded line
+	 * every <em>wrapAt</em> characters.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The encoded sequence.
+	 */
+	public static byte[] encode(byte[] src, int srcOff, int len, int wrapAt) {
+		checkRange(src, srcOff, len);
+		byte[] dst = new byte[encodedLength(len, wrapAt)];
+		encode(src, srcOff, len, dst, 0, wrapAt);
+		return dst;
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into the given buffer, without wrapping.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param dst
+	 *            The buffer of the encoded data.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @return The number of bytes written, see
+	 *         {@link #encodedLength(int, int)}.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, byte[] dst,
+			int dstOff) {
+		return encode(src, srcOff, len, dst, dstOff, 0);
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into the given buffer, wrapping every encoded
+	 * line every <em>wrapAt</em> characters. The lines are separated by a CRLF
+	 * sequence and hold a whole number of 4 character groups.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param dst
+	 *            The buffer of the encoded data.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The number of bytes written, see
+	 *         {@link #encodedLength(int, int)}.
+	 * @throws IndexOutOfBoundsException
+	 *             If the buffer is too small.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, byte[] dst,
+			int dstOff, int wrapAt) {
+		checkRange(src, srcOff, len);
+		int length = encodedLength(len, wrapAt);
+		checkRange(dst, dstOff, length);
+
+		byte[] table = Shared.encodeTable;
+		int lineMax = wrapAt > 0 ? lineQuanta(wrapAt) : Integer.MAX_VALUE;
+		int lineLeft = lineMax;
+		int s = srcOff;
+		int end = srcOff + len;
+		int d = dstOff;
+		while (end - s >= 3) {
+			if (lineLeft == 0) {
+				dst[d++] = '\r';
+				dst[d++] = '\n';
+				lineLeft = lineMax;
+			}
+			int n = Math.min(lineLeft, (end - s) / 3);
+			Base64Kernels.encode(src, s, dst, d, n);
+			s += n * 3;
+			d += n * 4;
+			lineLeft -= n;
+		}
+		if (s < end) {
+			if (lineLeft == 0) {
+				dst[d++] = '\r';
+				dst[d++] = '\n';
+			}
+			int bits = (src[s] & 0xFF) << 16;
+			if (end - s == 2) {
+				bits |= (src[s + 1] & 0xFF) << 8;
+			}
+			dst[d] = table[bits >>> 18];
+			dst[d + 1] = table[(bits >>> 12) & 0x3F];
+			dst[d + 2] = end - s == 2 ? table[(bits >>> 6) & 0x3F]
+					: (byte) Shared.pad;
+			dst[d + 3] = (byte) Shared.pad;
+			d += 4;
+		}
+		return d - dstOff;
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into the given character buffer, without
+	 * wrapping.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param dst
+	 *            The buffer of the encoded data.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @return The number of characters written, see
+	 *         {@link #encodedLength(int, int)}.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, char[] dst,
+			int dstOff) {
+		return encode(src, srcOff, len, dst, dstOff, 0);
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into the given character buffer, wrapping
+	 * every encoded line every <em>wrapAt</em> characters, like
+	 * {@link #encode(byte[], int, int, byte[], int, int)}.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param dst
+	 *            The buffer of the encoded data.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The number of characters written, see
+	 *         {@link #encodedLength(int, int)}.
+	 * @throws IndexOutOfBoundsException
+	 *             If the buffer is too small.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, char[] dst,
+			int dstOff, int wrapAt) {
+		checkRange(src, srcOff, len);
+		int length = encodedLength(len, wrapAt);
+		checkRange(dst, dstOff, length);
+
+		byte[] table = Shared.encodeTable;
+		int lineMax = wrapAt > 0 ? lineQuanta(wrapAt) : Integer.MAX_VALUE;
+		int lineLeft = lineMax;
+		int s = srcOff;
+		int end = srcOff + len;
+		int d = dstOff;
+		while (end - s >= 3) {
+			if (lineLeft == 0) {
+				dst[d++] = '\r';
+				dst[d++] = '\n';
+				lineLeft = lineMax;
+			}
+			int n = Math.min(lineLeft, (end - s) / 3);
+			Base64Kernels.encode(src, s, dst, d, n);
+			s += n * 3;
+			d += n * 4;
+			lineLeft -= n;
+		}
+		if (s < end) {
+			if (lineLeft == 0) {
+				dst[d++] = '\r';
+				dst[d++] = '\n';
+			}
+			int bits = (src[s] & 0xFF) << 16;
+			if (end - s == 2) {
+				bits |= (src[s + 1] & 0xFF) << 8;
+			}
+			dst[d] = (char) table[bits >>> 18];
+			dst[d + 1] = (char) table[(bits >>> 12) & 0x3F];
+			dst[d + 2] = end - s == 2 ? (char) table[(bits >>> 6) & 0x3F]
+					: Shared.pad;
+			dst[d + 3] = Shared.pad;
+			d += 4;
+		}
+		return d - dstOff;
+	}
+
+	/**
+	 * <p>
+	 * Appends the encoded form of a binary sequence, without wrapping.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param out
+	 *            The target of the encoded data.
+	 * @return The number of characters appended, see
+	 *         {@link #encodedLength(int, int)}.
+	 * @throws IOException
+	 *             If the target fails.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, Appendable out)
+			throws IOException {
+		return encode(src, srcOff, len, out, 0);
+	}
+
+	/**
+	 * <p>
+	 * Appends the encoded form of a binary sequence, wrapping every encoded
+	 * line every <em>wrapAt</em> characters.
+	 * </p>
+	 * <p>
+	 * The data are encoded a few kilobytes at a time into a character buffer,
+	 * which is appended in bulk to a {@link StringBuilder} or a {@link Writer};
+	 * a {@link StringBuilder} is grown once to the final length.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param out
+	 *            The target of the encoded data.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The number of characters appended, see
+	 *         {@link #encodedLength(int, int)}.
+	 * @throws IOException
+	 *             If the target fails.
+	 */
+	public static int encode(byte[] src, int srcOff, int len, Appendable out,
+			int wrapAt) throws IOException {
+		checkRange(src, srcOff, len);
+		if (out == null) {
+			throw new IllegalArgumentException("Appendable must not be null!");
+		}
+		int length = encodedLength(len, wrapAt);
+		// the chunks are whole lines
+		int unit = 3 * (wrapAt > 0 ? lineQuanta(wrapAt) : 1);
+		int chunk = Math.min(Math.max(1, CHUNK_SIZE / unit) * unit, len);
+		char[] buffer = new char[encodedLength(chunk, wrapAt) + 2];
+		CharBuffer view = null;
+		if (out instanceof StringBuilder) {
+			StringBuilder builder = (StringBuilder) out;
+			builder.ensureCapacity(builder.length() + length);
+		}
+		for (int from = 0; from < len; from += chunk) {
+			int n = Math.min(chunk, len - from);
+			int count = encode(src, srcOff + from, n, buffer, 0, wrapAt);
+			if (wrapAt > 0 && from + n < len) {
+				buffer[count++] = '\r';
+				buffer[count++] = '\n';
+			}
+			if (out instanceof StringBuilder) {
+				((StringBuilder) out).append(buffer, 0, count);
+			} else if (out instanceof Writer) {
+				((Writer) out).write(buffer, 0, count);
+			} else {
+				if (view == null) {
+					view = CharBuffer.wrap(buffer);
+				}
+				out.append(view, 0, count);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * <p>
+	 * Returns the length of the decoded data, provided the encoded data are
+	 * valid. Line breaks are not counted.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The length of the decoded data.
+	 */
+	public static int decodedLength(byte[] src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).decodedLength(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the encoded data are valid, that is whether
+	 * {@link #decode(byte[], int, int)} accepts them, without decoding them
+	 * nor allocating anything. CR and LF characters are skipped, everything
+	 * else must belong to the Base64 alphabet, the pads may only end the last
+	 * group, and the data hold whole groups; so for valid data
+	 * {@link #decodedLength(byte[], int, int)} is exact.
+	 * </p>
+	 * <p>
+	 * The runs of alphabet characters are scanned 8 at a time, with a single
+	 * sign check of their table values; the other characters go through a
+	 * small state machine.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return <b>true</b> if the encoded data are valid.
+	 */
+	public static boolean isValid(byte[] src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).isValid(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Decodes an encoded sequence into a new array.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The decoded sequence.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static byte[] decode(byte[] src, int srcOff, int len)
+			throws IOException {
+		byte[] dst = new byte[decodedLength(src, srcOff, len)];
+		int n = decode(src, srcOff, len, dst, 0);
+		if (n != dst.length) {
+			throw new IOException("Bad base64 stream!");
+		}
+		return dst;
+	}
+
+	/**
+	 * <p>
+	 * Decodes an encoded sequence into the given buffer. CR and LF characters
+	 * are skipped, everything else must belong to the Base64 alphabet; the
+	 * data end with the first padded group.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @param dst
+	 *            The buffer of the decoded data, with room for
+	 *            {@link #decodedLength(byte[], int, int)} bytes.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static int decode(byte[] src, int srcOff, int len, byte[] dst,
+			int dstOff) throws IOException {
+		checkRange(src, srcOff, len);
+		if (dst == null) {
+			throw new IllegalArgumentException("Destination must not be null!");
+		}
+		return EncodedData.of(src).decode(srcOff, srcOff + len, dst, dstOff);
+	}
+
+	/**
+	 * <p>
+	 * Decodes an encoded sequence over itself, like
+	 * {@link #decode(byte[], int, int, byte[], int)}, writing the decoded data
+	 * from the start of the range. No other buffer is needed.
+	 * </p>
+	 * <p>
+	 * This works as every group is read before its bytes are written, and 4
+	 * characters or more, with the line breaks, are read for every 3 bytes
+	 * written, so the decoded data never catch up with the characters still
+	 * to read. The content of the range past the decoded length is
+	 * unspecified; if the encoded data are not valid, so is the whole range.
+	 * </p>
+	 *
+	 * @param buf
+	 *            The encoded sequence, and the buffer of the decoded data.
+	 * @param off
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The length of the decoded data, starting at <em>off</em>.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static int decodeInPlace(byte[] buf, int off, int len)
+			throws IOException {
+		return decode(buf, off, len, buf, off);
+	}
+
+	/**
+	 * <p>
+	 * Returns the length of the decoded data, provided the encoded data are
+	 * valid, like {@link #decodedLength(byte[], int, int)}.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character array.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The length of the decoded data.
+	 */
+	public static int decodedLength(char[] src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).decodedLength(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the encoded data are valid, that is whether
+	 * {@link #decode(char[], int, int)} accepts them, without decoding them.
+	 * Characters above 255 are not valid.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character array.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return <b>true</b> if the encoded data are valid.
+	 */
+	public static boolean isValid(char[] src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).isValid(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Decodes encoded character array data into a new array.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character array.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The decoded sequence.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static byte[] decode(char[] src, int srcOff, int len)
+			throws IOException {
+		byte[] dst = new byte[decodedLength(src, srcOff, len)];
+		int n = decode(src, srcOff, len, dst, 0);
+		if (n != dst.length) {
+			throw new IOException("Bad base64 stream!");
+		}
+		return dst;
+	}
+
+	/**
+	 * <p>
+	 * Decodes encoded character array data into the given buffer, like
+	 * {@link #decode(byte[], int, int, byte[], int)}. Characters above 255
+	 * are not valid.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character array.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @param dst
+	 *            The buffer of the decoded data, with room for
+	 *            {@link #decodedLength(char[], int, int)} bytes.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static int decode(char[] src, int srcOff, int len, byte[] dst,
+			int dstOff) throws IOException {
+		checkRange(src, srcOff, len);
+		if (dst == null) {
+			throw new IllegalArgumentException("Destination must not be null!");
+		}
+		return EncodedData.of(src).decode(srcOff, srcOff + len, dst, dstOff);
+	}
+
+	/**
+	 * <p>
+	 * Returns the length of the decoded data, provided the encoded data are
+	 * valid, like {@link #decodedLength(byte[], int, int)}.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The length of the decoded data.
+	 */
+	public static int decodedLength(CharSequence src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).decodedLength(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the encoded data are valid, that is whether
+	 * {@link #decode(CharSequence, int, int)} accepts them, without decoding them.
+	 * Characters above 255 are not valid.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return <b>true</b> if the encoded data are valid.
+	 */
+	public static boolean isValid(CharSequence src, int srcOff, int len) {
+		checkRange(src, srcOff, len);
+		return EncodedData.of(src).isValid(srcOff, srcOff + len);
+	}
+
+	/**
+	 * <p>
+	 * Decodes encoded character sequence data into a new array.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The decoded sequence.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static byte[] decode(CharSequence src, int srcOff, int len)
+			throws IOException {
+		byte[] dst = new byte[decodedLength(src, srcOff, len)];
+		int n = decode(src, srcOff, len, dst, 0);
+		if (n != dst.length) {
+			throw new IOException("Bad base64 stream!");
+		}
+		return dst;
+	}
+
+	/**
+	 * <p>
+	 * Decodes encoded character sequence data into the given buffer, like
+	 * {@link #decode(byte[], int, int, byte[], int)}. Characters above 255
+	 * are not valid.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded character sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @param dst
+	 *            The buffer of the decoded data, with room for
+	 *            {@link #decodedLength(CharSequence, int, int)} bytes.
+	 * @param dstOff
+	 *            The offset in the buffer.
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	public static int decode(CharSequence src, int srcOff, int len, byte[] dst,
+			int dstOff) throws IOException {
+		checkRange(src, srcOff, len);
+		if (dst == null) {
+			throw new IllegalArgumentException("Destination must not be null!");
+		}
+		return EncodedData.of(src).decode(srcOff, srcOff + len, dst, dstOff);
+	}
+
+	/**
+	 * <p>
+	 * Returns the length of the decoded data of the remaining bytes of a
+	 * buffer, provided they are valid, like
+	 * {@link #decodedLength(byte[], int, int)}. The position of the buffer is
+	 * not changed.
+	 * </p>
+	 *
+	 * @param src
+	 *            The buffer of the encoded data.
+	 * @return The length of the decoded data.
+	 */
+	public static int decodedLength(ByteBuffer src) {
+		if (src == null) {
+			throw new IllegalArgumentException("Buffer must not be null!");
+		}
+		if (src.hasArray()) {
+			return decodedLength(src.array(), src.arrayOffset() + src.position(),
+					src.remaining());
+		}
+		return EncodedData.of(src).decodedLength(src.position(), src.limit());
+	}
+
+	/**
+	 * <p>
+	 * Returns whether the remaining bytes of a buffer are valid encoded data,
+	 * like {@link #isValid(byte[], int, int)}. The position of the buffer is
+	 * not changed.
+	 * </p>
+	 *
+	 * @param src
+	 *            The buffer of the encoded data.
+	 * @return <b>true</b> if the encoded data are valid.
+	 */
+	public static boolean isValid(ByteBuffer src) {
+		if (src == null) {
+			throw new IllegalArgumentException("Buffer must not be null!");
+		}
+		if (src.hasArray()) {
+			return isValid(src.array(), src.arrayOffset() + src.position(),
+					src.remaining());
+		}
+		return EncodedData.of(src).isValid(src.position(), src.limit());
+	}
+
+	/**
+	 * Returns the number of 4 character groups of a line.
+	 */
+	static int lineQuanta(int wrapAt) {
+		return Math.max(1, wrapAt / 4);
+	}
+
+	/**
+	 * Checks that the range lies within the array.
+	 */
+	static void checkRange(byte[] array, int off, int len) {
+		if (array == null) {
+			throw new IllegalArgumentException("Array must not be null!");
+		}
+		if (off < 0 || len < 0 || len > array.length - off) {
+			throw new IndexOutOfBoundsException("Range [" + off + ", " + off
+					+ " + " + len + ") out of bounds for length " + array.length);
+		}
+	}
+
+	/**
+	 * Checks that the range lies within the array.
+	 */
+	static void checkRange(char[] array, int off, int len) {
+		if (array == null) {
+			throw new IllegalArgumentException("Array must not be null!");
+		}
+		if (off < 0 || len < 0 || len > array.length - off) {
+			throw new IndexOutOfBoundsException("Range [" + off + ", " + off
+					+ " + " + len + ") out of bounds for length " + array.length);
+		}
+	}
+
+	/**
+	 * Checks that the range lies within the sequence.
+	 */
+	static void checkRange(CharSequence sequence, int off, int len) {
+		if (sequence == null) {
+			throw new IllegalArgumentException("Sequence must not be null!");
+		}
+		if (off < 0 || len < 0 || len > sequence.length() - off) {
+			throw new IndexOutOfBoundsException("Range [" + off + ", " + off
+					+ " + " + len + ") out of bounds for length "
+					+ sequence.length());
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.sunchao.complex.base64;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CoderResult;
+
+/**
+ * <p>
+ * An incremental Base64 decoder over byte buffers.
+ * </p>
+ * <p>
+ * The decoder works like a {@link java.nio.charset.CharsetDecoder}: each call
+ * of {@link #decode(ByteBuffer, ByteBuffer, boolean)} decodes as much of the
+ * input as fits into the output, and reports
+ * {@link CoderResult#UNDERFLOW} when the input is consumed,
+ * {@link CoderResult#OVERFLOW} when the output is full, or a malformed input
+ * result. The 1 to 3 characters of an incomplete group are kept by the
+ * decoder until the next call.
+ * </p>
+ * <p>
+ * The accepted input is the same as that of {@link Base64InputStream}: CR and
+ * LF characters are skipped, everything else must belong to the Base64
+ * alphabet, and nothing may follow a padded group. On a malformed character
+ * the input buffer is positioned on it, and the result has the length 1. At
+ * the end of the input an incomplete group is malformed; its characters are
+ * already consumed, and the result has their number as length.
+ * </p>
+ * <p>
+ * Heap buffers are decoded directly between their backing arrays, other
+ * buffers through their get and put methods; nothing is copied into an
+ * intermediate buffer.
+ * </p>
+ * <p>
+ * A decoder is not thread-safe; it can be reused after {@link #reset()}.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+public class Base64Decoder {
+
+	/**
+	 * The bits of the incomplete group.
+	 */
+	private int quad;
+
+	/**
+	 * The state of the incomplete group, see {@link Shared#step(int, int)}.
+	 */
+	private int state;
+
+	/**
+	 * <p>
+	 * Decodes as many characters as possible from the input buffer into the
+	 * output buffer. The positions of both buffers are advanced.
+	 * </p>
+	 *
+	 * @param in
+	 *            The input buffer.
+	 * @param out
+	 *            The output buffer.
+	 * @param endOfInput
+	 *            <b>true</b> if no more input follows, so an incomplete group
+	 *            is malformed.
+	 * @return {@link CoderResult#UNDERFLOW} if the input is consumed,
+	 *         {@link CoderResult#OVERFLOW} if the output buffer is full, or a
+	 *         malformed input result.
+	 */
+	public CoderResult decode(ByteBuffer in, ByteBuffer out, boolean endOfInput) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Buffers must not be null!");
+		}
+		int[] table = Shared.decodeTable;
+		while (in.hasRemaining()) {
+			if (state == 0 && in.remaining() >= 4 && out.remaining() >= 3) {
+				groups(in, out);
+				if (!in.hasRemaining()) {
+					break;
+				}
+			}
+			int v = table[in.get(in.position()) & 0xFF];
+			int next = Shared.step(state, v);
+			if (next < 0) {
+				return CoderResult.malformedForLength(1);
+			}
+			boolean complete = v != Shared.NEWLINE && (next & 3) == 0;
+			int n = Shared.groupLength(Shared.pads(next));
+			// the last character of a group is only consumed with room for its
+			// bytes
+			if (complete && out.remaining() < n) {
+				return CoderResult.OVERFLOW;
+			}
+			Shared.position(in, in.position() + 1);
+			if (v >= 0) {
+				quad |= v << (6 * (3 - (state & 3)));
+			}
+			state = next;
+			if (complete) {
+				out.put((byte) (quad >> 16));
+				if (n > 1) {
+					out.put((byte) (quad >> 8));
+				}
+				if (n > 2) {
+					out.put((byte) quad);
+				}
+				quad = 0;
+			}
+		}
+		if (endOfInput && (state & 3) != 0) {
+			return CoderResult.malformedForLength(state & 3);
+		}
+		return CoderResult.UNDERFLOW;
+	}
+
+	/**
+	 * <p>
+	 * Resets the decoder, discarding an incomplete group.
+	 * </p>
+	 */
+	public void reset() {
+		quad = 0;
+		state = 0;
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters, as many as fit into
+	 * the output buffer.
+	 */
+	private static void groups(ByteBuffer in, ByteBuffer out) {
+		int n = Math.min(in.remaining() / 4, out.remaining() / 3);
+		if (in.hasArray() && out.hasArray()) {
+			byte[] src = in.array();
+			byte[] dst = out.array();
+			int groups = Base64Kernels.decode(src, in.arrayOffset()
+					+ in.position(), dst, out.arrayOffset() + out.position(), n);
+			Shared.position(in, in.position() + groups * 4);
+			Shared.position(out, out.position() + groups * 3);
+			return;
+		}
+		int[] table = Shared.decodeTable;
+		int s = in.position();
+		for (int i = 0; i < n; i++) {
+			int bits = table[in.get(s) & 0xFF] << 18
+					| table[in.get(s + 1) & 0xFF] << 12
+					| table[in.get(s + 2) & 0xFF] << 6
+					| table[in.get(s + 3) & 0xFF];
+			if (bits < 0) {
+				break;
+			}
+			out.put((byte) (bits >> 16));
+			out.put((byte) (bits >> 8));
+			out.put((byte) bits);
+			s += 4;
+		}
+		Shared.position(in, s);
+	}
+}
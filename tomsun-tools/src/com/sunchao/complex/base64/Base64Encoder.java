@@ -0,0 +1,216 @@
+package com.sunchao.complex.base64;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CoderResult;
+
+/**
+ * <p>
+ * An incremental Base64 encoder over byte buffers.
+ * </p>
+ * <p>
+ * The encoder works like a {@link java.nio.charset.CharsetEncoder}: each call
+ * of {@link #encode(ByteBuffer, ByteBuffer, boolean)} encodes as much of the
+ * input as fits into the output, and reports
+ * {@link CoderResult#UNDERFLOW} when the input is consumed or
+ * {@link CoderResult#OVERFLOW} when the output is full. The 1 or 2 bytes of
+ * an incomplete group are kept by the encoder until the next call, or are
+ * padded when the end of the input is signaled. The characters of a group
+ * are always written as a whole.
+ * </p>
+ * <p>
+ * Heap buffers are encoded directly between their backing arrays, other
+ * buffers through their get and put methods; nothing is copied into an
+ * intermediate buffer. The encoded data are the same as those of
+ * {@link Base64OutputStream}.
+ * </p>
+ * <p>
+ * An encoder is not thread-safe; it can be reused after {@link #reset()}.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+public class Base64Encoder {
+
+	/**
+	 * The requested line length.
+	 */
+	private final int linelength;
+
+	/**
+	 * The counter for current line length.
+	 */
+	private int linecounter;
+
+	/**
+	 * The bytes of the incomplete group.
+	 */
+	private int carry;
+
+	/**
+	 * How many bytes are in the incomplete group.
+	 */
+	private int carried;
+
+	/**
+	 * <p>
+	 * It builds an encoder which does not wrap the encoded data.
+	 * </p>
+	 */
+	public Base64Encoder() {
+		this(0);
+	}
+
+	/**
+	 * <p>
+	 * It builds an encoder which wraps the encoded data into a new line (with
+	 * CRLF sequence) every <em>wrapAt</em> characters.
+	 * </p>
+	 *
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 */
+	public Base64Encoder(int wrapAt) {
+		this.linelength = wrapAt;
+	}
+
+	/**
+	 * <p>
+	 * Encodes as many bytes as possible from the input buffer into the output
+	 * buffer. The positions of both buffers are advanced.
+	 * </p>
+	 *
+	 * @param in
+	 *            The input buffer.
+	 * @param out
+	 *            The output buffer.
+	 * @param endOfInput
+	 *            <b>true</b> if no more input follows, so an incomplete group
+	 *            is padded.
+	 * @return {@link CoderResult#UNDERFLOW} if the input is consumed (and,
+	 *         at the end of the input, completely encoded), or
+	 *         {@link CoderResult#OVERFLOW} if the output buffer is full.
+	 */
+	public CoderResult encode(ByteBuffer in, ByteBuffer out, boolean endOfInput) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Buffers must not be null!");
+		}
+		if (carried > 0) {
+			while (carried < 3 && in.hasRemaining()) {
+				carry |= (in.get() & 0xFF) << (16 - carried * 8);
+				carried++;
+			}
+			if (carried < 3) {
+				return endOfInput ? tail(out) : CoderResult.UNDERFLOW;
+			}
+			if (!room(out)) {
+				return CoderResult.OVERFLOW;
+			}
+			group(out);
+		}
+		while (in.remaining() >= 3) {
+			int wrap = wrapDue() ? 2 : 0;
+			int n = Math.min(in.remaining() / 3, (out.remaining() - wrap) / 4);
+			if (n <= 0) {
+				return CoderResult.OVERFLOW;
+			}
+			if (wrap > 0) {
+				out.put((byte) '\r');
+				out.put((byte) '\n');
+				linecounter = 0;
+			}
+			if (linelength > 0) {
+				n = Math.min(n, Base64Codec.lineQuanta(linelength) - linecounter / 4);
+			}
+			groups(in, out, n);
+			linecounter += n * 4;
+		}
+		while (in.hasRemaining()) {
+			carry |= (in.get() & 0xFF) << (16 - carried * 8);
+			carried++;
+		}
+		return endOfInput ? tail(out) : CoderResult.UNDERFLOW;
+	}
+
+	/**
+	 * <p>
+	 * Resets the encoder, discarding an incomplete group.
+	 * </p>
+	 */
+	public void reset() {
+		linecounter = 0;
+		carry = 0;
+		carried = 0;
+	}
+
+	/**
+	 * Pads and writes the incomplete group, if any.
+	 */
+	private CoderResult tail(ByteBuffer out) {
+		if (carried > 0) {
+			if (!room(out)) {
+				return CoderResult.OVERFLOW;
+			}
+			group(out);
+		}
+		return CoderResult.UNDERFLOW;
+	}
+
+	/**
+	 * Returns whether the output buffer has room for the next group.
+	 */
+	private boolean room(ByteBuffer out) {
+		return out.remaining() >= (wrapDue() ? 6 : 4);
+	}
+
+	/**
+	 * Returns whether the current line is full.
+	 */
+	private boolean wrapDue() {
+		return linelength > 0 && linecounter > 0
+				&& linecounter + 4 > linelength;
+	}
+
+	/**
+	 * Writes the group of the carried bytes, padded if incomplete.
+	 */
+	private void group(ByteBuffer out) {
+		if (wrapDue()) {
+			out.put((byte) '\r');
+			out.put((byte) '\n');
+			linecounter = 0;
+		}
+		byte[] table = Shared.encodeTable;
+		out.put(table[carry >>> 18]);
+		out.put(table[(carry >>> 12) & 0x3F]);
+		out.put(carried < 2 ? (byte) Shared.pad : table[(carry >>> 6) & 0x3F]);
+		out.put(carried < 3 ? (byte) Shared.pad : table[carry & 0x3F]);
+		linecounter += 4;
+		carry = 0;
+		carried = 0;
+	}
+
+	/**
+	 * Encodes whole groups of 3 bytes.
+	 */
+	private static void groups(ByteBuffer in, ByteBuffer out, int n) {
+		if (in.hasArray() && out.hasArray()) {
+			int written = Base64Codec.encode(in.array(), in.arrayOffset()
+					+ in.position(), n * 3, out.array(), out.arrayOffset()
+					+ out.position());
+			Shared.position(in, in.position() + n * 3);
+			Shared.position(out, out.position() + written);
+			return;
+		}
+		byte[] table = Shared.encodeTable;
+		for (int i = 0; i < n; i++) {
+			int bits = (in.get() & 0xFF) << 16 | (in.get() & 0xFF) << 8
+					| (in.get() & 0xFF);
+			out.put(table[bits >>> 18]);
+			out.put(table[(bits >>> 12) & 0x3F]);
+			out.put(table[(bits >>> 6) & 0x3F]);
+			out.put(table[bits & 0x3F]);
+		}
+	}
+}
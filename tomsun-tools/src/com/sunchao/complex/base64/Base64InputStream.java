@@ -1,132 +1,212 @@
-package com.sunchao.complex.base64;
-
-import java.io.IOException;
-import java.io.InputStream;
-
-/**
- * <p>A base64 encoding input stream</p>
- *  A <em> Base64InputStream</em> reads from the underlying stream which is
- *  supposed to be a base64 encoded stream. <em>Base64InputStream</em> decodes
- *  the data reads from the underlying stream and decodes the data return to the 
- * caller.
- * </p>
- * @author Administrator
- *
- */
-public class Base64InputStream extends InputStream{
-   
-	/**
-    * the underlying stream.
-    */
-	private InputStream inputStream;
-	
-	/**
-	 * The buffer.
-	 */
-	private int[] buffer;
-	
-	/**
-	 * The counter for value in the buffer.
-	 */
-	private int buffercounter;
-	
-	/**
-	 * End-of-stream flag.
-	 */
-	private boolean eof = false;
-	
-	/**
-	 * <p>It builds a base64 decode input stream</p>
-	 * 
-	 * @param intputStream
-	 *                   the underlying stream
-	 */
-	public Base64InputStream(InputStream intputStream){
-		this.inputStream = intputStream;
-	}
-	
-	
-	@Override
-	public int read() throws IOException {
-		if (buffer == null || buffercounter == buffer.length) {
-			if (eof) {
-				return -1;
-			}
-		    acquire();
-		    if (buffer.length == 0){
-		    	buffer = null;
-		        return -1;
-		    }   
-		    buffercounter = 0;
-	    }
-	    return buffer[buffercounter++]; 
-	}
-	
-    /**
-     * Reads data from the underlying stream and decodes the data,
-     * puts the decoded data into the buffer.  
-     * @throws IOException 
-     */
-	private void acquire() throws IOException {
-		char[] four = new char[4];
-		int i = 0;
-		do{
-			int b = inputStream.read();
-			if (b == -1)
-				if (i != 0)
-					throw new IOException("Bad base64 stream!");
-				else {
-					buffer = new int[0];
-					eof = true;
-					return;
-				}
-			char c = (char)b;
-			if (Shared.chars.indexOf(c) != -1 || c == Shared.pad)
-				four[i++] = c;
-			else if (c != '\r' && c != '\n')
-					throw new IOException("Bad base64 stream!");
-		}while(i < 4);
-		
-		boolean padded = false;
-		
-		for (i = 0; i < 4; i++) {
-			if (four[i] != Shared.pad){
-				if (padded){
-					throw new IOException("Bad base64 stream!");
-				}
-			}
-			else{
-				if (!padded){
-					padded = true;
-				}
-			}
-		}
-		int l;
-		
-		if (four[3] == Shared.pad) {
-			if(inputStream.read() != -1)
-				throw new IOException("Bad base64 stream!");
-			eof = true;
-			if(four[2] == Shared.pad){
-				l = 1;
-			}else{ 
-				l = 2;
-			}
-		}else{
-			l = 3;	
-		}
-		int aux = 0;
-		for (i = 0; i < 4; i++) 
-			if (four[i] != Shared.pad)
-				aux = aux | (Shared.chars.indexOf(four[i]) << (6 * (3 - i)));
-		buffer = new int[l];
-		for (i = 0; i < l; i++){
-			buffer[i] = (aux >>> (8 * (2 - i))) & 0xFF;
-		}
-	}
-		
-	
-	public void close() throws IOException{
-		inputStream.close();
-	}
-}
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>A base64 encoding input stream</p>
+ *  A <em> Base64InputStream</em> reads from the underlying stream which is
+ *  supposed to be a base64 encoded stream. <em>Base64InputStream</em> decodes
+ *  the data reads from the underlying stream and decodes the data return to the
+ * caller.
+ * </p>
+ * <p>
+ *  The encoded data are read a block at a time, and decoded as a whole into an
+ *  internal buffer; a group of 4 characters may span two blocks.
+ * </p>
+ * @author Administrator
+ *
+ */
+public class Base64InputStream extends InputStream{
+
+	/**
+	 * The size of the block of encoded data.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	/**
+    * the underlying stream.
+    */
+	private InputStream inputStream;
+
+	/**
+	 * The buffer of decoded data.
+	 */
+	private final byte[] buffer = new byte[BLOCK_SIZE / 4 * 3 + 3];
+
+	/**
+	 * The counter for value in the buffer.
+	 */
+	private int buffercounter;
+
+	/**
+	 * How many values are in the buffer.
+	 */
+	private int bufferlength;
+
+	/**
+	 * The block of encoded data.
+	 */
+	private final byte[] block = new byte[BLOCK_SIZE];
+
+	/**
+	 * The position of the next character in the block.
+	 */
+	private int blockcounter;
+
+	/**
+	 * How many characters are in the block.
+	 */
+	private int blocklength;
+
+	/**
+	 * The bits of the current group of 4 characters.
+	 */
+	private int quad;
+
+	/**
+	 * The state of the current group, see {@link Shared#step(int, int)}.
+	 */
+	private int state;
+
+	/**
+	 * End-of-stream flag.
+	 */
+	private boolean eof = false;
+
+	/**
+	 * Bad stream flag, raised once the data before the error are read.
+	 */
+	private boolean bad = false;
+
+	/**
+	 * <p>It builds a base64 decode input stream</p>
+	 *
+	 * @param intputStream
+	 *                   the underlying stream
+	 */
+	public Base64InputStream(InputStream intputStream){
+		this.inputStream = intputStream;
+	}
+
+
+	@Override
+	public int read() throws IOException {
+		if (buffercounter == bufferlength && !acquire()) {
+			return -1;
+		}
+	    return buffer[buffercounter++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		}
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (buffercounter == bufferlength && !acquire()) {
+			return -1;
+		}
+		int n = Math.min(len, bufferlength - buffercounter);
+		System.arraycopy(buffer, buffercounter, b, off, n);
+		buffercounter += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bufferlength - buffercounter;
+	}
+
+    /**
+     * Reads blocks from the underlying stream and decodes them,
+     * until some decoded data are in the buffer.
+     * @return <b>false</b> at the end of the stream.
+     * @throws IOException
+     */
+	private boolean acquire() throws IOException {
+		buffercounter = 0;
+		bufferlength = 0;
+		while (bufferlength == 0) {
+			if (bad) {
+				throw new IOException("Bad base64 stream!");
+			}
+			if (eof) {
+				return false;
+			}
+			if (blockcounter == blocklength) {
+				int n = inputStream.read(block, 0, BLOCK_SIZE);
+				if (n == -1) {
+					if ((state & 3) != 0) {
+						throw new IOException("Bad base64 stream!");
+					}
+					eof = true;
+					return false;
+				}
+				blockcounter = 0;
+				blocklength = n;
+			}
+			decode();
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the characters of the block into the buffer. An error stops
+	 * the decoding and raises the bad stream flag; after a padded group, the
+	 * next character of the underlying stream is an error, and its end is
+	 * the end of this stream.
+	 * @throws IOException
+	 */
+	private void decode() throws IOException {
+		int[] table = Shared.decodeTable;
+		int s = blockcounter;
+		int end = blocklength;
+		int d = bufferlength;
+		while (s < end) {
+			if (state == 0) {
+				// the fast path of groups of 4 alphabet characters
+				int groups = Base64Kernels.decode(block, s, buffer, d, (end - s) / 4);
+				s += groups * 4;
+				d += groups * 3;
+				if (s == end) {
+					break;
+				}
+			}
+			int v = table[block[s] & 0xFF];
+			int next = Shared.step(state, v);
+			if (next < 0) {
+				bad = true;
+				break;
+			}
+			s++;
+			if (v >= 0) {
+				quad |= v << (6 * (3 - (state & 3)));
+			}
+			state = next;
+			if (v != Shared.NEWLINE && (state & 3) == 0) {
+				int n = Shared.groupLength(Shared.pads(state));
+				buffer[d++] = (byte) (quad >> 16);
+				if (n > 1) {
+					buffer[d++] = (byte) (quad >> 8);
+				}
+				if (n > 2) {
+					buffer[d++] = (byte) quad;
+				}
+				quad = 0;
+			}
+		}
+		blockcounter = s;
+		bufferlength = d;
+	}
+
+
+	public void close() throws IOException{
+		inputStream.close();
+	}
+}
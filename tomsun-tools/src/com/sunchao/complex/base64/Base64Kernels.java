@@ -0,0 +1,267 @@
+package com.sunchao.complex.base64;
+
+/**
+ * <p>
+ * The inner loops of the Base64 encoding and decoding over whole groups.
+ * </p>
+ * <p>
+ * The groups are first passed to {@link VectorKernels}, which handles what it
+ * can with vector instructions where they are available. The rest is
+ * processed two groups at a time in a <code>long</code>. Encoding splits 6
+ * bytes into four 12 bit values, each giving two characters from a table of
+ * character pairs. Decoding looks the 8 characters up in tables of their
+ * values shifted into place, so the tables combine into 48 bits with a single
+ * sign check for the characters out of the alphabet. A single group is
+ * processed at the end. The variants over characters work the same way
+ * without the vectors; characters above 255 are out of the alphabet. Other
+ * character sequences are copied into a character array a chunk at a time,
+ * see {@link EncodedData}.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class Base64Kernels {
+
+	/** The two characters of each 12 bit value */
+	private static final byte[] PAIRS = new byte[8192];
+
+	/** The values of the characters of a group, shifted into place; -1 out of the alphabet */
+	private static final int[] DECODE0 = new int[256];
+	private static final int[] DECODE1 = new int[256];
+	private static final int[] DECODE2 = new int[256];
+	private static final int[] DECODE3 = new int[256];
+
+	static {
+		byte[] encode = Shared.encodeTable;
+		for (int i = 0; i < 4096; i++) {
+			PAIRS[2 * i] = encode[i >>> 6];
+			PAIRS[2 * i + 1] = encode[i & 0x3F];
+		}
+		for (int i = 0; i < 256; i++) {
+			int v = Shared.decodeTable[i];
+			DECODE0[i] = v < 0 ? -1 : v << 18;
+			DECODE1[i] = v < 0 ? -1 : v << 12;
+			DECODE2[i] = v < 0 ? -1 : v << 6;
+			DECODE3[i] = v < 0 ? -1 : v;
+		}
+	}
+
+	private Base64Kernels() {
+	}
+
+	/**
+	 * Encodes whole groups of 3 bytes into 4 characters each.
+	 *
+	 * @param src
+	 *            The source array.
+	 * @param s
+	 *            The offset of the first group in the source.
+	 * @param dst
+	 *            The target array.
+	 * @param d
+	 *            The offset of the first character in the target.
+	 * @param groups
+	 *            The number of groups.
+	 */
+	static void encode(byte[] src, int s, byte[] dst, int d, int groups) {
+		int done = VectorKernels.encode(src, s, dst, d, groups);
+		s += done * 3;
+		d += done * 4;
+		byte[] pairs = PAIRS;
+		for (; groups - done >= 2; done += 2) {
+			long bits = (src[s] & 0xFFL) << 40 | (src[s + 1] & 0xFFL) << 32
+					| (src[s + 2] & 0xFFL) << 24 | (src[s + 3] & 0xFFL) << 16
+					| (src[s + 4] & 0xFFL) << 8 | (src[s + 5] & 0xFFL);
+			// the offsets of the pairs of the 12 bit values
+			int a = (int) (bits >>> 35) & 0x1FFE;
+			int b = (int) (bits >>> 23) & 0x1FFE;
+			int c = (int) (bits >>> 11) & 0x1FFE;
+			int e = (int) (bits << 1) & 0x1FFE;
+			dst[d] = pairs[a];
+			dst[d + 1] = pairs[a + 1];
+			dst[d + 2] = pairs[b];
+			dst[d + 3] = pairs[b + 1];
+			dst[d + 4] = pairs[c];
+			dst[d + 5] = pairs[c + 1];
+			dst[d + 6] = pairs[e];
+			dst[d + 7] = pairs[e + 1];
+			s += 6;
+			d += 8;
+		}
+		if (done < groups) {
+			int bits = (src[s] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8
+					| (src[s + 2] & 0xFF);
+			int a = bits >>> 11 & 0x1FFE;
+			int b = bits << 1 & 0x1FFE;
+			dst[d] = pairs[a];
+			dst[d + 1] = pairs[a + 1];
+			dst[d + 2] = pairs[b];
+			dst[d + 3] = pairs[b + 1];
+		}
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters into 3 bytes each.
+	 * The decoding stops before the first group holding another character,
+	 * which is left to the caller.
+	 *
+	 * @param src
+	 *            The source array.
+	 * @param s
+	 *            The offset of the first group in the source.
+	 * @param dst
+	 *            The target array.
+	 * @param d
+	 *            The offset of the first byte in the target.
+	 * @param groups
+	 *            The max number of groups.
+	 * @return The number of groups decoded.
+	 */
+	static int decode(byte[] src, int s, byte[] dst, int d, int groups) {
+		int done = VectorKernels.decode(src, s, dst, d, groups);
+		s += done * 4;
+		d += done * 3;
+		for (; groups - done >= 2; done += 2) {
+			int x = DECODE0[src[s] & 0xFF] | DECODE1[src[s + 1] & 0xFF]
+					| DECODE2[src[s + 2] & 0xFF] | DECODE3[src[s + 3] & 0xFF];
+			int y = DECODE0[src[s + 4] & 0xFF] | DECODE1[src[s + 5] & 0xFF]
+					| DECODE2[src[s + 6] & 0xFF] | DECODE3[src[s + 7] & 0xFF];
+			if ((x | y) < 0) {
+				break;
+			}
+			long bits = (long) x << 24 | y;
+			dst[d] = (byte) (bits >>> 40);
+			dst[d + 1] = (byte) (bits >>> 32);
+			dst[d + 2] = (byte) (bits >>> 24);
+			dst[d + 3] = (byte) (bits >>> 16);
+			dst[d + 4] = (byte) (bits >>> 8);
+			dst[d + 5] = (byte) bits;
+			s += 8;
+			d += 6;
+		}
+		if (done < groups) {
+			int x = DECODE0[src[s] & 0xFF] | DECODE1[src[s + 1] & 0xFF]
+					| DECODE2[src[s + 2] & 0xFF] | DECODE3[src[s + 3] & 0xFF];
+			if (x >= 0) {
+				dst[d] = (byte) (x >> 16);
+				dst[d + 1] = (byte) (x >> 8);
+				dst[d + 2] = (byte) x;
+				done++;
+			}
+		}
+		return done;
+	}
+
+	/**
+	 * Encodes whole groups of 3 bytes into 4 characters each.
+	 *
+	 * @param src
+	 *            The source array.
+	 * @param s
+	 *            The offset of the first group in the source.
+	 * @param dst
+	 *            The target array.
+	 * @param d
+	 *            The offset of the first character in the target.
+	 * @param groups
+	 *            The number of groups.
+	 */
+	static void encode(byte[] src, int s, char[] dst, int d, int groups) {
+		byte[] pairs = PAIRS;
+		int done = 0;
+		for (; groups - done >= 2; done += 2) {
+			long bits = (src[s] & 0xFFL) << 40 | (src[s + 1] & 0xFFL) << 32
+					| (src[s + 2] & 0xFFL) << 24 | (src[s + 3] & 0xFFL) << 16
+					| (src[s + 4] & 0xFFL) << 8 | (src[s + 5] & 0xFFL);
+			int a = (int) (bits >>> 35) & 0x1FFE;
+			int b = (int) (bits >>> 23) & 0x1FFE;
+			int c = (int) (bits >>> 11) & 0x1FFE;
+			int e = (int) (bits << 1) & 0x1FFE;
+			dst[d] = (char) pairs[a];
+			dst[d + 1] = (char) pairs[a + 1];
+			dst[d + 2] = (char) pairs[b];
+			dst[d + 3] = (char) pairs[b + 1];
+			dst[d + 4] = (char) pairs[c];
+			dst[d + 5] = (char) pairs[c + 1];
+			dst[d + 6] = (char) pairs[e];
+			dst[d + 7] = (char) pairs[e + 1];
+			s += 6;
+			d += 8;
+		}
+		if (done < groups) {
+			int bits = (src[s] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8
+					| (src[s + 2] & 0xFF);
+			int a = bits >>> 11 & 0x1FFE;
+			int b = bits << 1 & 0x1FFE;
+			dst[d] = (char) pairs[a];
+			dst[d + 1] = (char) pairs[a + 1];
+			dst[d + 2] = (char) pairs[b];
+			dst[d + 3] = (char) pairs[b + 1];
+		}
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters into 3 bytes each.
+	 * The decoding stops before the first group holding another character,
+	 * which is left to the caller.
+	 *
+	 * @param src
+	 *            The source array.
+	 * @param s
+	 *            The offset of the first group in the source.
+	 * @param dst
+	 *            The target array.
+	 * @param d
+	 *            The offset of the first byte in the target.
+	 * @param groups
+	 *            The max number of groups.
+	 * @return The number of groups decoded.
+	 */
+	static int decode(char[] src, int s, byte[] dst, int d, int groups) {
+		int done = 0;
+		for (; groups - done >= 2; done += 2) {
+			char c0 = src[s];
+			char c1 = src[s + 1];
+			char c2 = src[s + 2];
+			char c3 = src[s + 3];
+			char c4 = src[s + 4];
+			char c5 = src[s + 5];
+			char c6 = src[s + 6];
+			char c7 = src[s + 7];
+			if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) > 0xFF) {
+				break;
+			}
+			int x = DECODE0[c0] | DECODE1[c1] | DECODE2[c2] | DECODE3[c3];
+			int y = DECODE0[c4] | DECODE1[c5] | DECODE2[c6] | DECODE3[c7];
+			if ((x | y) < 0) {
+				break;
+			}
+			long bits = (long) x << 24 | y;
+			dst[d] = (byte) (bits >>> 40);
+			dst[d + 1] = (byte) (bits >>> 32);
+			dst[d + 2] = (byte) (bits >>> 24);
+			dst[d + 3] = (byte) (bits >>> 16);
+			dst[d + 4] = (byte) (bits >>> 8);
+			dst[d + 5] = (byte) bits;
+			s += 8;
+			d += 6;
+		}
+		if (done < groups) {
+			char c0 = src[s];
+			char c1 = src[s + 1];
+			char c2 = src[s + 2];
+			char c3 = src[s + 3];
+			if ((c0 | c1 | c2 | c3) <= 0xFF) {
+				int x = DECODE0[c0] | DECODE1[c1] | DECODE2[c2] | DECODE3[c3];
+				if (x >= 0) {
+					dst[d] = (byte) (x >> 16);
+					dst[d + 1] = (byte) (x >> 8);
+					dst[d + 2] = (byte) x;
+					done++;
+				}
+			}
+		}
+		return done;
+	}
+}
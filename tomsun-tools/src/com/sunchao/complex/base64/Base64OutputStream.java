@@ -1,116 +1,213 @@
-package com.sunchao.complex.base64;
-
-import java.io.IOException;
-import java.io.OutputStream;
-
-/**<p>A base64 output stream</p>
- * <p>
- *   it encodes base64 everything passed on the stream, and puts the encoded data
- *   into the underlying stream.
- * </p>
- * @author Administrator
- *
- */
-
-public class Base64OutputStream extends OutputStream {
-    /**
-     * The underlying stream.
-     */
-	private OutputStream outputStream = null;
-	
-	/**
-	 * The value buffer.
-	 */
-	private int buffer = 0;
-	
-	/**
-	 * How many bytes are currently in the value buffer.
-	 */
-	private int bytecounter = 0;
-	
-	/**
-	 * the counter for current line length.
-	 */
-	private int linecounter = 0;
-	
-	/**
-	 * the requested line length
-	 */
-	private int linelength;
-	
-	/**
-	 * <p>It builds a base64 encoding output stream writing the encoded data in
-	 * the given underlying stream.
-	 * </p>
-	 * 
-	 * <p>The encoded data is wrapped into a new line(with CRLF sequence) every 76 bytes
-	 * send to the underlying stream.
-	 * </p>
-	 * 
-	 * @param outputStream the underlying stream
-	 */
-    public Base64OutputStream(OutputStream outputStream) {
-		this(outputStream, 76);
-	}
-    
-    /**  
-     * <p>It builds a base64 encoding output stream writing the encoding data in 
-     * the given underlying stream.
-     * </p>
-     * 
-     * <p>The encoded data is wrapped into a new line(with CRLF sequence) every <em>
-     * wrapAt</em> bytes send to the underlying stream. If the <em>wrapAt</em> supplied
-     * value is less than 1,the encoded data is not to be wrapped.
-     * 
-     * 
-     * @param outputStream
-     *             the underlying stream
-     * @param wrapAt
-     *             the max line length for encoded data, if the supplied value is less than
-     *               1,no wrap is applied.
-     */
-    public Base64OutputStream(OutputStream outputStream, int wrapAt) {
-		this.outputStream = outputStream;
-		this.linelength = wrapAt;
-	}
-    
-    
-	@Override
-	public void write(int b) throws IOException {
-		int value = (b & 0xFF) << (16 - (bytecounter * 8));
-		buffer = buffer | value;
-		bytecounter++;
-		if(bytecounter == 3)
-			commit();
-	}
-	
-	public void close() throws IOException{
-		commit();
-		outputStream.close();
-	}
-	
-	/**
-	 * <p>It commit 4 bytes to the underlying stream</p>
-	 * @throws IOException
-	 */
-	protected void commit() throws IOException {
-		if (bytecounter > 0) {
-			if (linelength > 0 && linecounter == linelength) {
-				outputStream.write("\r\n".getBytes());
-				linecounter = 0;
-			}
-			char b1 = Shared.chars.charAt((buffer << 8) >>> 26); //have 6 bits
-			char b2 = Shared.chars.charAt((buffer << 14) >>> 26);
-			char b3 = (bytecounter < 2) ? Shared.pad : Shared.chars.charAt((buffer << 20) >>> 26);
-			char b4 = (bytecounter < 3) ? Shared.pad : Shared.chars.charAt((buffer << 26) >>> 26);
-			outputStream.write(b1);
-			outputStream.write(b2);
-			outputStream.write(b3);
-			outputStream.write(b4);
-			linecounter += 4;
-			bytecounter = 0 ;
-			buffer = 0;
-		}
-	}
-}
-
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**<p>A base64 output stream</p>
+ * <p>
+ *   it encodes base64 everything passed on the stream, and puts the encoded data
+ *   into the underlying stream.
+ * </p>
+ * <p>
+ *   The encoded data are collected in an internal block, which is written to the
+ *   underlying stream when full, on {@link #flush()} and on {@link #commit()}.
+ * </p>
+ * @author Administrator
+ *
+ */
+
+public class Base64OutputStream extends OutputStream {
+
+	/**
+	 * The size of the block of encoded data.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The underlying stream.
+     */
+	private OutputStream outputStream = null;
+
+	/**
+	 * The value buffer.
+	 */
+	private int buffer = 0;
+
+	/**
+	 * How many bytes are currently in the value buffer.
+	 */
+	private int bytecounter = 0;
+
+	/**
+	 * the counter for current line length.
+	 */
+	private int linecounter = 0;
+
+	/**
+	 * the requested line length
+	 */
+	private int linelength;
+
+	/**
+	 * The block of encoded data, not yet written to the underlying stream.
+	 */
+	private final byte[] block = new byte[BLOCK_SIZE];
+
+	/**
+	 * How many bytes are currently in the block.
+	 */
+	private int blockcounter = 0;
+
+	/**
+	 * <p>It builds a base64 encoding output stream writing the encoded data in
+	 * the given underlying stream.
+	 * </p>
+	 *
+	 * <p>The encoded data is wrapped into a new line(with CRLF sequence) every 76 bytes
+	 * send to the underlying stream.
+	 * </p>
+	 *
+	 * @param outputStream the underlying stream
+	 */
+    public Base64OutputStream(OutputStream outputStream) {
+		this(outputStream, 76);
+	}
+
+    /**
+     * <p>It builds a base64 encoding output stream writing the encoding data in
+     * the given underlying stream.
+     * </p>
+     *
+     * <p>The encoded data is wrapped into a new line(with CRLF sequence) every <em>
+     * wrapAt</em> bytes send to the underlying stream. If the <em>wrapAt</em> supplied
+     * value is less than 1,the encoded data is not to be wrapped.
+     *
+     *
+     * @param outputStream
+     *             the underlying stream
+     * @param wrapAt
+     *             the max line length for encoded data, if the supplied value is less than
+     *               1,no wrap is applied.
+     */
+    public Base64OutputStream(OutputStream outputStream, int wrapAt) {
+		this.outputStream = outputStream;
+		this.linelength = wrapAt;
+	}
+
+
+	@Override
+	public void write(int b) throws IOException {
+		int value = (b & 0xFF) << (16 - (bytecounter * 8));
+		buffer = buffer | value;
+		bytecounter++;
+		if(bytecounter == 3)
+			quantum();
+	}
+
+	/**
+	 * <p>It encodes the whole groups of 3 bytes directly from the given array
+	 * into the block, a line at a time.</p>
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		}
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		// completes the pending group first
+		while (len > 0 && bytecounter > 0) {
+			write(b[off++]);
+			len--;
+		}
+		while (len >= 3) {
+			if (BLOCK_SIZE - blockcounter < 6) {
+				drain();
+			}
+			newline();
+			int n = Math.min(len / 3, (BLOCK_SIZE - blockcounter) / 4);
+			if (linelength > 0) {
+				n = Math.min(n, Base64Codec.lineQuanta(linelength) - linecounter / 4);
+			}
+			blockcounter += Base64Codec.encode(b, off, n * 3, block, blockcounter);
+			linecounter += n * 4;
+			off += n * 3;
+			len -= n * 3;
+		}
+		while (len > 0) {
+			write(b[off++]);
+			len--;
+		}
+	}
+
+	/**
+	 * <p>It writes the encoded data of the complete groups to the underlying stream
+	 * and flushes it. A pending group of less than 3 bytes is kept.</p>
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+		outputStream.flush();
+	}
+
+	public void close() throws IOException{
+		commit();
+		outputStream.close();
+	}
+
+	/**
+	 * <p>It commit the pending bytes, padded to 4 characters, and the block to the
+	 * underlying stream</p>
+	 * @throws IOException
+	 */
+	protected void commit() throws IOException {
+		quantum();
+		drain();
+	}
+
+	/**
+	 * <p>It encodes the value buffer into 4 characters of the block</p>
+	 * @throws IOException
+	 */
+	private void quantum() throws IOException {
+		if (bytecounter > 0) {
+			if (BLOCK_SIZE - blockcounter < 6) {
+				drain();
+			}
+			newline();
+			byte[] table = Shared.encodeTable;
+			block[blockcounter] = table[buffer >>> 18]; //have 6 bits
+			block[blockcounter + 1] = table[(buffer >>> 12) & 0x3F];
+			block[blockcounter + 2] = (bytecounter < 2) ? (byte) Shared.pad : table[(buffer >>> 6) & 0x3F];
+			block[blockcounter + 3] = (bytecounter < 3) ? (byte) Shared.pad : table[buffer & 0x3F];
+			blockcounter += 4;
+			linecounter += 4;
+			bytecounter = 0 ;
+			buffer = 0;
+		}
+	}
+
+	/**
+	 * <p>It puts a CRLF sequence into the block if the current line is full</p>
+	 */
+	private void newline() {
+		if (linelength > 0 && linecounter > 0
+				&& linecounter + 4 > linelength) {
+			block[blockcounter++] = '\r';
+			block[blockcounter++] = '\n';
+			linecounter = 0;
+		}
+	}
+
+	/**
+	 * <p>It writes the block to the underlying stream</p>
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		if (blockcounter > 0) {
+			outputStream.write(block, 0, blockcounter);
+			blockcounter = 0;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.sunchao.complex.base64;
+
+/**
+ * <p>
+ * A callback for the progress of a Base64 file transcoding.
+ * </p>
+ * <p>
+ * The listener is called on the thread which runs the transcoding, after
+ * every chunk of the source is processed, and once more when all the data are
+ * written. It should return quickly, as the pipeline waits for it.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+public interface Base64ProgressListener {
+
+	/**
+	 * <p>
+	 * Reports the progress of the transcoding.
+	 * </p>
+	 *
+	 * @param processed
+	 *            The number of bytes of the source processed so far.
+	 * @param length
+	 *            The length of the source.
+	 * @param throughput
+	 *            The average number of bytes of the source processed per
+	 *            second since the start.
+	 */
+	void progress(long processed, long length, double throughput);
+}
@@ -0,0 +1,415 @@
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Encoded data held by a byte array, a character array, a character
+ * sequence or a byte buffer, seen through the table values of their
+ * characters.
+ * </p>
+ * <p>
+ * The decoding, the validation and the decoded length are implemented here
+ * once for all the forms of the data, on the rules of
+ * {@link Shared#step(int, int)}. A form only provides the table value of a
+ * character, the count of the characters other than line breaks, a skip
+ * over the alphabet characters and the decoding of whole groups by
+ * {@link Base64Kernels}; characters above 255 are out of the alphabet.
+ * The kernel resumes right after a line break, so only the line breaks, the
+ * pads and the last group are looked up one character at a time. A
+ * character sequence is copied a chunk at a time into a character array for
+ * the kernel, as reading it character by character is several times slower.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+abstract class EncodedData {
+
+	/**
+	 * Returns the encoded data of a byte array.
+	 */
+	static EncodedData of(final byte[] src) {
+		return new EncodedData() {
+			@Override
+			int value(int i) {
+				return Shared.decodeTable[src[i] & 0xFF];
+			}
+
+			@Override
+			int countSignificant(int i, int end) {
+				int[] table = Shared.decodeTable;
+				int count = 0;
+				for (; i < end; i++) {
+					if (table[src[i] & 0xFF] != Shared.NEWLINE) {
+						count++;
+					}
+				}
+				return count;
+			}
+
+			@Override
+			int skipAlphabet(int i, int end) {
+				int[] table = Shared.decodeTable;
+				while (end - i >= 8
+						&& (table[src[i] & 0xFF] | table[src[i + 1] & 0xFF]
+								| table[src[i + 2] & 0xFF] | table[src[i + 3] & 0xFF]
+								| table[src[i + 4] & 0xFF] | table[src[i + 5] & 0xFF]
+								| table[src[i + 6] & 0xFF] | table[src[i + 7] & 0xFF]) >= 0) {
+					i += 8;
+				}
+				while (i < end && table[src[i] & 0xFF] >= 0) {
+					i++;
+				}
+				return i;
+			}
+
+			@Override
+			int decodeGroups(int s, byte[] dst, int d, int groups) {
+				return Base64Kernels.decode(src, s, dst, d, groups);
+			}
+		};
+	}
+
+	/**
+	 * Returns the encoded data of a character array.
+	 */
+	static EncodedData of(final char[] src) {
+		return new EncodedData() {
+			@Override
+			int value(int i) {
+				char c = src[i];
+				return c < 256 ? Shared.decodeTable[c] : Shared.INVALID;
+			}
+
+			@Override
+			int countSignificant(int i, int end) {
+				int[] table = Shared.decodeTable;
+				int count = 0;
+				for (; i < end; i++) {
+					char c = src[i];
+					if (c > 0xFF || table[c] != Shared.NEWLINE) {
+						count++;
+					}
+				}
+				return count;
+			}
+
+			@Override
+			int skipAlphabet(int i, int end) {
+				int[] table = Shared.decodeTable;
+				while (end - i >= 8) {
+					char c0 = src[i];
+					char c1 = src[i + 1];
+					char c2 = src[i + 2];
+					char c3 = src[i + 3];
+					char c4 = src[i + 4];
+					char c5 = src[i + 5];
+					char c6 = src[i + 6];
+					char c7 = src[i + 7];
+					if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) > 0xFF
+							|| (table[c0] | table[c1] | table[c2] | table[c3]
+									| table[c4] | table[c5] | table[c6] | table[c7]) < 0) {
+						break;
+					}
+					i += 8;
+				}
+				while (i < end && src[i] <= 0xFF && table[src[i]] >= 0) {
+					i++;
+				}
+				return i;
+			}
+
+			@Override
+			int decodeGroups(int s, byte[] dst, int d, int groups) {
+				return Base64Kernels.decode(src, s, dst, d, groups);
+			}
+		};
+	}
+
+	/**
+	 * Returns the encoded data of a character sequence.
+	 */
+	static EncodedData of(final CharSequence src) {
+		return new EncodedData() {
+
+			/** The chunk of characters passed to the kernel */
+			private char[] chunk;
+
+			/** The range of the sequence copied into the chunk */
+			private int chunkFrom;
+			private int chunkTo;
+
+			@Override
+			int value(int i) {
+				char c = src.charAt(i);
+				return c < 256 ? Shared.decodeTable[c] : Shared.INVALID;
+			}
+
+			@Override
+			int countSignificant(int i, int end) {
+				int[] table = Shared.decodeTable;
+				int count = 0;
+				for (; i < end; i++) {
+					char c = src.charAt(i);
+					if (c > 0xFF || table[c] != Shared.NEWLINE) {
+						count++;
+					}
+				}
+				return count;
+			}
+
+			@Override
+			int skipAlphabet(int i, int end) {
+				int[] table = Shared.decodeTable;
+				for (; i < end; i++) {
+					char c = src.charAt(i);
+					if (c > 0xFF || table[c] < 0) {
+						break;
+					}
+				}
+				return i;
+			}
+
+			@Override
+			int decodeGroups(int s, byte[] dst, int d, int groups) {
+				int end = s + groups * 4;
+				int done = 0;
+				while (done < groups) {
+					int n = (load(s, end) - s) / 4;
+					int decoded = Base64Kernels.decode(chunk, s - chunkFrom, dst,
+							d, n);
+					done += decoded;
+					if (decoded < n) {
+						break;
+					}
+					s += n * 4;
+					d += n * 3;
+				}
+				return done;
+			}
+
+			/**
+			 * Copies the characters from an index into the chunk, unless it
+			 * holds a group of them already, and returns the end of the
+			 * chunk. The chunk is kept over the line breaks, which stop the
+			 * kernel.
+			 */
+			private int load(int from, int end) {
+				if (from < chunkFrom || chunkTo - from < 4) {
+					if (chunk == null) {
+						chunk = new char[Math.min(end - from, CHUNK_SIZE)];
+					}
+					chunkFrom = from;
+					chunkTo = from + Math.min(end - from, chunk.length);
+					getChars(src, chunkFrom, chunkTo, chunk);
+				}
+				return Math.min(chunkTo, end);
+			}
+		};
+	}
+
+	/**
+	 * Returns the encoded data of a buffer, read by index. The groups are
+	 * decoded one at a time; a buffer with an accessible array is better
+	 * seen through its array.
+	 */
+	static EncodedData of(final ByteBuffer src) {
+		return new EncodedData() {
+			@Override
+			int value(int i) {
+				return Shared.decodeTable[src.get(i) & 0xFF];
+			}
+
+			@Override
+			int countSignificant(int i, int end) {
+				int[] table = Shared.decodeTable;
+				int count = 0;
+				for (; i < end; i++) {
+					if (table[src.get(i) & 0xFF] != Shared.NEWLINE) {
+						count++;
+					}
+				}
+				return count;
+			}
+
+			@Override
+			int skipAlphabet(int i, int end) {
+				int[] table = Shared.decodeTable;
+				while (i < end && table[src.get(i) & 0xFF] >= 0) {
+					i++;
+				}
+				return i;
+			}
+
+			@Override
+			int decodeGroups(int s, byte[] dst, int d, int groups) {
+				return 0;
+			}
+		};
+	}
+
+	/**
+	 * The max number of characters of a chunk of a character sequence.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Copies characters of a sequence, in bulk where the sequence allows it.
+	 */
+	private static void getChars(CharSequence src, int from, int to,
+			char[] dst) {
+		if (src instanceof String) {
+			((String) src).getChars(from, to, dst, 0);
+		} else if (src instanceof StringBuilder) {
+			((StringBuilder) src).getChars(from, to, dst, 0);
+		} else {
+			for (int i = from; i < to; i++) {
+				dst[i - from] = src.charAt(i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the table value of a character, {@link Shared#INVALID} above
+	 * 255.
+	 */
+	abstract int value(int i);
+
+	/**
+	 * Returns the number of characters of a range other than CR and LF.
+	 */
+	abstract int countSignificant(int i, int end);
+
+	/**
+	 * Skips the leading alphabet characters, and returns the index of the
+	 * first other character, or the end.
+	 */
+	abstract int skipAlphabet(int i, int end);
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters, see
+	 * {@link Base64Kernels#decode(byte[], int, byte[], int, int)}.
+	 */
+	abstract int decodeGroups(int s, byte[] dst, int d, int groups);
+
+	/**
+	 * Skips the leading CR and LF characters.
+	 */
+	private int skipNewlines(int i, int end) {
+		while (i < end && value(i) == Shared.NEWLINE) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the length of the decoded data of a range, provided it is
+	 * valid; otherwise the whole groups are an upper bound of what is decoded
+	 * before the error is detected. Line breaks are not counted.
+	 */
+	final int decodedLength(int off, int end) {
+		int significant = countSignificant(off, end);
+		// the pads at the end, past the line breaks
+		int pads = 0;
+		for (int i = end - 1; i >= off; i--) {
+			int v = value(i);
+			if (v == Shared.PAD) {
+				pads++;
+			} else if (v != Shared.NEWLINE) {
+				break;
+			}
+		}
+		int length = significant / 4 * 3;
+		if (pads > 0 && length > 0 && significant % 4 == 0) {
+			// the pads only count in the last group
+			length += Shared.groupLength(pads) - 3;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns whether a range holds valid encoded data, following
+	 * {@link Shared#step(int, int)}. The runs of alphabet characters only
+	 * advance the count of the current group, so the other characters go
+	 * through the state one by one.
+	 */
+	final boolean isValid(int off, int end) {
+		int state = 0;
+		int i = off;
+		while (i < end) {
+			if (state == (state & 3)) {
+				// no pad yet
+				int run = skipAlphabet(i, end);
+				state = (state + run - i) & 3;
+				i = run;
+				if (i == end) {
+					break;
+				}
+			}
+			state = Shared.step(state, value(i++));
+			if (state < 0) {
+				return false;
+			}
+		}
+		return (state & 3) == 0;
+	}
+
+	/**
+	 * Decodes a range into the given buffer. CR and LF characters are
+	 * skipped, everything else must belong to the Base64 alphabet; the data
+	 * end with the first padded group.
+	 *
+	 * @return The number of bytes written.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	final int decode(int off, int end, byte[] dst, int dstOff)
+			throws IOException {
+		int s = off;
+		int d = dstOff;
+		int state = 0;
+		int bits = 0;
+		while (true) {
+			if (state == 0) {
+				// the fast path of groups of 4 alphabet characters
+				int groups = decodeGroups(s, dst, d, (end - s) / 4);
+				s += groups * 4;
+				d += groups * 3;
+				int next = skipNewlines(s, end);
+				if (next != s) {
+					s = next;
+					continue;
+				}
+			}
+
+			// the slow path of a group with line breaks or pads
+			if (s == end) {
+				if ((state & 3) != 0) {
+					throw new IOException("Bad base64 stream!");
+				}
+				return d - dstOff;
+			}
+			int v = value(s++);
+			if (v >= 0) {
+				bits |= v << (6 * (3 - (state & 3)));
+			}
+			state = Shared.step(state, v);
+			if (state < 0) {
+				throw new IOException("Bad base64 stream!");
+			}
+			if (v != Shared.NEWLINE && (state & 3) == 0) {
+				int n = Shared.groupLength(Shared.pads(state));
+				dst[d++] = (byte) (bits >> 16);
+				if (n > 1) {
+					dst[d++] = (byte) (bits >> 8);
+				}
+				if (n > 2) {
+					dst[d++] = (byte) bits;
+				}
+				bits = 0;
+			}
+		}
+	}
+}
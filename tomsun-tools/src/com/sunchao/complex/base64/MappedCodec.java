@@ -0,0 +1,323 @@
+package com.sunchao.complex.base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Base64 encoding and decoding of files through memory mapping.
+ * </p>
+ * <p>
+ * The source file is mapped a chunk at a time, the target file is presized at
+ * the exact length of the output and mapped at the offsets of the chunks, and
+ * the chunks are encoded or decoded in parallel, one task per chunk. A task
+ * copies its chunk in blocks through heap arrays, so the array loops of the
+ * encoder and the decoder apply. The chunks of the source start on a group
+ * boundary, see {@link Segments}, and, when the encoded data are wrapped, on
+ * a line boundary; so the offset of each chunk in the target is known in
+ * advance. The encoded data and the accepted input are the same as those of
+ * {@link Base64OutputStream} and {@link Base64InputStream}.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class MappedCodec {
+
+	/**
+	 * The size of a chunk of the source file.
+	 */
+	private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The size of the blocks, through which the mapped chunks are copied.
+	 */
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * The size of the windows read around the group boundaries and at the
+	 * end of the data.
+	 */
+	private static final int WINDOW_SIZE = 4096;
+
+	private MappedCodec() {
+	}
+
+	/**
+	 * <p>
+	 * Encodes the source file into the target file.
+	 * </p>
+	 *
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @param threads
+	 *            The number of threads.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 */
+	static void encode(File source, File target, final int wrapAt, int threads)
+			throws IOException {
+		RandomAccessFile in = new RandomAccessFile(source, "r");
+		try {
+			RandomAccessFile out = new RandomAccessFile(target, "rw");
+			try {
+				final FileChannel src = in.getChannel();
+				final FileChannel dst = out.getChannel();
+				final long length = src.size();
+				out.setLength(encodedLength(length, wrapAt));
+
+				int lineQuanta = wrapAt > 0 ? Base64Codec.lineQuanta(wrapAt) : 1;
+				int unit = 3 * lineQuanta;
+				long chunk = Math.max(1, CHUNK_SIZE / unit) * (long) unit;
+				List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for (long offset = 0; offset < length; offset += chunk) {
+					final long from = offset;
+					final int n = (int) Math.min(chunk, length - offset);
+					long groups = from / 3;
+					final long to = groups * 4
+							+ (wrapAt > 0 ? groups / lineQuanta * 2 : 0);
+					// a chunk but the last one ends with a whole line
+					final boolean newline = wrapAt > 0 && from + n < length;
+					tasks.add(new Callable<Void>() {
+						@Override
+						public Void call() throws IOException {
+							ByteBuffer chars = dst.map(MapMode.READ_WRITE, to,
+									encodedLength(n, wrapAt) + (newline ? 2 : 0));
+							encode(src.map(MapMode.READ_ONLY, from, n), chars,
+									new Base64Encoder(wrapAt));
+							if (newline) {
+								chars.put((byte) '\r');
+								chars.put((byte) '\n');
+							}
+							return null;
+						}
+					});
+				}
+				run(tasks, threads);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Decodes the source file into the target file.
+	 * </p>
+	 *
+	 * @param source
+	 *            The source file, from which encoded data are read.
+	 * @param target
+	 *            The target file, in which decoded data are written.
+	 * @param threads
+	 *            The number of threads.
+	 * @throws IOException
+	 *             If an I/O error occurs, or if the encoded data are not
+	 *             valid.
+	 */
+	static void decode(File source, File target, int threads)
+			throws IOException {
+		RandomAccessFile in = new RandomAccessFile(source, "r");
+		try {
+			RandomAccessFile out = new RandomAccessFile(target, "rw");
+			try {
+				decode(in.getChannel(), out, threads);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void decode(final FileChannel src, RandomAccessFile out,
+			int threads) throws IOException {
+		final FileChannel dst = out.getChannel();
+		final long length = src.size();
+		final Segments chunks = new Segments(0, length, CHUNK_SIZE) {
+
+			/** The window mapped around the last position read */
+			private ByteBuffer window;
+
+			/** The position of the window in the source */
+			private long windowStart;
+
+			@Override
+			int value(long position) throws IOException {
+				if (window == null || position < windowStart
+						|| position >= windowStart + window.capacity()) {
+					windowStart = position / WINDOW_SIZE * WINDOW_SIZE;
+					window = src.map(MapMode.READ_ONLY, windowStart,
+							Math.min(WINDOW_SIZE, length - windowStart));
+				}
+				int c = window.get((int) (position - windowStart)) & 0xFF;
+				return Shared.decodeTable[c];
+			}
+		};
+
+		// counts the significant characters of the chunks
+		final long[] counts = new long[chunks.count()];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < counts.length; i++) {
+			final int index = i;
+			final long from = chunks.cut(i);
+			final int n = (int) (chunks.cut(i + 1) - from);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					counts[index] = significant(src.map(MapMode.READ_ONLY, from, n));
+					return null;
+				}
+			});
+		}
+		run(tasks, threads);
+		chunks.plan(counts);
+		out.setLength(chunks.length());
+
+		tasks.clear();
+		for (int i = 0; i < counts.length; i++) {
+			final long from = chunks.start(i);
+			final int n = (int) (chunks.end(i) - from);
+			if (n == 0) {
+				continue;
+			}
+			final long to = chunks.offset(i);
+			final int expected = (int) chunks.expected(i);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					ByteBuffer bytes = expected == 0 ? ByteBuffer.allocate(0)
+							: dst.map(MapMode.READ_WRITE, to, expected);
+					decode(src.map(MapMode.READ_ONLY, from, n), bytes,
+							new Base64Decoder());
+					if (bytes.hasRemaining()) {
+						throw new IOException("Bad base64 stream!");
+					}
+					return null;
+				}
+			});
+		}
+		run(tasks, threads);
+	}
+
+	/**
+	 * Encodes a mapped chunk into a mapped target, a block at a time.
+	 */
+	private static void encode(ByteBuffer src, ByteBuffer dst,
+			Base64Encoder encoder) {
+		byte[] in = new byte[BLOCK_SIZE];
+		byte[] out = new byte[BLOCK_SIZE];
+		boolean last;
+		do {
+			int n = Math.min(BLOCK_SIZE, src.remaining());
+			src.get(in, 0, n);
+			last = !src.hasRemaining();
+			ByteBuffer input = ByteBuffer.wrap(in, 0, n);
+			CoderResult result;
+			do {
+				ByteBuffer output = ByteBuffer.wrap(out);
+				result = encoder.encode(input, output, last);
+				dst.put(out, 0, output.position());
+			} while (result.isOverflow());
+		} while (!last);
+	}
+
+	/**
+	 * Decodes a mapped chunk into a mapped target, a block at a time.
+	 */
+	private static void decode(ByteBuffer src, ByteBuffer dst,
+			Base64Decoder decoder) throws IOException {
+		byte[] in = new byte[BLOCK_SIZE];
+		byte[] out = new byte[BLOCK_SIZE];
+		boolean last;
+		do {
+			int n = Math.min(BLOCK_SIZE, src.remaining());
+			src.get(in, 0, n);
+			last = !src.hasRemaining();
+			ByteBuffer input = ByteBuffer.wrap(in, 0, n);
+			CoderResult result;
+			do {
+				ByteBuffer output = ByteBuffer.wrap(out);
+				result = decoder.decode(input, output, last);
+				if (result.isError() || output.position() > dst.remaining()) {
+					throw new IOException("Bad base64 stream!");
+				}
+				dst.put(out, 0, output.position());
+			} while (result.isOverflow());
+		} while (!last);
+	}
+
+	/**
+	 * Returns the length of the encoded data of a source of the given length.
+	 */
+	static long encodedLength(long len, int wrapAt) {
+		long quanta = (len + 2) / 3;
+		long length = quanta * 4;
+		if (wrapAt > 0 && quanta > 0) {
+			length += (quanta - 1) / Base64Codec.lineQuanta(wrapAt) * 2;
+		}
+		return length;
+	}
+
+	/**
+	 * Counts the characters of a buffer which are not line breaks.
+	 */
+	private static long significant(ByteBuffer buffer) {
+		int[] table = Shared.decodeTable;
+		byte[] block = new byte[BLOCK_SIZE];
+		long count = 0;
+		while (buffer.hasRemaining()) {
+			int n = Math.min(BLOCK_SIZE, buffer.remaining());
+			buffer.get(block, 0, n);
+			count += n;
+			for (int i = 0; i < n; i++) {
+				if (table[block[i] & 0xFF] == Shared.NEWLINE) {
+					count--;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Runs the tasks on a pool of the given number of threads, and rethrows
+	 * the first failure.
+	 */
+	private static void run(List<Callable<Void>> tasks, int threads)
+			throws IOException {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			List<Future<Void>> futures = executor.invokeAll(tasks);
+			for (Future<Void> future : futures) {
+				Shared.await(future);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
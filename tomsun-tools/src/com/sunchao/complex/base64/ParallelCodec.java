@@ -0,0 +1,199 @@
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Parallel Base64 encoding and decoding of large byte arrays.
+ * </p>
+ * <p>
+ * The source is split into segments, which are encoded or decoded as fork
+ * join tasks into disjoint ranges of one output array, allocated at the exact
+ * length in advance. The encoded segments are a whole number of groups and,
+ * when the encoded data are wrapped, of lines. The decoded segments start on
+ * a group boundary, found from the number of characters which are not line
+ * breaks in the preceding segments, see {@link Segments}. Below
+ * {@link #THRESHOLD} the sequential methods of {@link Base64Codec} are used.
+ * The results are the same as those of {@link Base64Codec}.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class ParallelCodec {
+
+	/**
+	 * The length of the source below which the work is not split.
+	 */
+	static final int THRESHOLD = 1024 * 1024;
+
+	/**
+	 * The size of a segment of the source.
+	 */
+	private static final int SEGMENT_SIZE = 256 * 1024;
+
+	/**
+	 * The pool of the tasks, created on first use.
+	 */
+	private static class PoolHolder {
+		static final ForkJoinPool pool = new ForkJoinPool();
+	}
+
+	private ParallelCodec() {
+	}
+
+	/**
+	 * <p>
+	 * Encodes a binary sequence into a new array.
+	 * </p>
+	 *
+	 * @param src
+	 *            The source sequence.
+	 * @param srcOff
+	 *            The offset of the source data.
+	 * @param len
+	 *            The length of the source data.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @return The encoded sequence.
+	 */
+	static byte[] encode(final byte[] src, final int srcOff, final int len,
+			final int wrapAt) {
+		Base64Codec.checkRange(src, srcOff, len);
+		if (len < THRESHOLD) {
+			return Base64Codec.encode(src, srcOff, len, wrapAt);
+		}
+		final byte[] dst = new byte[Base64Codec.encodedLength(len, wrapAt)];
+		final int lineQuanta = wrapAt > 0 ? Base64Codec.lineQuanta(wrapAt) : 1;
+		int unit = 3 * lineQuanta;
+		final int segment = Math.max(1, SEGMENT_SIZE / unit) * unit;
+		int segments = (int) ((len + (long) segment - 1) / segment);
+		PoolHolder.pool.invoke(new ForEach(new Body() {
+			@Override
+			public void run(int index) {
+				int from = index * segment;
+				int n = Math.min(segment, len - from);
+				int groups = from / 3;
+				int to = groups * 4 + (wrapAt > 0 ? groups / lineQuanta * 2 : 0);
+				to += Base64Codec.encode(src, srcOff + from, n, dst, to, wrapAt);
+				// a segment but the last one ends with a whole line
+				if (wrapAt > 0 && from + n < len) {
+					dst[to] = '\r';
+					dst[to + 1] = '\n';
+				}
+			}
+		}, 0, segments));
+		return dst;
+	}
+
+	/**
+	 * <p>
+	 * Decodes an encoded sequence into a new array.
+	 * </p>
+	 *
+	 * @param src
+	 *            The encoded sequence.
+	 * @param srcOff
+	 *            The offset of the encoded data.
+	 * @param len
+	 *            The length of the encoded data.
+	 * @return The decoded sequence.
+	 * @throws IOException
+	 *             If the encoded data are not valid.
+	 */
+	static byte[] decode(final byte[] src, final int srcOff, final int len)
+			throws IOException {
+		Base64Codec.checkRange(src, srcOff, len);
+		if (len < THRESHOLD) {
+			return Base64Codec.decode(src, srcOff, len);
+		}
+		final Segments segments = new Segments(srcOff, srcOff + len,
+				SEGMENT_SIZE) {
+			@Override
+			int value(long position) {
+				return Shared.decodeTable[src[(int) position] & 0xFF];
+			}
+		};
+
+		// counts the significant characters of the segments
+		final long[] counts = new long[segments.count()];
+		final EncodedData data = EncodedData.of(src);
+		PoolHolder.pool.invoke(new ForEach(new Body() {
+			@Override
+			public void run(int index) {
+				counts[index] = data.countSignificant((int) segments.cut(index),
+						(int) segments.cut(index + 1));
+			}
+		}, 0, counts.length));
+		segments.plan(counts);
+
+		final byte[] dst = new byte[(int) segments.length()];
+		final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+		PoolHolder.pool.invoke(new ForEach(new Body() {
+			@Override
+			public void run(int index) {
+				int from = (int) segments.start(index);
+				int n = (int) segments.end(index) - from;
+				if (n == 0 || failure.get() != null) {
+					return;
+				}
+				int to = (int) segments.offset(index);
+				int expected = (int) segments.expected(index);
+				try {
+					if (Base64Codec.decode(src, from, n, dst, to) != expected) {
+						// a padded group before the end
+						throw new IOException("Bad base64 stream!");
+					}
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+		}, 0, counts.length));
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		return dst;
+	}
+
+	/**
+	 * The work on a segment.
+	 */
+	private interface Body {
+
+		void run(int index);
+	}
+
+	/**
+	 * Runs the body over a range of segments, splitting the range in halves.
+	 */
+	private static class ForEach extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Body body;
+
+		private final int from;
+
+		private final int to;
+
+		ForEach(Body body, int from, int to) {
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				body.run(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ForEach(body, from, mid), new ForEach(body, mid, to));
+		}
+	}
+}
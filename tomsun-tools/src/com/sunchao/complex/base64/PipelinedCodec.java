@@ -0,0 +1,388 @@
+package com.sunchao.complex.base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.CoderResult;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Base64 encoding and decoding of files through a pipeline of asynchronous
+ * reads and writes.
+ * </p>
+ * <p>
+ * The source and the target are opened as asynchronous file channels, and
+ * both sides are double buffered: while chunk N is transcoded on the calling
+ * thread, chunk N+1 is read into the other input buffer and the output of
+ * chunk N-1 is written from the other output buffer, so the disk and the
+ * processor are busy at the same time. A buffer is only reused when its
+ * read or write is complete. Unlike the mapped files of {@link MappedCodec},
+ * the chunks are not cut at group boundaries: they are transcoded in file
+ * order on one thread, by a single {@link Base64Encoder} or
+ * {@link Base64Decoder} which keeps the incomplete group at the end of a
+ * chunk until the next one arrives. So the file is processed in one pass,
+ * and its output is the same as that of the streams of this package.
+ * </p>
+ * <p>
+ * The buffers are direct, so the channels do not copy them, and are taken
+ * from a small pool shared by the pipelines, as direct buffers are expensive
+ * to allocate. The coder moves the bytes between the direct buffers and two
+ * heap blocks of 64 KB kept by the pipeline.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class PipelinedCodec {
+
+	/**
+	 * The size of a chunk, the capacity of the buffers.
+	 */
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	/**
+	 * The size of the blocks, through which the chunks are copied.
+	 */
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * The max number of buffers kept for reuse.
+	 */
+	private static final int POOL_SIZE = 8;
+
+	/**
+	 * The buffers kept for reuse.
+	 */
+	private static final BlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(
+			POOL_SIZE);
+
+	private PipelinedCodec() {
+	}
+
+	/**
+	 * <p>
+	 * Encodes the source file into the target file.
+	 * </p>
+	 *
+	 * @param source
+	 *            The source file, from which decoded data are read.
+	 * @param target
+	 *            The target file, in which encoded data are written.
+	 * @param wrapAt
+	 *            The max line length for encoded data. If less than 1 no wrap
+	 *            is applied.
+	 * @param listener
+	 *            The listener of the progress, or <b>null</b>.
+	 * @throws IOException
+	 *             If an I/O error occurs.
+	 */
+	static void encode(File source, File target, int wrapAt,
+			Base64ProgressListener listener) throws IOException {
+		final Base64Encoder encoder = new Base64Encoder(wrapAt);
+		transcode(source, target, new Coder() {
+			@Override
+			public CoderResult code(ByteBuffer in, ByteBuffer out,
+					boolean endOfInput) {
+				return encoder.encode(in, out, endOfInput);
+			}
+		}, listener);
+	}
+
+	/**
+	 * <p>
+	 * Decodes the source file into the target file.
+	 * </p>
+	 *
+	 * @param source
+	 *            The source file, from which encoded data are read.
+	 * @param target
+	 *            The target file, in which decoded data are written.
+	 * @param listener
+	 *            The listener of the progress, or <b>null</b>.
+	 * @throws IOException
+	 *             If an I/O error occurs, or if the encoded data are not
+	 *             valid.
+	 */
+	static void decode(File source, File target,
+			Base64ProgressListener listener) throws IOException {
+		final Base64Decoder decoder = new Base64Decoder();
+		transcode(source, target, new Coder() {
+			@Override
+			public CoderResult code(ByteBuffer in, ByteBuffer out,
+					boolean endOfInput) {
+				return decoder.decode(in, out, endOfInput);
+			}
+		}, listener);
+	}
+
+	private static void transcode(File source, File target, Coder coder,
+			Base64ProgressListener listener) throws IOException {
+		if (source == null || target == null) {
+			throw new IllegalArgumentException("Files must not be null!");
+		}
+		AsynchronousFileChannel in = AsynchronousFileChannel.open(
+				source.toPath(), StandardOpenOption.READ);
+		try {
+			AsynchronousFileChannel out = AsynchronousFileChannel.open(
+					target.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				new Pipeline(in, out, coder, listener).run();
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Takes a buffer from the pool, or allocates one.
+	 */
+	private static ByteBuffer acquire() {
+		ByteBuffer buffer = pool.poll();
+		return buffer != null ? buffer : ByteBuffer.allocateDirect(CHUNK_SIZE);
+	}
+
+	/**
+	 * Gives a buffer back to the pool, unless the pool is full.
+	 */
+	private static void release(ByteBuffer buffer) {
+		Shared.clear(buffer);
+		pool.offer(buffer);
+	}
+
+	/**
+	 * Waits for a read or a write, and returns its number of bytes.
+	 */
+	private static int await(Future<Integer> future) throws IOException {
+		return Shared.await(future).intValue();
+	}
+
+	/**
+	 * The encoder or the decoder of a pipeline.
+	 */
+	private interface Coder {
+
+		CoderResult code(ByteBuffer in, ByteBuffer out, boolean endOfInput);
+	}
+
+	/**
+	 * The state of a transcoding: the two input buffers and their pending
+	 * read, the two output buffers and their pending writes.
+	 */
+	private static class Pipeline {
+
+		private final AsynchronousFileChannel in;
+
+		private final AsynchronousFileChannel out;
+
+		private final Coder coder;
+
+		private final Base64ProgressListener listener;
+
+		private final ByteBuffer[] inputs = new ByteBuffer[2];
+
+		private final ByteBuffer[] outputs = new ByteBuffer[2];
+
+		/**
+		 * The read in progress, into the input buffer which is not transcoded.
+		 */
+		private Future<Integer> reading;
+
+		/**
+		 * The writes in progress, one per output buffer.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private final Future<Integer>[] writing = new Future[2];
+
+		/**
+		 * The positions in the target of the data of the output buffers.
+		 */
+		private final long[] positions = new long[2];
+
+		/**
+		 * The output buffer being filled.
+		 */
+		private int current;
+
+		/**
+		 * The position in the target of the next write.
+		 */
+		private long writePosition;
+
+		private final byte[] block = new byte[BLOCK_SIZE];
+
+		private final byte[] chars = new byte[BLOCK_SIZE];
+
+		private final long start = System.nanoTime();
+
+		Pipeline(AsynchronousFileChannel in, AsynchronousFileChannel out,
+				Coder coder, Base64ProgressListener listener) {
+			this.in = in;
+			this.out = out;
+			this.coder = coder;
+			this.listener = listener;
+		}
+
+		void run() throws IOException {
+			try {
+				for (int i = 0; i < 2; i++) {
+					inputs[i] = acquire();
+					outputs[i] = acquire();
+				}
+				long length = in.size();
+				long processed = 0;
+				if (length == 0) {
+					code(ByteBuffer.allocate(0), true);
+				} else {
+					reading = in.read(inputs[0], 0);
+				}
+				for (int index = 0; reading != null; index = 1 - index) {
+					ByteBuffer input = inputs[index];
+					int n = await(reading);
+					reading = null;
+					// a source which shrank ends early
+					boolean last = n <= 0 || processed + n >= length;
+					if (n > 0) {
+						processed += n;
+					}
+					if (!last) {
+						ByteBuffer next = inputs[1 - index];
+						Shared.clear(next);
+						reading = in.read(next, processed);
+					}
+					Shared.flip(input);
+					code(input, last);
+					if (!last) {
+						report(processed, length);
+					}
+				}
+				if (outputs[current].position() > 0) {
+					write();
+				}
+				for (int i = 0; i < 2; i++) {
+					complete(i);
+				}
+				report(processed, length);
+			} finally {
+				// the buffers of the reads and writes left by a failure are
+				// only released when these are over
+				boolean over = quiet(reading) & quiet(writing[0])
+						& quiet(writing[1]);
+				for (int i = 0; over && i < 2; i++) {
+					if (inputs[i] != null) {
+						release(inputs[i]);
+					}
+					if (outputs[i] != null) {
+						release(outputs[i]);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Transcodes an input buffer into the output buffers, a block at a
+		 * time.
+		 */
+		private void code(ByteBuffer input, boolean last) throws IOException {
+			do {
+				int n = Math.min(BLOCK_SIZE, input.remaining());
+				input.get(block, 0, n);
+				boolean endOfInput = last && !input.hasRemaining();
+				ByteBuffer src = ByteBuffer.wrap(block, 0, n);
+				CoderResult result;
+				do {
+					ByteBuffer dst = ByteBuffer.wrap(chars);
+					result = coder.code(src, dst, endOfInput);
+					if (result.isError()) {
+						throw new IOException("Bad base64 stream!");
+					}
+					emit(dst.position());
+				} while (result.isOverflow());
+			} while (input.hasRemaining());
+		}
+
+		/**
+		 * Moves the transcoded bytes into the output buffers, writing the
+		 * full ones.
+		 */
+		private void emit(int len) throws IOException {
+			int off = 0;
+			while (len > 0) {
+				ByteBuffer output = outputs[current];
+				int n = Math.min(len, output.remaining());
+				output.put(chars, off, n);
+				off += n;
+				len -= n;
+				if (!output.hasRemaining()) {
+					write();
+				}
+			}
+		}
+
+		/**
+		 * Starts writing the current output buffer, and switches to the
+		 * other one once its own write is complete.
+		 */
+		private void write() throws IOException {
+			ByteBuffer output = outputs[current];
+			Shared.flip(output);
+			positions[current] = writePosition;
+			writePosition += output.remaining();
+			writing[current] = out.write(output, positions[current]);
+			current = 1 - current;
+			complete(current);
+			Shared.clear(outputs[current]);
+		}
+
+		/**
+		 * Waits for the write of an output buffer, and writes what it left.
+		 */
+		private void complete(int index) throws IOException {
+			if (writing[index] == null) {
+				return;
+			}
+			ByteBuffer output = outputs[index];
+			await(writing[index]);
+			writing[index] = null;
+			while (output.hasRemaining()) {
+				await(out.write(output, positions[index] + output.position()));
+			}
+		}
+
+		private void report(long processed, long length) {
+			if (listener != null) {
+				long elapsed = Math.max(1, System.nanoTime() - start);
+				listener.progress(processed, length, processed * 1e9 / elapsed);
+			}
+		}
+
+		/**
+		 * Waits for a read or a write left by a failure, ignoring its result.
+		 *
+		 * @return Whether it is over.
+		 */
+		private static boolean quiet(Future<Integer> future) {
+			if (future == null) {
+				return true;
+			}
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				;
+			}
+			return true;
+		}
+	}
+}
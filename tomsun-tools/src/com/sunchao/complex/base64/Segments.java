@@ -0,0 +1,194 @@
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * The segments of encoded data decoded independently of each other, by
+ * {@link ParallelCodec} and {@link MappedCodec}.
+ * </p>
+ * <p>
+ * The data are cut at a fixed size, and the caller counts the characters
+ * between the cuts which are not line breaks. From these counts each cut is
+ * moved forward to the start of the next group, see {@link #plan(long[])},
+ * so a segment holds whole groups and the offset and the length of its
+ * decoded data are known in advance; the line breaks at the end belong to
+ * the last segment. The length of the decoded data is exact for valid data;
+ * a padded group before the end makes the decoding of its segment fall short
+ * of the expected length.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+abstract class Segments {
+
+	/**
+	 * The start of the data.
+	 */
+	private final long off;
+
+	/**
+	 * The end of the data.
+	 */
+	private final long end;
+
+	/**
+	 * The distance of the cuts.
+	 */
+	private final int size;
+
+	/**
+	 * The starts of the segments, followed by the end of the data.
+	 */
+	private final long[] starts;
+
+	/**
+	 * The first group of each segment, followed by the number of groups.
+	 */
+	private final long[] groups;
+
+	/**
+	 * The length of the decoded data.
+	 */
+	private long length;
+
+	Segments(long off, long end, int size) {
+		this.off = off;
+		this.end = end;
+		this.size = size;
+		int count = (int) ((end - off + size - 1) / size);
+		this.starts = new long[count + 1];
+		this.groups = new long[count + 1];
+	}
+
+	/**
+	 * Returns the table value of the character at a position.
+	 */
+	abstract int value(long position) throws IOException;
+
+	/**
+	 * Returns the number of segments.
+	 */
+	final int count() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * Returns the position of a cut, where the counting of a segment starts.
+	 */
+	final long cut(int index) {
+		return Math.min(off + (long) index * size, end);
+	}
+
+	/**
+	 * Moves the cuts to the following group boundaries.
+	 *
+	 * @param counts
+	 *            The numbers of characters between the cuts which are not
+	 *            line breaks.
+	 * @throws IOException
+	 *             If the data do not hold whole groups, or if they cannot be
+	 *             read.
+	 */
+	final void plan(long[] counts) throws IOException {
+		int count = count();
+		long total = 0;
+		for (int i = 0; i < count; i++) {
+			total += counts[i];
+		}
+		if (total % 4 != 0) {
+			throw new IOException("Bad base64 stream!");
+		}
+		length = total / 4 * 3;
+		if (total > 0) {
+			length += Shared.groupLength(trailingPads()) - 3;
+		}
+		long before = 0;
+		for (int i = 0; i < count; i++) {
+			long groupStart = (before + 3) / 4 * 4;
+			if (i == 0) {
+				starts[i] = off;
+			} else if (groupStart >= total) {
+				// the trailing line breaks belong to the last group
+				starts[i] = end;
+			} else {
+				starts[i] = Math.max(starts[i - 1],
+						skip(cut(i), (int) (groupStart - before)));
+			}
+			groups[i] = Math.min(groupStart, total) / 4;
+			before += counts[i];
+		}
+		starts[count] = end;
+		groups[count] = total / 4;
+	}
+
+	/**
+	 * Returns the length of the decoded data, provided they are valid.
+	 */
+	final long length() {
+		return length;
+	}
+
+	/**
+	 * Returns the start of a segment.
+	 */
+	final long start(int index) {
+		return starts[index];
+	}
+
+	/**
+	 * Returns the end of a segment.
+	 */
+	final long end(int index) {
+		return starts[index + 1];
+	}
+
+	/**
+	 * Returns the offset of the decoded data of a segment.
+	 */
+	final long offset(int index) {
+		return groups[index] * 3;
+	}
+
+	/**
+	 * Returns the length of the decoded data of a segment, provided they are
+	 * valid.
+	 */
+	final long expected(int index) {
+		if (starts[index + 1] == end) {
+			return length - groups[index] * 3;
+		}
+		return (groups[index + 1] - groups[index]) * 3;
+	}
+
+	/**
+	 * Counts the pads at the end of the data, up to 2; line breaks after the
+	 * pads make the data invalid, which the decoding reports.
+	 */
+	private int trailingPads() throws IOException {
+		int pads = 0;
+		for (long i = end - 1; i >= off && pads < 2; i--) {
+			int v = value(i);
+			if (v == Shared.PAD) {
+				pads++;
+			} else if (v != Shared.NEWLINE) {
+				break;
+			}
+		}
+		return pads;
+	}
+
+	/**
+	 * Returns the position following the given number of characters from a
+	 * position which are not line breaks.
+	 */
+	private long skip(long position, int count) throws IOException {
+		while (count > 0 && position < end) {
+			if (value(position++) != Shared.NEWLINE) {
+				count--;
+			}
+		}
+		return position;
+	}
+}
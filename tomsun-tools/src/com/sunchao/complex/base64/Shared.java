@@ -1,13 +1,147 @@
-package com.sunchao.complex.base64;
-/**
- * Package base64 utilities
- * 
- * @author Administrator
- *
- */
- class Shared {
-	 
-	 static String chars ="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
-	 static char pad = '=';
-
-}
+package com.sunchao.complex.base64;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Package base64 utilities
+ * 
+ * @author Administrator
+ *
+ */
+ class Shared {
+	 
+	 static String chars ="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	 static char pad = '=';
+
+	 /** The decoded value of a character out of the alphabet */
+	 static final int INVALID = -1;
+
+	 /** The decoded value of a CR or LF, which is skipped */
+	 static final int NEWLINE = -2;
+
+	 /** The decoded value of the pad character */
+	 static final int PAD = -3;
+
+	 /** The state of a scan after a padded group, which ends the data */
+	 static final int END = 32;
+
+	 /** The encoded characters of the 6 bit values, as ASCII bytes */
+	 static final byte[] encodeTable = new byte[64];
+
+	 /** The 6 bit values of the ASCII bytes, or one of the negative markers */
+	 static final int[] decodeTable = new int[256];
+
+	 static {
+		 for (int i = 0; i < decodeTable.length; i++) {
+			 decodeTable[i] = INVALID;
+		 }
+		 for (int i = 0; i < encodeTable.length; i++) {
+			 encodeTable[i] = (byte) chars.charAt(i);
+			 decodeTable[chars.charAt(i)] = i;
+		 }
+		 decodeTable['\r'] = NEWLINE;
+		 decodeTable['\n'] = NEWLINE;
+		 decodeTable[pad] = PAD;
+	 }
+
+	 /**
+	  * Advances a scan of encoded data over a character of the given table
+	  * value. These are the rules of the accepted input: CR and LF characters
+	  * are skipped, everything else must belong to the Base64 alphabet, the
+	  * pads may only end a group, and nothing may follow a padded group.
+	  * <p>
+	  * The state holds the number of characters of the current group in its
+	  * bits 0 and 1, and the pads among them in its bits 2 to 4. A complete
+	  * group leaves 0, or {@link #END} with its pads after a padded group; the
+	  * state is -1 once the data are not valid.
+	  */
+	 static int step(int state, int v) {
+		 if (state < 0 || state >= END) {
+			 // nothing may follow a padded group
+			 return -1;
+		 }
+		 if (v == NEWLINE) {
+			 return state;
+		 }
+		 if (v == INVALID) {
+			 return -1;
+		 }
+		 int count = (state & 3) + 1;
+		 int pads = state >>> 2;
+		 if (v == PAD) {
+			 pads++;
+		 } else if (pads > 0) {
+			 return -1;
+		 }
+		 if (count == 4) {
+			 return pads > 0 ? END | pads << 2 : 0;
+		 }
+		 return count | pads << 2;
+	 }
+
+	 /**
+	  * Returns the number of pads of a scan state.
+	  */
+	 static int pads(int state) {
+		 return state >>> 2 & 7;
+	 }
+
+	 /**
+	  * Returns the number of bytes of a complete group with the given number
+	  * of pads; "X===" decodes to 1 byte.
+	  */
+	 static int groupLength(int pads) {
+		 return 3 - Math.min(pads, 2);
+	 }
+
+	 /**
+	  * Sets the position of a buffer. The call goes through {@link Buffer}, as
+	  * the covariant overrides of the byte buffer exist only since java 9.
+	  */
+	 static void position(Buffer buffer, int position) {
+		 buffer.position(position);
+	 }
+
+	 /**
+	  * Clears a buffer, through {@link Buffer} like {@link #position(Buffer, int)}.
+	  */
+	 static void clear(Buffer buffer) {
+		 buffer.clear();
+	 }
+
+	 /**
+	  * Flips a buffer, through {@link Buffer} like {@link #position(Buffer, int)}.
+	  */
+	 static void flip(Buffer buffer) {
+		 buffer.flip();
+	 }
+
+	 /**
+	  * Waits for a task and returns its result. An I/O exception, a runtime
+	  * exception or an error of the task is rethrown as it is, any other
+	  * failure is wrapped in an I/O exception.
+	  */
+	 static <V> V await(Future<V> future) throws IOException {
+		 try {
+			 return future.get();
+		 } catch (InterruptedException e) {
+			 Thread.currentThread().interrupt();
+			 throw new IOException("Interrupted", e);
+		 } catch (ExecutionException e) {
+			 Throwable cause = e.getCause();
+			 if (cause instanceof IOException) {
+				 throw (IOException) cause;
+			 }
+			 if (cause instanceof RuntimeException) {
+				 throw (RuntimeException) cause;
+			 }
+			 if (cause instanceof Error) {
+				 throw (Error) cause;
+			 }
+			 throw new IOException(cause);
+		 }
+	 }
+}
@@ -0,0 +1,38 @@
+package com.sunchao.complex.base64;
+
+/**
+ * <p>
+ * The hooks for vector implementations of the Base64 inner loops.
+ * </p>
+ * <p>
+ * This version does nothing; the multi-release layer for java 17 and later
+ * implements them with the incubating vector API, when the
+ * <code>jdk.incubator.vector</code> module is added to the runtime.
+ * </p>
+ *
+ * @author Administrator
+ *
+ */
+final class VectorKernels {
+
+	private VectorKernels() {
+	}
+
+	/**
+	 * Encodes the leading groups of 3 bytes.
+	 *
+	 * @return The number of groups encoded.
+	 */
+	static int encode(byte[] src, int s, byte[] dst, int d, int groups) {
+		return 0;
+	}
+
+	/**
+	 * Decodes the leading groups of 4 alphabet characters.
+	 *
+	 * @return The number of groups decoded.
+	 */
+	static int decode(byte[] src, int s, byte[] dst, int d, int groups) {
+		return 0;
+	}
+}
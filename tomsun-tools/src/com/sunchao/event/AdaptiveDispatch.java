@@ -0,0 +1,311 @@
+package com.sunchao.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A dispatch mode of {@link DefaultEventSource} which invokes cheap
+ * listeners inline and moves slow ones to an asynchronous lane, based on
+ * their measured invocation latency.
+ * </p>
+ * <p>
+ * The latency of each registration is kept as an exponentially decayed
+ * average. A listener invoked inline is measured on its first invocations
+ * and then only on every {@value #SAMPLE_INTERVAL}th one, so a cheap
+ * listener does not pay for the measurement on every call. A registration
+ * whose average exceeds the threshold is offloaded to the lane, where it is
+ * measured on each invocation; it is moved back inline when its average
+ * drops below half of the threshold. So the classification follows the
+ * listeners when their costs change.
+ * </p>
+ * <p>
+ * Offloaded listeners receive the events in the order they were fired,
+ * if the lane is single threaded, but no longer in order with the other
+ * listeners of an event.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class AdaptiveDispatch {
+
+	/** The number of inline invocations between two measurements */
+	static final int SAMPLE_INTERVAL = 16;
+
+	/** The number of first invocations which are always measured */
+	private static final int WARM_UP = 8;
+
+	/** The weight of a new sample in the average, as a right shift */
+	private static final int DECAY_SHIFT = 3;
+
+	/** The latency statistics of the registrations */
+	private final ConcurrentMap<EventListenerRegistrationData<?>, ListenerStats> stats =
+			new ConcurrentHashMap<EventListenerRegistrationData<?>, ListenerStats>();
+
+	/** The asynchronous lane of the slow listeners */
+	private final Executor lane;
+
+	/** The executor created by this instance, null if supplied */
+	private final ExecutorService ownLane;
+
+	/** The latency above which a listener is offloaded, in nanoseconds */
+	private final long slowThreshold;
+
+	/**
+	 * Creates a new instance of {@code AdaptiveDispatch} with its own
+	 * single threaded lane.
+	 *
+	 * @param slowThreshold
+	 *             the latency above which a listener is offloaded.
+	 * @param unit
+	 *             the time unit of the threshold.
+	 */
+	public AdaptiveDispatch(long slowThreshold, TimeUnit unit)
+	{
+		this(Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "event-slow-lane");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}), slowThreshold, unit, true);
+	}
+
+	/**
+	 * Creates a new instance of {@code AdaptiveDispatch} using the given
+	 * executor as lane of the slow listeners.
+	 *
+	 * @param lane
+	 *             the executor of the slow listeners (must not be <b>null</b>).
+	 * @param slowThreshold
+	 *             the latency above which a listener is offloaded.
+	 * @param unit
+	 *             the time unit of the threshold.
+	 */
+	public AdaptiveDispatch(Executor lane, long slowThreshold, TimeUnit unit)
+	{
+		this(lane, slowThreshold, unit, false);
+	}
+
+	private AdaptiveDispatch(Executor lane, long slowThreshold, TimeUnit unit,
+			boolean own)
+	{
+		if (lane == null)
+		{
+			throw new IllegalArgumentException("Lane must not be null!");
+		}
+		if (slowThreshold <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Threshold must be greater than 0: " + slowThreshold);
+		}
+		this.lane = lane;
+		this.ownLane = own ? (ExecutorService) lane : null;
+		this.slowThreshold = unit.toNanos(slowThreshold);
+	}
+
+	/**
+	 * Returns whether the listener of the registration is currently
+	 * offloaded to the asynchronous lane.
+	 *
+	 * @param registration
+	 *             the listener registration.
+	 * @return
+	 *             whether the listener is offloaded.
+	 */
+	public boolean isOffloaded(EventListenerRegistrationData<?> registration)
+	{
+		ListenerStats s = stats.get(registration);
+		return s != null && s.offloaded;
+	}
+
+	/**
+	 * Returns the decayed average latency of the registration.
+	 *
+	 * @param registration
+	 *             the listener registration.
+	 * @param unit
+	 *             the time unit of the result.
+	 * @return
+	 *             the average latency, or -1 if it was not measured yet.
+	 */
+	public long getAverageLatency(EventListenerRegistrationData<?> registration,
+			TimeUnit unit)
+	{
+		ListenerStats s = stats.get(registration);
+		return s == null || s.average < 0 ? -1
+				: unit.convert(s.average, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the lane created by this instance. A supplied lane is left to
+	 * its owner.
+	 */
+	public void shutdown()
+	{
+		if (ownLane != null)
+		{
+			ownLane.shutdown();
+		}
+	}
+
+	/**
+	 * Invokes the listener of the registration, inline or on the lane.
+	 *
+	 * @param registration
+	 *             the listener registration.
+	 * @param listener
+	 *             the listener to be invoked, which may wrap the registered
+	 *             one.
+	 * @param event
+	 *             the event.
+	 * @param source
+	 *             the event source, which reports the exceptions of the
+	 *             offloaded listeners.
+	 */
+	void invoke(EventListenerRegistrationData<?> registration,
+			final EventListener<?> listener, final Event event,
+			final DefaultEventSource source)
+	{
+		final ListenerStats s = statsOf(registration);
+		if (s.offloaded)
+		{
+			lane.execute(new Runnable() {
+				@Override
+				public void run()
+				{
+					long start = System.nanoTime();
+					try
+					{
+						EventListenerList.invoke(listener, event);
+					}
+					catch (RuntimeException ex)
+					{
+						source.reportListenerError(event, ex);
+					}
+					finally
+					{
+						s.sample(System.nanoTime() - start);
+					}
+				}
+			});
+		}
+		else if (s.measures())
+		{
+			long start = System.nanoTime();
+			try
+			{
+				EventListenerList.invoke(listener, event);
+			}
+			finally
+			{
+				s.sample(System.nanoTime() - start);
+			}
+		}
+		else
+		{
+			EventListenerList.invoke(listener, event);
+		}
+	}
+
+	/**
+	 * Drops the statistics of a removed registration.
+	 */
+	void forget(EventListenerRegistrationData<?> registration)
+	{
+		stats.remove(registration);
+	}
+
+	/**
+	 * Drops the statistics of all registrations.
+	 */
+	void clear()
+	{
+		stats.clear();
+	}
+
+	private ListenerStats statsOf(EventListenerRegistrationData<?> registration)
+	{
+		ListenerStats s = stats.get(registration);
+		if (s == null)
+		{
+			ListenerStats created = new ListenerStats();
+			s = stats.putIfAbsent(registration, created);
+			if (s == null)
+			{
+				s = created;
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * <p>
+	 * The latency statistics of a registration. The updates are not
+	 * atomic; a lost sample only delays the next evaluation.
+	 * </p>
+	 */
+	private final class ListenerStats
+	{
+		/** the number of first inline invocations still to be measured */
+		private int warmUp = WARM_UP;
+
+		/** the number of inline invocations after the warm-up, wrapping */
+		private int invocations;
+
+		/** the decayed average latency in nanoseconds, -1 if unknown */
+		private volatile long average = -1;
+
+		/** the flag whether the listener is offloaded */
+		private volatile boolean offloaded;
+
+		/**
+		 * Returns whether an inline invocation is measured: each of the
+		 * warm-up, and then every {@value #SAMPLE_INTERVAL}th one; the
+		 * masked count stays correct when the counter wraps.
+		 */
+		private boolean measures()
+		{
+			if (warmUp > 0)
+			{
+				warmUp--;
+				return true;
+			}
+			return (++invocations & (SAMPLE_INTERVAL - 1)) == 0;
+		}
+
+		/**
+		 * Adds a measured latency to the average and evaluates the
+		 * classification of the listener.
+		 */
+		private void sample(long latency)
+		{
+			long current = average;
+			long next = current < 0 ? latency
+					: current + ((latency - current) >> DECAY_SHIFT);
+			average = next;
+			if (offloaded)
+			{
+				if (next < slowThreshold / 2)
+				{
+					offloaded = false;
+				}
+			}
+			else if (next > slowThreshold)
+			{
+				offloaded = true;
+			}
+		}
+	}
+}
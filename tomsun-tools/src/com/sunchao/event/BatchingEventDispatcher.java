@@ -0,0 +1,395 @@
+package com.sunchao.event;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * An event dispatcher which collects the deliveries on the firing thread
+ * and hands them to an executor in batches.
+ * </p>
+ * <p>
+ * Each firing thread appends its deliveries to a buffer of its own, without
+ * a lock or an atomic operation; only the number of deliveries is published
+ * with an ordered write. The pending deliveries are submitted to the
+ * executor as a single task when they reach the maximum number, when the
+ * oldest of them reached the maximum age, or when the thread calls
+ * {@link #flush()}. So the executor queue and the lock of the buffer are
+ * touched once per batch instead of once per event.
+ * </p>
+ * <p>
+ * The age is checked when the next event is dispatched, and by a shared
+ * daemon thread sweeping the buffers of all firing threads every half of
+ * the maximum age. So the deliveries of a thread which stops firing, or
+ * which terminates, are submitted at most one and a half times the maximum
+ * age after they were dispatched.
+ * </p>
+ * <p>
+ * The deliveries of a batch run in the order they were dispatched. The
+ * batches of one thread are handed to the executor in order, by the thread
+ * or by the sweep, under the lock of the buffer; so they are delivered in
+ * order if the executor is single threaded.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class BatchingEventDispatcher implements EventDispatcher {
+
+	/** The executor running the batches */
+	private final Executor executor;
+
+	/** The maximum number of deliveries of a batch */
+	private final int maxBatchSize;
+
+	/** The maximum age of a batch in nanoseconds */
+	private final long maxBatchAge;
+
+	/** The slots of the batches being collected, one for each firing thread */
+	private final ThreadLocal<Slot> slots = new ThreadLocal<Slot>();
+
+	/** The slots of all firing threads, swept for aged batches */
+	private final Queue<Slot> registeredSlots = new ConcurrentLinkedQueue<Slot>();
+
+	/**
+	 * Creates a new instance of {@code BatchingEventDispatcher}.
+	 *
+	 * @param executor
+	 *              the executor running the batches (must not be <b>null</b>).
+	 * @param maxBatchSize
+	 *              the maximum number of deliveries of a batch (must be
+	 *              greater than 0).
+	 * @param maxBatchAge
+	 *              the maximum age of a batch.
+	 * @param unit
+	 *              the time unit of the age.
+	 */
+	public BatchingEventDispatcher(Executor executor, int maxBatchSize,
+			long maxBatchAge, TimeUnit unit)
+	{
+		if (executor == null)
+		{
+			throw new IllegalArgumentException("Executor must not be null!");
+		}
+		if (maxBatchSize < 1)
+		{
+			throw new IllegalArgumentException(
+					"Batch size must be greater than 0: " + maxBatchSize);
+		}
+		this.executor = executor;
+		this.maxBatchSize = maxBatchSize;
+		this.maxBatchAge = Math.max(0L, unit.toNanos(maxBatchAge));
+
+		// without an age every batch is submitted when it is dispatched
+		if (this.maxBatchAge > 0)
+		{
+			Sweep.schedule(this);
+		}
+	}
+
+	@Override
+	public void dispatch(Event event, Runnable delivery)
+	{
+		Slot slot = slots.get();
+		if (slot == null)
+		{
+			slot = new Slot(Thread.currentThread(), Math.min(maxBatchSize, 64));
+			slots.set(slot);
+			registeredSlots.add(slot);
+		}
+		long now = System.nanoTime();
+		int n = slot.size.get();
+		Runnable[] deliveries = slot.deliveries;
+		if (n == deliveries.length)
+		{
+			if (slot.taken > 0)
+			{
+				// the sweep took the start of the buffer, so a new one is
+				// started instead of growing this one
+				slot.handOver(executor);
+				n = 0;
+				deliveries = slot.deliveries;
+			}
+			else
+			{
+				deliveries = Arrays.copyOf(deliveries,
+						Math.min(maxBatchSize, n * 2));
+				slot.deliveries = deliveries;
+			}
+		}
+		if (n == slot.taken)
+		{
+			slot.since = now;
+		}
+		deliveries[n] = delivery;
+		slot.size.lazySet(n + 1);
+		if (n + 1 - slot.taken >= maxBatchSize
+				|| now - slot.since >= maxBatchAge)
+		{
+			slot.handOver(executor);
+		}
+	}
+
+	/**
+	 * Hands the deliveries collected by the calling thread to the executor.
+	 *
+	 * @return
+	 *        the number of deliveries handed over.
+	 */
+	public int flush()
+	{
+		Slot slot = slots.get();
+		return slot == null ? 0 : slot.handOver(executor);
+	}
+
+	/**
+	 * Returns the number of deliveries collected by the calling thread and
+	 * not yet handed to the executor.
+	 */
+	public int getPendingCount()
+	{
+		Slot slot = slots.get();
+		return slot == null ? 0 : slot.size.get() - slot.taken;
+	}
+
+	/** Return the maximum number of deliveries of a batch */
+	public int getMaxBatchSize()
+	{
+		return maxBatchSize;
+	}
+
+	/**
+	 * <p>
+	 * The buffer of the deliveries of a firing thread. Only the thread
+	 * appends to the buffer, and only the thread replaces it, under the lock
+	 * of the slot. The deliveries from {@code taken} up to {@code size} are
+	 * pending; they are handed over under the lock, by the thread or by the
+	 * sweep, which only moves {@code taken} forward.
+	 * </p>
+	 */
+	private static final class Slot
+	{
+		/** the firing thread */
+		private final Thread owner;
+
+		/** the capacity of a new buffer */
+		private final int capacity;
+
+		/** the deliveries, only written by the firing thread */
+		private volatile Runnable[] deliveries;
+
+		/** the number of deliveries in the buffer, published by the firing thread */
+		private final AtomicInteger size = new AtomicInteger();
+
+		/** the number of deliveries handed over, only written with the lock held */
+		private volatile int taken;
+
+		/** the time the oldest pending delivery was dispatched */
+		private volatile long since;
+
+		private Slot(Thread owner, int capacity)
+		{
+			this.owner = owner;
+			this.capacity = capacity;
+			this.deliveries = new Runnable[capacity];
+		}
+
+		/**
+		 * Hands the pending deliveries over and starts a new buffer; only
+		 * called by the firing thread.
+		 *
+		 * @return
+		 *        the number of deliveries handed over.
+		 */
+		private synchronized int handOver(Executor executor)
+		{
+			int from = taken;
+			int to = size.get();
+			Runnable[] batch = deliveries;
+			deliveries = new Runnable[capacity];
+			taken = 0;
+			size.set(0);
+			if (to > from)
+			{
+				executor.execute(new Batch(batch, from, to));
+			}
+			return to - from;
+		}
+
+		/**
+		 * Hands the pending deliveries over if the oldest of them is at least
+		 * of the given age, or in any case if <em>all</em> is set; called by
+		 * the sweep, while the firing thread may still append to the buffer.
+		 */
+		private synchronized void sweep(Sweep sweep, long now, long age,
+				boolean all)
+		{
+			int from = taken;
+			int to = size.get();
+			if (to > from && (all || now - since >= age))
+			{
+				taken = to;
+				sweep.submit(new Batch(deliveries, from, to));
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * The periodic task submitting the aged batches of a dispatcher. All the
+	 * sweeps run on one shared daemon thread. A sweep only refers weakly to
+	 * its dispatcher; when the dispatcher is gone, the last batches are
+	 * submitted and the sweep is cancelled.
+	 * </p>
+	 */
+	private static final class Sweep implements Runnable
+	{
+		/** the shared thread running the sweeps, created on first use */
+		private static final class SweeperHolder
+		{
+			static final ScheduledExecutorService sweeper =
+					Executors.newSingleThreadScheduledExecutor(
+							new ThreadFactory() {
+								@Override
+								public Thread newThread(Runnable r)
+								{
+									Thread thread = new Thread(r,
+											"event-batch-sweeper");
+									thread.setDaemon(true);
+									return thread;
+								}
+							});
+		}
+
+		/** the dispatcher */
+		private final WeakReference<BatchingEventDispatcher> dispatcher;
+
+		/** the slots of the dispatcher */
+		private final Queue<Slot> registeredSlots;
+
+		/** the executor of the dispatcher */
+		private final Executor executor;
+
+		/** the maximum age of a batch in nanoseconds */
+		private final long maxBatchAge;
+
+		/** the scheduled execution of the sweep */
+		private volatile ScheduledFuture<?> future;
+
+		private Sweep(BatchingEventDispatcher dispatcher)
+		{
+			this.dispatcher = new WeakReference<BatchingEventDispatcher>(
+					dispatcher);
+			this.registeredSlots = dispatcher.registeredSlots;
+			this.executor = dispatcher.executor;
+			this.maxBatchAge = dispatcher.maxBatchAge;
+		}
+
+		/**
+		 * Schedules the sweep of a dispatcher every half of its maximum age.
+		 */
+		private static void schedule(BatchingEventDispatcher dispatcher)
+		{
+			Sweep sweep = new Sweep(dispatcher);
+			long period = Math.max(TimeUnit.MILLISECONDS.toNanos(1L),
+					dispatcher.maxBatchAge / 2);
+			sweep.future = SweeperHolder.sweeper.scheduleAtFixedRate(sweep,
+					period, period, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public void run()
+		{
+			boolean gone = dispatcher.get() == null;
+			long now = System.nanoTime();
+			for (Slot slot : registeredSlots)
+			{
+				boolean alive = slot.owner.isAlive();
+				slot.sweep(this, now, maxBatchAge, gone || !alive);
+				if (!alive)
+				{
+					registeredSlots.remove(slot);
+				}
+			}
+			if (gone && future != null)
+			{
+				future.cancel(false);
+			}
+		}
+
+		/**
+		 * Submits a batch; a failure is passed to the uncaught exception
+		 * handler, so the following sweeps still run.
+		 */
+		private void submit(Batch batch)
+		{
+			try
+			{
+				executor.execute(batch);
+			}
+			catch (RuntimeException ex)
+			{
+				Thread current = Thread.currentThread();
+				current.getUncaughtExceptionHandler().uncaughtException(
+						current, ex);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * A batch of deliveries, a range of the buffer of a firing thread, run
+	 * as one task. An exception of a delivery is passed to the uncaught
+	 * exception handler of the executing thread, and the remaining
+	 * deliveries still run.
+	 * </p>
+	 */
+	private static final class Batch implements Runnable
+	{
+		/** the buffer holding the deliveries */
+		private final Runnable[] deliveries;
+
+		/** the index of the first delivery */
+		private final int from;
+
+		/** the index following the last delivery */
+		private final int to;
+
+		private Batch(Runnable[] deliveries, int from, int to)
+		{
+			this.deliveries = deliveries;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public void run()
+		{
+			for (int i = from; i < to; i++)
+			{
+				try
+				{
+					deliveries[i].run();
+				}
+				catch (RuntimeException ex)
+				{
+					Thread current = Thread.currentThread();
+					current.getUncaughtExceptionHandler().uncaughtException(
+							current, ex);
+				}
+			}
+		}
+	}
+}
@@ -1,267 +1,1169 @@
-package com.sunchao.event;
-
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
-public class DefaultEventSource implements EventSource{
-	
-	/**The list for managing the  registered event listeners */
-	private EventListenerList eventListeners;
-	
-	/**The Object lock which controls the access of the counter of events  */
-	private final Object lockDetailEventsCount = new Object();
-	
-	/**The counter of detail event number  */
-	private int detailEvents;
-	
-	/**
-	 * initialize the event listeners
-	 */
-	public DefaultEventSource()
-	{
-		initListeners();
-	}
-	
-	 /**
-	  * Return a collection of event listens for the defined
-	  * event.Note:there use jdk generic type to controls the 
-	  * the event listens which the event belongs to,so the
-	  * collection will contains the defined registered event
-	  * listeners with the event,also contains the event 
-	  * listeners superclass(this event)'s event listeners.
-	  * because all the event listeners belong to the father,
-	  * and can used to the son.
-	  * 
-	  * @param eventType
-	  *            the event type
-	  * @return
-	  *            the unmodifiable collection of event listens(snapshot)
-	  */
-	public <T extends Event> Collection<EventListener<? super T>> getEventListeners(
-			EventType<T> eventType)
-	{
-	    List<EventListener<? super T>> result = 
-	    		new LinkedList<EventListener<? super T>>();
-	    for(EventListener<? super T> l : eventListeners
-	    		.getEventListeners(eventType))
-	    {
-	    	result.add(l);
-	    }
-	    return Collections.unmodifiableCollection(result);
-	}
-
-	
-	/**
-	 * The method is used by access all the registrationData{@see EventListenerRegistration},
-	 * which contains the tuple(event, event listener),also the method access the metadata
-	 * without the event type,in other case, the method is independent of the event type.
-	 * 
-	 * @return
-	 *        the metadata of the registration data.
-	 */ 
-	public List<EventListenerRegistrationData<?>> getEventListenerRegistrations()
-	{
-		return eventListeners.getRegistrations();
-	}
-	
-	/** Return whether the detail event was generated */
-	public boolean isDetailEvents()
-	{
-		return checkDetailEvents(0);
-	}
-	
-	
-	 /**
-	  * The method recodes the counter of calls number
-	  * @param enable
-	  *              a flag which represent whether the details are enable
-	  *              or disable.
-	  */
-	public void setDetailEvents(boolean enable)
-	{
-		synchronized(lockDetailEventsCount)
-		{
-			if (enable)
-			{
-				detailEvents++;
-			}
-			else
-			{
-				detailEvents--;
-			}
-		}
-	}
-	
-	private void initListeners() 
-	{
-	    eventListeners = new EventListenerList();		
-	}
-
-	@Override
-	public <T extends Event> void addEventListener(EventType<T> eventType,
-			EventListener<? super T> listener) {
-		eventListeners.addEventListener(eventType, listener);
-		
-	}
-
-	@Override
-	public <T extends Event> boolean removeEventListener(
-			EventType<T> eventType, EventListener<? super T> listener) {
-		return eventListeners.removeEventListener(eventType, listener);
-	}
-	
-     /**
-      * clear the list of event listener.
-      */
-	public void clearEventListeners()
-	{
-		eventListeners.clear();
-	}
-	
-	 /**
-	  * 
-	  */
-	public void clearErrorListeners()
-	{
-	    for(EventListenerRegistrationData<? extends DefaultErrorEvent> rgData : 
-	    	eventListeners.getRegistrationsForSuperType(DefaultErrorEvent.ERROR))
-	    {
-	    	eventListeners.removeEventListener(rgData);
-	    }
-	}
-	
-	/**
-	 * copy the event listeners from this.eventlistener.
-	 * 
-	 * @param source
-	 *              the source which the copied event listeners
-	 *              belong to.
-	 */
-	public void copyEventListeners(DefaultEventSource source)
-	{
-		if (source == null)
-		{
-			throw new IllegalArgumentException(
-					"Target event source must not be null!");
-		}
-		source.eventListeners.addAll(eventListeners);
-	}
-	
-	/**
-	 * Make an even and delivers it to all the registered listeners, 
-	 * firstly check sending an event whether allowed, and if there
-	 * is listener which registered the event type existed.
-	 * @param type
-	 *             the event type.
-	 * @param attachment
-	 *             the attachment information.
-	 */
-	protected <T extends DefaultEvent> void fireEvent(final EventType<T> type,
-		   final  Map<String, Object> attachment)
-    {
-		if (checkDetailEvents(-1)) 
-		{
-			EventListenerList.EventListenerIterator<T> it =
-			      eventListeners.getEventListenerIterator(type);
-			if (it.hasNext())
-			{
-				DefaultEvent defaultEvent = createEvent(type, attachment);
-				while (it.hasNext())
-				{
-					it.invokeNext(defaultEvent);
-				}
-			}
-		}
-	}
-	
-	/**
-	 * Creates an new event.
-	 * 
-	 * @param eventType
-	 *             the event type.
-	 * @param attachment
-	 *             the attachment information.
-	 * @return
-	 *             the created event.
-	 */
-	protected <T extends DefaultEvent> DefaultEvent createEvent(
-			EventType<T> eventType, Map<String, Object> attachment)
-	{
-		return new DefaultEvent(this, eventType, attachment);
-	}
-	
-	/**
-	 * Makes an new error(exception) event,and delivers to all the
-	 * registered event listeners.
-	 * @param type
-	 *            the event type.
-	 * @param opType
-	 *            the operation which occurs an exception.
-	 * @param attachment
-	 *            the attachment information.
-	 * @param cause
-	 *            the stored exception.
-	 */
-	public <T extends DefaultErrorEvent> void fireError(EventType<T> type,
-			EventType<?> opType, Map<String, Object> attachment, Throwable cause)
-	{
-         EventListenerList.EventListenerIterator<T> it = 
-        		 eventListeners.getEventListenerIterator(type);	
-         if (it.hasNext())
-         {
-        	 DefaultErrorEvent errorEvent = createErrorEvent(
-        			 type, opType, attachment, cause);
-        	 while (it.hasNext())
-        	 {
-        		 it.invokeNext(errorEvent);
-        	 }
-         }
-	}
-	
-	/**
-	 * Cope the event source.
-	 */
-	@Override
-	protected DefaultEventSource clone() throws CloneNotSupportedException {
-		DefaultEventSource copy = (DefaultEventSource) super.clone();
-		copy.initListeners();
-		return copy;
-	}
-	
-	/**
-	 * Creates an new error event.
-	 * 
-	 * @param type
-	 *            the event type.
-	 * @param opType
-	 *            the operation type ocurrs
-	 * @param attachment
-	 *            the attachment information
-	 * @param cause
-	 *            the exception stored in the event.
-	 * @return
-	 *            an new error event.
-	 */
-	protected <T extends DefaultErrorEvent> DefaultErrorEvent createErrorEvent(
-			EventType<? extends DefaultErrorEvent> type, EventType<?> opType, 
-			Map<String, Object> attachment,Throwable cause)
-	{
-		 return new DefaultErrorEvent(this, type, opType, attachment, cause);
-	}
-	
-	/**
-	 * 
-	 * @param limit
-	 * @return
-	 */
-	private boolean checkDetailEvents(int limit)
-	{
-		synchronized (lockDetailEventsCount)
-		{
-			return detailEvents > limit;
-		}
-	}
-}
+package com.sunchao.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DefaultEventSource implements EventSource{
+	
+	/**The resolution of the timer of the delayed events in milliseconds */
+	private static final long TIMER_TICK_MILLIS = 1;
+	
+	/**The list for managing the  registered event listeners */
+	private EventListenerList eventListeners;
+	
+	/**The Object lock which controls the access of the counter of events  */
+	private final Object lockDetailEventsCount = new Object();
+	
+	/**The counter of detail event number  */
+	private int detailEvents;
+	
+	/**The pool on which parallel-safe listeners of an event are forked */
+	private volatile ForkJoinPool parallelPool;
+	
+	/**The dispatcher of the fired events, null for synchronous delivery */
+	private volatile EventDispatcher eventDispatcher;
+	
+	/**The tracer of the fired events, null if tracing is disabled */
+	private volatile EventTracer eventTracer;
+	
+	/**The adaptive dispatch of slow listeners, null to invoke all inline */
+	private volatile AdaptiveDispatch adaptiveDispatch;
+	
+	/**The Object lock which controls the update of the duplicate filters */
+	private final Object lockDuplicateFilters = new Object();
+	
+	/**The duplicate filters by event type, replaced on each update */
+	private volatile Map<EventType<?>, DuplicateEventFilter> duplicateFilters =
+			Collections.emptyMap();
+	
+	/**The deferred events of the batch of the current thread */
+	private ThreadLocal<Set<DeferredEvent>> batches;
+	
+	/**The number of threads with an active batch */
+	private AtomicInteger activeBatches;
+	
+	/**The Object lock which controls the creation of the timer wheel */
+	private Object lockTimerWheel;
+	
+	/**The timer wheel of the delayed events, created on first use */
+	private HashedTimerWheel timerWheel;
+	
+	/**
+	 * initialize the event listeners
+	 */
+	public DefaultEventSource()
+	{
+		initListeners();
+		initBatches();
+		initTimer();
+	}
+	
+	 /**
+	  * Return a collection of event listens for the defined
+	  * event.Note:there use jdk generic type to controls the 
+	  * the event listens which the event belongs to,so the
+	  * collection will contains the defined registered event
+	  * listeners with the event,also contains the event 
+	  * listeners superclass(this event)'s event listeners.
+	  * because all the event listeners belong to the father,
+	  * and can used to the son.
+	  * 
+	  * @param eventType
+	  *            the event type
+	  * @return
+	  *            the unmodifiable collection of event listens(snapshot)
+	  */
+	public <T extends Event> Collection<EventListener<? super T>> getEventListeners(
+			EventType<T> eventType)
+	{
+	    List<EventListener<? super T>> result = 
+	    		new LinkedList<EventListener<? super T>>();
+	    for(EventListener<? super T> l : eventListeners
+	    		.getEventListeners(eventType))
+	    {
+	    	result.add(l);
+	    }
+	    return Collections.unmodifiableCollection(result);
+	}
+
+	
+	/**
+	 * The method is used by access all the registrationData{@see EventListenerRegistration},
+	 * which contains the tuple(event, event listener),also the method access the metadata
+	 * without the event type,in other case, the method is independent of the event type.
+	 * 
+	 * @return
+	 *        the metadata of the registration data.
+	 */ 
+	public List<EventListenerRegistrationData<?>> getEventListenerRegistrations()
+	{
+		return eventListeners.getRegistrations();
+	}
+	
+	/** Return whether the detail event was generated */
+	public boolean isDetailEvents()
+	{
+		return checkDetailEvents(0);
+	}
+	
+	
+	 /**
+	  * The method recodes the counter of calls number
+	  * @param enable
+	  *              a flag which represent whether the details are enable
+	  *              or disable.
+	  */
+	public void setDetailEvents(boolean enable)
+	{
+		synchronized(lockDetailEventsCount)
+		{
+			if (enable)
+			{
+				detailEvents++;
+			}
+			else
+			{
+				detailEvents--;
+			}
+		}
+	}
+	
+	private void initListeners() 
+	{
+	    eventListeners = new EventListenerList();		
+	}
+	
+	private void initBatches()
+	{
+		batches = new ThreadLocal<Set<DeferredEvent>>();
+		activeBatches = new AtomicInteger();
+	}
+	
+	private void initTimer()
+	{
+		lockTimerWheel = new Object();
+		timerWheel = null;
+	}
+
+	@Override
+	public <T extends Event> void addEventListener(EventType<T> eventType,
+			EventListener<? super T> listener) {
+		eventListeners.addEventListener(eventType, listener);
+		
+	}
+	
+	/**
+	 * Adds an event listener for the specified event type, which is
+	 * optionally marked as parallel-safe. When an event is fired, all the
+	 * parallel-safe listeners of this event are forked on the parallel pool
+	 * and joined before the fire method returns, the other listeners are
+	 * invoked one by one in the registration order.
+	 * 
+	 * @param eventType
+	 *                 the event type(must not be<b>null</b>)
+	 * @param listener
+	 *                 the listener to be registered(must not be <b>null</b>)
+	 * @param parallelSafe
+	 *                 whether the listener does not depend on the other
+	 *                 listeners of the same event.
+	 * @see #setParallelPool(ForkJoinPool)
+	 */
+	public <T extends Event> void addEventListener(EventType<T> eventType,
+			EventListener<? super T> listener, boolean parallelSafe)
+	{
+		eventListeners.addEventListener(eventType, listener, parallelSafe);
+	}
+	
+	/**
+	 * Sets the pool used to invoke the parallel-safe listeners. If no pool
+	 * is set (or <b>null</b>), a shared default pool is used.
+	 * 
+	 * @param pool
+	 *             the fork-join pool.
+	 */
+	public void setParallelPool(ForkJoinPool pool)
+	{
+		this.parallelPool = pool;
+	}
+	
+	/** Return the pool used to invoke the parallel-safe listeners */
+	public ForkJoinPool getParallelPool()
+	{
+		return parallelPool;
+	}
+	
+	/**
+	 * Sets the dispatcher which decides on which thread the fired events
+	 * are delivered. If no dispatcher is set (or <b>null</b>), the events are
+	 * delivered synchronously on the firing thread. The listeners of an
+	 * event are resolved when it is fired; an exception thrown by a listener
+	 * on a dispatcher thread is reported as an {@link DefaultErrorEvent#ERROR}
+	 * event.
+	 * 
+	 * @param dispatcher
+	 *             the event dispatcher.
+	 */
+	public void setEventDispatcher(EventDispatcher dispatcher)
+	{
+		this.eventDispatcher = dispatcher;
+	}
+	
+	/** Return the dispatcher of the fired events */
+	public EventDispatcher getEventDispatcher()
+	{
+		return eventDispatcher;
+	}
+	
+	/**
+	 * Sets the tracer which records the latency between firing a sampled
+	 * event and delivering it to each listener. If no tracer is set (or
+	 * <b>null</b>), tracing is disabled. The tracer is not closed by the
+	 * event source.
+	 * 
+	 * @param tracer
+	 *             the event tracer.
+	 */
+	public void setEventTracer(EventTracer tracer)
+	{
+		this.eventTracer = tracer;
+	}
+	
+	/** Return the tracer of the fired events */
+	public EventTracer getEventTracer()
+	{
+		return eventTracer;
+	}
+	
+	/**
+	 * Sets the adaptive dispatch mode, which invokes the cheap listeners
+	 * inline and offloads the slow ones to an asynchronous lane, based on
+	 * their measured latency. If no adaptive dispatch is set (or
+	 * <b>null</b>), all listeners are invoked inline. Parallel-safe listeners
+	 * are always forked on the parallel pool.
+	 * 
+	 * @param adaptive
+	 *             the adaptive dispatch.
+	 */
+	public void setAdaptiveDispatch(AdaptiveDispatch adaptive)
+	{
+		this.adaptiveDispatch = adaptive;
+	}
+	
+	/** Return the adaptive dispatch mode */
+	public AdaptiveDispatch getAdaptiveDispatch()
+	{
+		return adaptiveDispatch;
+	}
+	
+	/**
+	 * Enables or disables the compiled dispatch, which delivers the events
+	 * through a chain of method handles compiled per event type, see
+	 * {@link EventListenerList#setCompiledDispatch(boolean)}. It only
+	 * applies to events delivered synchronously on the firing thread, while
+	 * neither tracing nor adaptive dispatch is active.
+	 * 
+	 * @param enable
+	 *             whether the events are delivered by compiled chains.
+	 */
+	public void setCompiledDispatch(boolean enable)
+	{
+		eventListeners.setCompiledDispatch(enable);
+	}
+	
+	/** Return whether the events are delivered by compiled chains */
+	public boolean isCompiledDispatch()
+	{
+		return eventListeners.isCompiledDispatch();
+	}
+
+	/**
+	 * Sets the filter which suppresses the duplicates of the events of the
+	 * given type fired through {@link #fireEvent(EventType, Map)}. An event
+	 * is a duplicate of an earlier one with the same type and an equal
+	 * attachment. The filter only applies to the exact type, not to its sub
+	 * types.
+	 * 
+	 * @param type
+	 *             the event type (must not be <b>null</b>).
+	 * @param filter
+	 *             the duplicate filter, <b>null</b> to remove it.
+	 */
+	public void setDuplicateFilter(EventType<?> type, DuplicateEventFilter filter)
+	{
+		if (type == null)
+		{
+			throw new IllegalArgumentException("Event type must not be null!");
+		}
+		synchronized (lockDuplicateFilters)
+		{
+			Map<EventType<?>, DuplicateEventFilter> filters =
+					new HashMap<EventType<?>, DuplicateEventFilter>(duplicateFilters);
+			if (filter == null)
+			{
+				filters.remove(type);
+			}
+			else
+			{
+				filters.put(type, filter);
+			}
+			duplicateFilters = filters.isEmpty()
+					? Collections.<EventType<?>, DuplicateEventFilter>emptyMap()
+					: filters;
+		}
+	}
+	
+	/**
+	 * Returns the duplicate filter of the given event type.
+	 * 
+	 * @param type
+	 *             the event type.
+	 * @return
+	 *             the duplicate filter, <b>null</b> if there is none.
+	 */
+	public DuplicateEventFilter getDuplicateFilter(EventType<?> type)
+	{
+		return duplicateFilters.get(type);
+	}
+
+	@Override
+	public <T extends Event> boolean removeEventListener(
+			EventType<T> eventType, EventListener<? super T> listener) {
+		boolean removed = eventListeners.removeEventListener(eventType, listener);
+		AdaptiveDispatch adaptive = adaptiveDispatch;
+		if (removed && adaptive != null)
+		{
+			adaptive.forget(new EventListenerRegistrationData<T>(eventType,
+					listener));
+		}
+		return removed;
+	}
+	
+     /**
+      * clear the list of event listener.
+      */
+	public void clearEventListeners()
+	{
+		eventListeners.clear();
+		AdaptiveDispatch adaptive = adaptiveDispatch;
+		if (adaptive != null)
+		{
+			adaptive.clear();
+		}
+	}
+	
+	 /**
+	  * 
+	  */
+	public void clearErrorListeners()
+	{
+	    for(EventListenerRegistrationData<? extends DefaultErrorEvent> rgData : 
+	    	eventListeners.getRegistrationsForSuperType(DefaultErrorEvent.ERROR))
+	    {
+	    	eventListeners.removeEventListener(rgData);
+	    	AdaptiveDispatch adaptive = adaptiveDispatch;
+	    	if (adaptive != null)
+	    	{
+	    		adaptive.forget(rgData);
+	    	}
+	    }
+	}
+	
+	/**
+	 * copy the event listeners from this.eventlistener.
+	 * 
+	 * @param source
+	 *              the source which the copied event listeners
+	 *              belong to.
+	 */
+	public void copyEventListeners(DefaultEventSource source)
+	{
+		if (source == null)
+		{
+			throw new IllegalArgumentException(
+					"Target event source must not be null!");
+		}
+		source.eventListeners.addAll(eventListeners);
+	}
+	
+	/**
+	 * Make an even and delivers it to all the registered listeners, 
+	 * firstly check sending an event whether allowed, and if there
+	 * is listener which registered the event type existed.
+	 * @param type
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 */
+	protected <T extends DefaultEvent> void fireEvent(final EventType<T> type,
+		   final  Map<String, Object> attachment)
+    {
+		if (checkDetailEvents(-1)) 
+		{
+			Map<EventType<?>, DuplicateEventFilter> filters = duplicateFilters;
+			if (!filters.isEmpty())
+			{
+				DuplicateEventFilter filter = filters.get(type);
+				if (filter != null && filter.isDuplicate(type, this, attachment))
+				{
+					return;
+				}
+			}
+			if (activeBatches.get() != 0)
+			{
+				Set<DeferredEvent> batch = batches.get();
+				if (batch != null)
+				{
+					batch.add(new DeferredEvent(type, attachment));
+					return;
+				}
+			}
+			EventListenerList.EventListenerIterator<T> it =
+			      eventListeners.getEventListenerIterator(type);
+			if (it.hasNext())
+			{
+				DefaultEvent defaultEvent = createEvent(type, attachment);
+				dispatch(it, defaultEvent);
+			}
+		}
+	}
+	
+	/**
+	 * Starts a batch on the current thread. Until the batch is committed or
+	 * rolled back, the events fired by this thread through
+	 * {@link #fireEvent(EventType, Map)} are deferred; exact duplicates,
+	 * i.e. events of the same type with equal attachments, are collapsed.
+	 * Error events are never deferred. The attachments of deferred events
+	 * must not be modified until the batch ends.
+	 * 
+	 * @throws IllegalStateException
+	 *             if a batch is already active on this thread.
+	 */
+	public void beginBatch()
+	{
+		if (batches.get() != null)
+		{
+			throw new IllegalStateException(
+					"A batch is already active on this thread!");
+		}
+		batches.set(new LinkedHashSet<DeferredEvent>());
+		activeBatches.incrementAndGet();
+	}
+	
+	/** Return whether a batch is active on the current thread */
+	public boolean isBatchActive()
+	{
+		return activeBatches.get() != 0 && batches.get() != null;
+	}
+	
+	/**
+	 * Ends the batch of the current thread and delivers its deferred events
+	 * in the order they were first fired. The listeners of all the deferred
+	 * events are resolved in a single pass over the registry. Events fired
+	 * by the listeners meanwhile are not deferred any more. All the deferred
+	 * events are delivered even if a listener throws an exception; the
+	 * first exception is rethrown afterwards, with the later ones added as
+	 * suppressed exceptions.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no batch is active on this thread.
+	 */
+	public void commit()
+	{
+		Set<DeferredEvent> batch = endBatch();
+		if (batch.isEmpty())
+		{
+			return;
+		}
+		
+		fireAll(batch, false);
+	}
+	
+	/**
+	 * Ends the batch of the current thread and discards its deferred
+	 * events.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no batch is active on this thread.
+	 */
+	public void rollback()
+	{
+		endBatch();
+	}
+	
+	/**
+	 * Removes the batch of the current thread.
+	 * 
+	 * @return
+	 *        the deferred events of the batch.
+	 */
+	private Set<DeferredEvent> endBatch()
+	{
+		Set<DeferredEvent> batch = batches.get();
+		if (batch == null)
+		{
+			throw new IllegalStateException(
+					"No batch is active on this thread!");
+		}
+		batches.remove();
+		activeBatches.decrementAndGet();
+		return batch;
+	}
+	
+	/**
+	 * Fires an event once after the given delay. The delayed events are
+	 * kept in a hashed timer wheel with a resolution of 1 ms, whose thread
+	 * fires all the events expired at the same tick as one batch; an
+	 * exception thrown by a listener is reported as an
+	 * {@link DefaultErrorEvent#ERROR} event.
+	 * 
+	 * @param type
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 * @param delay
+	 *             the delay.
+	 * @param unit
+	 *             the time unit of the delay.
+	 * @return
+	 *             the handle for cancelling the event.
+	 */
+	protected <T extends DefaultEvent> ScheduledEvent fireLater(
+			EventType<T> type, Map<String, Object> attachment, long delay,
+			TimeUnit unit)
+	{
+		return getTimerWheel().schedule(new DeferredEvent(type, attachment),
+				delay, 0, unit);
+	}
+	
+	/**
+	 * Fires an event periodically, first after the initial delay and then
+	 * at the given rate, until it is cancelled. The events are fired like
+	 * the ones of {@link #fireLater(EventType, Map, long, TimeUnit)}.
+	 * 
+	 * @param type
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 * @param initialDelay
+	 *             the delay of the first event.
+	 * @param period
+	 *             the period between two events (must be greater than 0).
+	 * @param unit
+	 *             the time unit of the delay and the period.
+	 * @return
+	 *             the handle for cancelling the events.
+	 */
+	protected <T extends DefaultEvent> ScheduledEvent fireAtFixedRate(
+			EventType<T> type, Map<String, Object> attachment,
+			long initialDelay, long period, TimeUnit unit)
+	{
+		if (period <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Period must be greater than 0: " + period);
+		}
+		return getTimerWheel().schedule(new DeferredEvent(type, attachment),
+				initialDelay, period, unit);
+	}
+	
+	/**
+	 * Runs a task on the timer thread of the delayed events, first after
+	 * the initial delay and then periodically, until it is cancelled. An
+	 * exception of the task is passed to the uncaught exception handler of
+	 * the timer thread.
+	 * 
+	 * @param task
+	 *             the task.
+	 * @param initialDelay
+	 *             the delay of the first run.
+	 * @param period
+	 *             the period between two runs, 0 to run it once.
+	 * @param unit
+	 *             the time unit of the delay and the period.
+	 * @return
+	 *             the handle for cancelling the task.
+	 */
+	ScheduledEvent scheduleTask(Runnable task, long initialDelay, long period,
+			TimeUnit unit)
+	{
+		return getTimerWheel().schedule(task, initialDelay, period, unit);
+	}
+	
+	/**
+	 * Fires an event like {@link #fireEvent(EventType, Map)}, but from a
+	 * thread where there is no caller to receive the exceptions of the
+	 * listeners, which are reported as error events. The event is neither
+	 * filtered nor deferred by a batch.
+	 * 
+	 * @param type
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 */
+	void fireDetached(EventType<? extends DefaultEvent> type,
+			Map<String, Object> attachment)
+	{
+		if (checkDetailEvents(-1))
+		{
+			fireAll(Collections.singletonList(new DeferredEvent(type,
+					attachment)), true);
+		}
+	}
+	
+	/**
+	 * Stops the timer thread of the delayed events, if it was started. The
+	 * events not yet fired are discarded; a later call of {@code fireLater}
+	 * starts a new timer.
+	 */
+	public void shutdownTimer()
+	{
+		HashedTimerWheel wheel;
+		synchronized (lockTimerWheel)
+		{
+			wheel = timerWheel;
+			timerWheel = null;
+		}
+		if (wheel != null)
+		{
+			wheel.stop();
+		}
+	}
+	
+	/**
+	 * Returns the timer wheel of the delayed events, which is created on
+	 * first use.
+	 */
+	private HashedTimerWheel getTimerWheel()
+	{
+		synchronized (lockTimerWheel)
+		{
+			if (timerWheel == null)
+			{
+				timerWheel = new HashedTimerWheel(TIMER_TICK_MILLIS,
+						TimeUnit.MILLISECONDS,
+						new HashedTimerWheel.ExpirationHandler() {
+							@Override
+							public void expired(
+									List<HashedTimerWheel.Timeout> timeouts)
+							{
+								fireExpired(timeouts);
+							}
+						}, "event-timer");
+			}
+			return timerWheel;
+		}
+	}
+	
+	/**
+	 * Fires the events of a batch of expired timeouts.
+	 */
+	private void fireExpired(List<HashedTimerWheel.Timeout> timeouts)
+	{
+		List<DeferredEvent> events =
+				new ArrayList<DeferredEvent>(timeouts.size());
+		for (HashedTimerWheel.Timeout timeout : timeouts)
+		{
+			Object payload = timeout.getPayload();
+			if (payload instanceof Runnable)
+			{
+				runTask((Runnable) payload);
+			}
+			else
+			{
+				events.add((DeferredEvent) payload);
+			}
+		}
+		if (!events.isEmpty() && checkDetailEvents(-1))
+		{
+			fireAll(events, true);
+		}
+	}
+	
+	/**
+	 * Runs a scheduled task, passing its exception to the uncaught
+	 * exception handler, so the other expired timeouts are still handled.
+	 */
+	private static void runTask(Runnable task)
+	{
+		try
+		{
+			task.run();
+		}
+		catch (RuntimeException ex)
+		{
+			Thread current = Thread.currentThread();
+			current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+		}
+	}
+	
+	/**
+	 * Fires a batch of events, whose listeners are resolved in a single
+	 * pass over the registry. An exception thrown by the delivery of an
+	 * event does not stop the delivery of the following ones; the first
+	 * exception is rethrown when all the events are delivered, the later
+	 * ones are suppressed by it.
+	 * 
+	 * @param events
+	 *             the events to be fired.
+	 * @param detached
+	 *             whether there is no caller to receive the exceptions of
+	 *             the listeners, which are reported as error events then.
+	 */
+	private void fireAll(Collection<DeferredEvent> events, boolean detached)
+	{
+		List<EventType<?>> types = new ArrayList<EventType<?>>(events.size());
+		for (DeferredEvent deferred : events)
+		{
+			types.add(deferred.type);
+		}
+		// read before the pass, like the version of a dispatch chain
+		long version = eventListeners.getVersion();
+		Map<EventType<?>, List<EventListenerRegistrationData<?>>> resolved =
+				eventListeners.resolve(types);
+		RuntimeException failure = null;
+		for (DeferredEvent deferred : events)
+		{
+			List<EventListenerRegistrationData<?>> registrations =
+					resolved.get(deferred.type);
+			if (registrations.isEmpty())
+			{
+				continue;
+			}
+			try
+			{
+				dispatch(eventListeners.getEventListenerIterator(deferred.type,
+						registrations, version), createEvent(deferred.type,
+						deferred.attachment), detached);
+			}
+			catch (RuntimeException ex)
+			{
+				if (failure == null)
+				{
+					failure = ex;
+				}
+				else
+				{
+					failure.addSuppressed(ex);
+				}
+			}
+		}
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Creates an new event.
+	 * 
+	 * @param eventType
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 * @return
+	 *             the created event.
+	 */
+	protected <T extends DefaultEvent> DefaultEvent createEvent(
+			EventType<T> eventType, Map<String, Object> attachment)
+	{
+		return new DefaultEvent(this, eventType, attachment);
+	}
+	
+	/**
+	 * Makes an new error(exception) event,and delivers to all the
+	 * registered event listeners.
+	 * @param type
+	 *            the event type.
+	 * @param opType
+	 *            the operation which occurs an exception.
+	 * @param attachment
+	 *            the attachment information.
+	 * @param cause
+	 *            the stored exception.
+	 */
+	public <T extends DefaultErrorEvent> void fireError(EventType<T> type,
+			EventType<?> opType, Map<String, Object> attachment, Throwable cause)
+	{
+         EventBusRecorder.recordError(type, opType, cause);
+         EventListenerList.EventListenerIterator<T> it = 
+        		 eventListeners.getEventListenerIterator(type);	
+         if (it.hasNext())
+         {
+        	 DefaultErrorEvent errorEvent = createErrorEvent(
+        			 type, opType, attachment, cause);
+        	 dispatch(it, errorEvent);
+         }
+	}
+	
+	/**
+	 * Cope the event source.
+	 */
+	@Override
+	protected DefaultEventSource clone() throws CloneNotSupportedException {
+		DefaultEventSource copy = (DefaultEventSource) super.clone();
+		copy.initListeners();
+		copy.initBatches();
+		copy.initTimer();
+		return copy;
+	}
+	
+	/**
+	 * Creates an new error event.
+	 * 
+	 * @param type
+	 *            the event type.
+	 * @param opType
+	 *            the operation type ocurrs
+	 * @param attachment
+	 *            the attachment information
+	 * @param cause
+	 *            the exception stored in the event.
+	 * @return
+	 *            an new error event.
+	 */
+	protected <T extends DefaultErrorEvent> DefaultErrorEvent createErrorEvent(
+			EventType<? extends DefaultErrorEvent> type, EventType<?> opType, 
+			Map<String, Object> attachment,Throwable cause)
+	{
+		 return new DefaultErrorEvent(this, type, opType, attachment, cause);
+	}
+	
+	/**
+	 * Hands the delivery of the event over to the event dispatcher, or
+	 * delivers it directly if there is no dispatcher.
+	 * 
+	 * @param it
+	 *            the iterator of the listeners of the event.
+	 * @param event
+	 *            the event to be delivered.
+	 */
+	private void dispatch(EventListenerList.EventListenerIterator<?> it,
+			Event event)
+	{
+		dispatch(it, event, false);
+	}
+	
+	/**
+	 * Hands the delivery of the event over to the event dispatcher, or
+	 * delivers it directly if there is no dispatcher.
+	 * 
+	 * @param it
+	 *            the iterator of the listeners of the event.
+	 * @param event
+	 *            the event to be delivered.
+	 * @param detached
+	 *            whether there is no caller to receive the exceptions of
+	 *            the listeners, which are reported as error events then.
+	 */
+	private void dispatch(EventListenerList.EventListenerIterator<?> it,
+			Event event, boolean detached)
+	{
+		EventTracer tracer = eventTracer;
+		EventTracer.Span span = tracer == null ? null
+				: tracer.startFire(event.getEventType());
+		EventDispatcher dispatcher = eventDispatcher;
+		if (dispatcher != null)
+		{
+			dispatcher.dispatch(event, new Delivery(it, event, span));
+		}
+		else if (detached)
+		{
+			new Delivery(it, event, span).run();
+		}
+		else if (span == null && eventListeners.isCompiledDispatch()
+				&& adaptiveDispatch == null
+				&& !EventBusRecorder.isListenerTimingEnabled())
+		{
+			deliverCompiled(it, event);
+		}
+		else
+		{
+			deliver(it, event, span, false);
+		}
+	}
+	
+	/**
+	 * Delivers the event through the compiled dispatch chain of its type.
+	 * The chain is only used if it was compiled from the same version of the
+	 * registry as the snapshot of the iterator, so the event reaches the
+	 * listeners registered when it was fired. If the registry was changed
+	 * since, or the chain has parallel-safe listeners, the event is
+	 * delivered by the iterator instead.
+	 * 
+	 * @param it
+	 *            the iterator of the listeners of the event.
+	 * @param event
+	 *            the event to be delivered.
+	 */
+	private void deliverCompiled(EventListenerList.EventListenerIterator<?> it,
+			Event event)
+	{
+		DispatchChain chain = eventListeners.getDispatchChain(
+				event.getEventType(), it);
+		if (chain == null || chain.isParallelSafe())
+		{
+			deliver(it, event, null, false);
+			return;
+		}
+		Object recording = EventBusRecorder.beginFire();
+		try
+		{
+			chain.invoke(event);
+		}
+		finally
+		{
+			EventBusRecorder.endFire(recording, event.getEventType(),
+					chain.size());
+		}
+	}
+	
+	/**
+	 * Delivers the event to the listeners of the iterator. The listeners
+	 * which are not parallel-safe are invoked directly in order, or by the
+	 * adaptive dispatch if set; the parallel-safe ones are collected and
+	 * forked together afterwards.
+	 * 
+	 * @param it
+	 *            the iterator of the listeners of the event.
+	 * @param event
+	 *            the event to be delivered.
+	 * @param span
+	 *            the trace span of the event, <b>null</b> if not traced.
+	 * @param detached
+	 *            whether there is no caller to receive the exceptions of
+	 *            the listeners; then the exception of each listener is
+	 *            reported and the remaining listeners are still invoked.
+	 */
+	private void deliver(EventListenerList.EventListenerIterator<?> it,
+			Event event, EventTracer.Span span, boolean detached)
+	{
+		AdaptiveDispatch adaptive = adaptiveDispatch;
+		Object recording = EventBusRecorder.beginFire();
+		boolean timed = EventBusRecorder.isListenerTimingEnabled();
+		int listenerCount = 0;
+		try
+		{
+			List<EventListener<?>> parallel = null;
+			while (it.hasNext())
+			{
+				EventListenerRegistrationData<?> registration =
+						it.nextRegistration();
+				listenerCount++;
+				EventListener<?> listener = span == null
+						? registration.getListener()
+						: span.wrap(registration.getListener());
+				if (timed)
+				{
+					listener = EventBusRecorder.timeListener(listener,
+							registration.getListener().getClass(),
+							event.getEventType());
+				}
+				if (registration.isParallelSafe())
+				{
+					if (parallel == null)
+					{
+						parallel = new ArrayList<EventListener<?>>();
+					}
+					parallel.add(listener);
+					continue;
+				}
+				try
+				{
+					if (adaptive != null)
+					{
+						adaptive.invoke(registration, listener, event, this);
+					}
+					else
+					{
+						EventListenerList.invoke(listener, event);
+					}
+				}
+				catch (RuntimeException ex)
+				{
+					if (!detached)
+					{
+						throw ex;
+					}
+					reportDetached(event, ex);
+				}
+			}
+			if (parallel != null)
+			{
+				try
+				{
+					EventListenerList.invokeParallel(parallel, event,
+							parallelPool);
+				}
+				catch (RuntimeException ex)
+				{
+					if (!detached)
+					{
+						throw ex;
+					}
+					reportDetached(event, ex);
+				}
+			}
+		}
+		finally
+		{
+			EventBusRecorder.endFire(recording, event.getEventType(),
+					listenerCount);
+			if (span != null)
+			{
+				span.end();
+			}
+		}
+	}
+	
+	/**
+	 * Reports an exception thrown by a listener on a thread where there is
+	 * no caller to receive it as an {@link DefaultErrorEvent#ERROR} event.
+	 * An exception thrown while delivering an error event is rethrown.
+	 * 
+	 * @param event
+	 *            the event the listener failed on.
+	 * @param ex
+	 *            the exception thrown by the listener.
+	 */
+	void reportListenerError(Event event, RuntimeException ex)
+	{
+		if (event instanceof DefaultErrorEvent)
+		{
+			throw ex;
+		}
+		Map<String, Object> attachment = event instanceof DefaultEvent
+				? ((DefaultEvent) event).getAttachment() : null;
+		fireError(DefaultErrorEvent.ERROR, event.getEventType(), attachment, ex);
+	}
+	
+	/**
+	 * Reports an exception thrown by a listener during a detached delivery.
+	 * An exception thrown while reporting it, i.e. while delivering an
+	 * error event, is passed to the uncaught exception handler of the
+	 * current thread, so the remaining listeners are still invoked.
+	 * 
+	 * @param event
+	 *            the event the listener failed on.
+	 * @param ex
+	 *            the exception thrown by the listener.
+	 */
+	private void reportDetached(Event event, RuntimeException ex)
+	{
+		try
+		{
+			reportListenerError(event, ex);
+		}
+		catch (RuntimeException failure)
+		{
+			Thread current = Thread.currentThread();
+			current.getUncaughtExceptionHandler().uncaughtException(current,
+					failure);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param limit
+	 * @return
+	 */
+	private boolean checkDetailEvents(int limit)
+	{
+		synchronized (lockDetailEventsCount)
+		{
+			return detailEvents > limit;
+		}
+	}
+	
+	/**
+	 * <p>
+	 * The delivery of a single event which is run by the event dispatcher.
+	 * </p>
+	 * <p>
+	 * Because there is no caller to receive it, an exception thrown by a
+	 * listener is reported as an error event, and the remaining listeners
+	 * are still invoked. An exception thrown while delivering an error event
+	 * is passed to the uncaught exception handler of the delivering thread.
+	 * </p>
+	 */
+	private class Delivery implements Runnable
+	{
+		/** the iterator of the listeners resolved at fire time */
+		private final EventListenerList.EventListenerIterator<?> iterator;
+		
+		/** the event to be delivered */
+		private final Event event;
+		
+		/** the trace span of the event, null if not traced */
+		private final EventTracer.Span span;
+		
+		private Delivery(EventListenerList.EventListenerIterator<?> iterator,
+				Event event, EventTracer.Span span)
+		{
+			this.iterator = iterator;
+			this.event = event;
+			this.span = span;
+		}
+		
+		@Override
+		public void run()
+		{
+			deliver(iterator, event, span, true);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * An event deferred by a batch. Two deferred events are equal if they
+	 * have the same type and equal attachments.
+	 * </p>
+	 */
+	private static final class DeferredEvent
+	{
+		/** the event type */
+		private final EventType<? extends DefaultEvent> type;
+		
+		/** the attachment information */
+		private final Map<String, Object> attachment;
+		
+		private DeferredEvent(EventType<? extends DefaultEvent> type,
+				Map<String, Object> attachment)
+		{
+			this.type = type;
+			this.attachment = attachment;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int result = type.hashCode();
+			result = 31 * result + (attachment == null ? 0 : attachment.hashCode());
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (!(obj instanceof DeferredEvent))
+			{
+				return false;
+			}
+			DeferredEvent c = (DeferredEvent) obj;
+			return type == c.type && (attachment == null ? c.attachment == null
+					: attachment.equals(c.attachment));
+		}
+	}
+}
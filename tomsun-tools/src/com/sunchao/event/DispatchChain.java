@@ -0,0 +1,159 @@
+package com.sunchao.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * <p>
+ * The listeners of an event type, compiled into a single method handle of
+ * the type {@code (Event)void}.
+ * </p>
+ * <p>
+ * Each listener is bound to a handle of {@link EventListener#onEvent}, and
+ * the handles are folded into a balanced tree which invokes them in the
+ * registration order. A chain which is invoked often gets its own compiled
+ * form, in which the bound listeners are constants; so the JIT sees a
+ * call site per listener, which it can inline, instead of the single
+ * megamorphic call site of {@code EventListenerList.callListener}.
+ * </p>
+ * <p>
+ * A chain is a snapshot of the registry at the given version; it is
+ * immutable and thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class DispatchChain {
+
+	/** The handle of {@code EventListener.onEvent(Event)} */
+	private static final MethodHandle ON_EVENT;
+
+	static
+	{
+		try
+		{
+			ON_EVENT = MethodHandles.publicLookup().findVirtual(
+					EventListener.class, "onEvent",
+					MethodType.methodType(void.class, Event.class));
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+
+	/** The compiled chain, <b>null</b> if there are no listeners */
+	private final MethodHandle handle;
+
+	/** The version of the registry the chain was compiled from */
+	private final long version;
+
+	/** The number of listeners */
+	private final int size;
+
+	/** The flag whether a registration is parallel-safe */
+	private final boolean parallelSafe;
+
+	private DispatchChain(MethodHandle handle, long version, int size,
+			boolean parallelSafe)
+	{
+		this.handle = handle;
+		this.version = version;
+		this.size = size;
+		this.parallelSafe = parallelSafe;
+	}
+
+	/**
+	 * Compiles the registrations of an event type into a chain.
+	 *
+	 * @param registrations
+	 *             the registrations, in the order of invocation.
+	 * @param version
+	 *             the version of the registry.
+	 * @return
+	 *             the dispatch chain.
+	 */
+	static DispatchChain compile(
+			List<EventListenerRegistrationData<?>> registrations, long version)
+	{
+		int size = registrations.size();
+		MethodHandle[] handles = new MethodHandle[size];
+		boolean parallelSafe = false;
+		for (int i = 0; i < size; i++)
+		{
+			EventListenerRegistrationData<?> registration = registrations.get(i);
+			handles[i] = ON_EVENT.bindTo(registration.getListener());
+			parallelSafe |= registration.isParallelSafe();
+		}
+		return new DispatchChain(size == 0 ? null : fold(handles, 0, size),
+				version, size, parallelSafe);
+	}
+
+	/**
+	 * Folds the handles of a range into one which invokes them in order.
+	 * The tree is balanced, so the nesting depth grows only
+	 * logarithmically with the number of listeners.
+	 */
+	private static MethodHandle fold(MethodHandle[] handles, int from, int to)
+	{
+		if (to - from == 1)
+		{
+			return handles[from];
+		}
+		int mid = (from + to) >>> 1;
+		return MethodHandles.foldArguments(fold(handles, mid, to),
+				fold(handles, from, mid));
+	}
+
+	/**
+	 * Invokes all listeners of the chain. An exception of a listener stops
+	 * the invocation of the following ones.
+	 *
+	 * @param event
+	 *             the event.
+	 */
+	void invoke(Event event)
+	{
+		if (handle == null)
+		{
+			return;
+		}
+		try
+		{
+			handle.invokeExact(event);
+		}
+		catch (RuntimeException ex)
+		{
+			throw ex;
+		}
+		catch (Error err)
+		{
+			throw err;
+		}
+		catch (Throwable t)
+		{
+			throw new RuntimeException("Event listener failed: " + event, t);
+		}
+	}
+
+	/** Return the version of the registry the chain was compiled from */
+	long getVersion()
+	{
+		return version;
+	}
+
+	/** Return the number of listeners */
+	int size()
+	{
+		return size;
+	}
+
+	/** Return whether a registration of the chain is parallel-safe */
+	boolean isParallelSafe()
+	{
+		return parallelSafe;
+	}
+}
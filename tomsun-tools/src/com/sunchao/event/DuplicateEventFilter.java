@@ -0,0 +1,253 @@
+package com.sunchao.event;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A probabilistic filter of duplicate events, based on a rotating,
+ * time-windowed Bloom filter.
+ * </p>
+ * <p>
+ * An event is identified by a hash of its type, its source and its
+ * attachment; two events with the same type and source and equal
+ * attachments are duplicates. The filter has two generations of bits, the
+ * current window and the previous one. An event is recorded in the current
+ * generation, and reported as duplicate if it is found in either of them.
+ * When a window has elapsed, the older generation is cleared and becomes
+ * the current one. So a duplicate is suppressed if it follows the original
+ * event within one window, and may be suppressed up to two windows later.
+ * </p>
+ * <p>
+ * The number of bits is computed from the expected number of distinct
+ * events per window and the false-positive rate, and does not grow with
+ * the number of events. As an event is tested against both generations,
+ * each of them is sized for half the false-positive rate. If more events
+ * than expected flow through a window, the false-positive rate rises, i.e.
+ * more distinct events are dropped as duplicates. Duplicates may pass
+ * through while a generation is being cleared, which is the safe
+ * direction.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe and lock-free.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class DuplicateEventFilter {
+
+	/** The golden ratio constant of the hash combination */
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	/** The bits of the two generations, indexed by the window parity */
+	private final AtomicLongArray[] generations;
+
+	/** The number of bits of a generation */
+	private final int bitCount;
+
+	/** The number of hash functions */
+	private final int hashCount;
+
+	/** The length of a window in nanoseconds */
+	private final long windowNanos;
+
+	/** The start time of window 0 */
+	private final long startTime;
+
+	/** The window of the current generation */
+	private final AtomicLong currentWindow = new AtomicLong();
+
+	/**
+	 * Creates a new instance of {@code DuplicateEventFilter}.
+	 *
+	 * @param expectedEvents
+	 *              the expected number of distinct events per window (must
+	 *              be greater than 0).
+	 * @param falsePositiveRate
+	 *              the rate of distinct events reported as duplicates, when
+	 *              the expected number is not exceeded (between 0 and 1,
+	 *              exclusive).
+	 * @param window
+	 *              the length of a window (must be greater than 0).
+	 * @param unit
+	 *              the time unit of the window.
+	 */
+	public DuplicateEventFilter(int expectedEvents, double falsePositiveRate,
+			long window, TimeUnit unit)
+	{
+		if (expectedEvents < 1)
+		{
+			throw new IllegalArgumentException(
+					"Expected events must be greater than 0: " + expectedEvents);
+		}
+		if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+		{
+			throw new IllegalArgumentException(
+					"False-positive rate must be between 0 and 1: "
+							+ falsePositiveRate);
+		}
+		if (window <= 0)
+		{
+			throw new IllegalArgumentException(
+					"Window must be greater than 0: " + window);
+		}
+		double ln2 = Math.log(2);
+		// a miss in the current generation is tested against the previous
+		// one too, so the rates of both generations add up
+		double generationRate = falsePositiveRate / 2;
+		long bits = (long) Math.ceil(-expectedEvents * Math.log(generationRate)
+				/ (ln2 * ln2));
+		bits = Math.min(Integer.MAX_VALUE & ~63L, (bits + 63) & ~63L);
+		this.bitCount = (int) bits;
+		this.hashCount = Math.max(1,
+				(int) Math.round((double) bits / expectedEvents * ln2));
+		this.generations = new AtomicLongArray[] {
+				new AtomicLongArray(bitCount >>> 6),
+				new AtomicLongArray(bitCount >>> 6) };
+		this.windowNanos = unit.toNanos(window);
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Records an event and returns whether it is probably a duplicate of an
+	 * event recorded in the current or the previous window.
+	 *
+	 * @param type
+	 *              the event type.
+	 * @param source
+	 *              the source of the event, compared by identity.
+	 * @param attachment
+	 *              the attachment of the event, may be <b>null</b>.
+	 * @return
+	 *              whether the event is probably a duplicate.
+	 */
+	public boolean isDuplicate(EventType<?> type, Object source,
+			Map<String, Object> attachment)
+	{
+		long hash = hash(type, source, attachment);
+		int h1 = (int) hash;
+		// never 0, so that the hash functions do not collapse into one
+		int h2 = (int) (hash >>> 32) | 1;
+		long window = rotate();
+		AtomicLongArray current = generations[(int) window & 1];
+		boolean found = true;
+		for (int i = 0; i < hashCount; i++)
+		{
+			if (!setBit(current, index(h1, h2, i)))
+			{
+				found = false;
+			}
+		}
+		if (found)
+		{
+			return true;
+		}
+		AtomicLongArray previous = generations[(int) (window + 1) & 1];
+		for (int i = 0; i < hashCount; i++)
+		{
+			int index = index(h1, h2, i);
+			if ((previous.get(index >>> 6) & (1L << index)) == 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Return the number of bits of a generation */
+	public int getBitCount()
+	{
+		return bitCount;
+	}
+
+	/** Return the number of hash functions */
+	public int getHashCount()
+	{
+		return hashCount;
+	}
+
+	/**
+	 * Starts a new window if the current one has elapsed, clearing the
+	 * generation which becomes the current one.
+	 *
+	 * @return
+	 *        the current window.
+	 */
+	private long rotate()
+	{
+		long window = (System.nanoTime() - startTime) / windowNanos;
+		long last = currentWindow.get();
+		if (window > last && currentWindow.compareAndSet(last, window))
+		{
+			clear(generations[(int) window & 1]);
+			if (window - last > 1)
+			{
+				// the previous window was idle, so nothing of it is kept
+				clear(generations[(int) (window + 1) & 1]);
+			}
+			return window;
+		}
+		return currentWindow.get();
+	}
+
+	/**
+	 * Computes the i-th bit index by double hashing.
+	 */
+	private int index(int h1, int h2, int i)
+	{
+		return ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+	}
+
+	/**
+	 * Sets a bit.
+	 *
+	 * @return
+	 *        whether the bit was already set.
+	 */
+	private static boolean setBit(AtomicLongArray bits, int index)
+	{
+		int word = index >>> 6;
+		long mask = 1L << index;
+		while (true)
+		{
+			long value = bits.get(word);
+			if ((value & mask) != 0)
+			{
+				return true;
+			}
+			if (bits.compareAndSet(word, value, value | mask))
+			{
+				return false;
+			}
+		}
+	}
+
+	private static void clear(AtomicLongArray bits)
+	{
+		for (int i = 0, n = bits.length(); i < n; i++)
+		{
+			bits.set(i, 0L);
+		}
+	}
+
+	/**
+	 * Computes the 64 bit hash of an event, combining the hash codes of the
+	 * parts and mixing them with the finalizer of MurmurHash3.
+	 */
+	private static long hash(EventType<?> type, Object source,
+			Map<String, Object> attachment)
+	{
+		long h = type.hashCode();
+		h = h * GOLDEN + System.identityHashCode(source);
+		h = h * GOLDEN + (attachment == null ? 0 : attachment.hashCode());
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,564 @@
+package com.sunchao.event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * An incremental aggregation of the events of an {@link EventType} subtree
+ * over time windows, emitting the result of each window as a
+ * {@link DefaultEvent}.
+ * </p>
+ * <p>
+ * The aggregator counts the events, or computes the sum, the minimum, the
+ * maximum or the number of distinct values of an attachment entry. Sums,
+ * minimums and maximums take the numeric value of the entry; events without
+ * a numeric value are only counted. Distinct values are estimated by a
+ * HyperLogLog sketch with a standard error of about 2%.
+ * </p>
+ * <p>
+ * The time is divided into panes of the slide length; a window consists of
+ * the panes of the window length, so a tumbling window has one pane and a
+ * sliding window several. The panes are kept in a ring and recycled by the
+ * first event of a new pane. Each pane has a stripe of accumulators per
+ * group of threads, updated by compare-and-set, so concurrent listeners
+ * rarely touch the same cache line. When a pane ends, the timer thread of
+ * the event source merges the panes of the window and fires the result
+ * event with the entries {@link #RESULT_VALUE}, {@link #RESULT_COUNT},
+ * {@link #RESULT_WINDOW_START} and {@link #RESULT_WINDOW_END}.
+ * </p>
+ * <p>
+ * An event which is delivered while its pane is being closed may be
+ * missing in the result of that window.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class EventAggregator implements EventListener<Event> {
+
+	/**
+	 * <p>
+	 * The aggregation functions.
+	 * </p>
+	 */
+	public enum Aggregation
+	{
+		COUNT, SUM, MIN, MAX, DISTINCT
+	}
+
+	/** The attachment entry of the aggregated value */
+	public static final String RESULT_VALUE = "value";
+
+	/** The attachment entry of the number of aggregated events */
+	public static final String RESULT_COUNT = "count";
+
+	/** The attachment entry of the window start in milliseconds */
+	public static final String RESULT_WINDOW_START = "windowStart";
+
+	/** The attachment entry of the window end in milliseconds */
+	public static final String RESULT_WINDOW_END = "windowEnd";
+
+	/** The number of longs of a stripe, filling a cache line */
+	private static final int STRIPE_WIDTH = 8;
+
+	/** The offset of the event count in a stripe */
+	private static final int COUNT = 0;
+
+	/** The offset of the accumulated value in a stripe */
+	private static final int VALUE = 1;
+
+	/** The number of bits of the register index of the sketch */
+	private static final int SKETCH_BITS = 11;
+
+	/** The number of registers of the sketch */
+	private static final int SKETCH_SIZE = 1 << SKETCH_BITS;
+
+	/** The number of spare panes of the ring, beyond those of a window */
+	private static final int SPARE_PANES = 4;
+
+	/** The aggregated event type */
+	private final EventType<?> eventType;
+
+	/** The extractor of the aggregated attachment entry */
+	private final PartitionedEventDispatcher.KeyExtractor valueExtractor;
+
+	/** The aggregation function */
+	private final Aggregation aggregation;
+
+	/** The event type of the results */
+	private final EventType<? extends DefaultEvent> resultType;
+
+	/** The length of a pane in nanoseconds */
+	private final long slideNanos;
+
+	/** The number of panes of a window */
+	private final int windowPanes;
+
+	/** The number of stripes of a pane, a power of two */
+	private final int stripes;
+
+	/** The ring of panes */
+	private final Pane[] ring;
+
+	/** The source the aggregator is attached to */
+	private volatile DefaultEventSource source;
+
+	/** The periodic task closing the panes */
+	private ScheduledEvent closer;
+
+	/** The start time of pane 0 in nanoseconds */
+	private volatile long startNanos;
+
+	/** The start time of pane 0 in milliseconds */
+	private long startMillis;
+
+	/** The next pane to be closed, only accessed by the timer thread */
+	private long nextPane;
+
+	/**
+	 * Creates a new instance of {@code EventAggregator} with tumbling
+	 * windows.
+	 *
+	 * @param eventType
+	 *              the root of the aggregated event types (must not be
+	 *              <b>null</b>).
+	 * @param entry
+	 *              the attachment entry of the aggregated value, may be
+	 *              <b>null</b> for {@link Aggregation#COUNT}.
+	 * @param aggregation
+	 *              the aggregation function (must not be <b>null</b>).
+	 * @param resultType
+	 *              the event type of the results, outside of the aggregated
+	 *              subtree (must not be <b>null</b>).
+	 * @param window
+	 *              the length of a window.
+	 * @param unit
+	 *              the time unit of the window.
+	 */
+	public EventAggregator(EventType<?> eventType, String entry,
+			Aggregation aggregation,
+			EventType<? extends DefaultEvent> resultType, long window,
+			TimeUnit unit)
+	{
+		this(eventType, entry, aggregation, resultType, window, window, unit);
+	}
+
+	/**
+	 * Creates a new instance of {@code EventAggregator} with sliding
+	 * windows.
+	 *
+	 * @param eventType
+	 *              the root of the aggregated event types (must not be
+	 *              <b>null</b>).
+	 * @param entry
+	 *              the attachment entry of the aggregated value, may be
+	 *              <b>null</b> for {@link Aggregation#COUNT}.
+	 * @param aggregation
+	 *              the aggregation function (must not be <b>null</b>).
+	 * @param resultType
+	 *              the event type of the results, outside of the aggregated
+	 *              subtree (must not be <b>null</b>).
+	 * @param window
+	 *              the length of a window, a multiple of the slide.
+	 * @param slide
+	 *              the interval between the ends of two windows (must be
+	 *              greater than 0).
+	 * @param unit
+	 *              the time unit of the window and the slide.
+	 */
+	public EventAggregator(EventType<?> eventType, String entry,
+			Aggregation aggregation,
+			EventType<? extends DefaultEvent> resultType, long window,
+			long slide, TimeUnit unit)
+	{
+		if (eventType == null || resultType == null)
+		{
+			throw new IllegalArgumentException("Event type must not be null!");
+		}
+		if (aggregation == null)
+		{
+			throw new IllegalArgumentException("Aggregation must not be null!");
+		}
+		if (entry == null && aggregation != Aggregation.COUNT)
+		{
+			throw new IllegalArgumentException(
+					"Attachment entry must not be null for " + aggregation + "!");
+		}
+		if (EventType.isInstanceOf(resultType, eventType))
+		{
+			throw new IllegalArgumentException(
+					"Result type must not be aggregated itself: " + resultType);
+		}
+		if (slide <= 0 || window < slide || window % slide != 0)
+		{
+			throw new IllegalArgumentException(
+					"Window must be a multiple of the slide: " + window + ", "
+							+ slide);
+		}
+		this.eventType = eventType;
+		this.valueExtractor = entry == null ? null
+				: PartitionedEventDispatcher.attachmentEntry(entry);
+		this.aggregation = aggregation;
+		this.resultType = resultType;
+		this.slideNanos = unit.toNanos(slide);
+		this.windowPanes = (int) (window / slide);
+
+		int n = 1;
+		while (n < Runtime.getRuntime().availableProcessors() && n < 64)
+		{
+			n <<= 1;
+		}
+		this.stripes = n;
+		this.ring = new Pane[windowPanes + SPARE_PANES];
+		for (int i = 0; i < ring.length; i++)
+		{
+			ring[i] = new Pane();
+		}
+	}
+
+	/**
+	 * Attaches the aggregator to an event source: registers it as listener
+	 * and starts the closing of the windows on the timer thread of the
+	 * source, which also fires the results.
+	 *
+	 * @param source
+	 *              the event source (must not be <b>null</b>).
+	 * @throws IllegalStateException
+	 *              if the aggregator is already attached.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public synchronized void attach(DefaultEventSource source)
+	{
+		if (source == null)
+		{
+			throw new IllegalArgumentException("Event source must not be null!");
+		}
+		if (this.source != null)
+		{
+			throw new IllegalStateException("Aggregator is already attached!");
+		}
+		for (Pane pane : ring)
+		{
+			pane.index = -1;
+		}
+		nextPane = 0;
+		startMillis = System.currentTimeMillis();
+		startNanos = System.nanoTime();
+		this.source = source;
+		source.addEventListener((EventType) eventType, this);
+		closer = source.scheduleTask(new Runnable() {
+			@Override
+			public void run()
+			{
+				closePanes();
+			}
+		}, slideNanos, slideNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Detaches the aggregator from its event source. The current window is
+	 * discarded.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public synchronized void detach()
+	{
+		if (source != null)
+		{
+			closer.cancel();
+			source.removeEventListener((EventType) eventType, this);
+			source = null;
+			closer = null;
+		}
+	}
+
+	/** Return the aggregation function */
+	public Aggregation getAggregation()
+	{
+		return aggregation;
+	}
+
+	@Override
+	public void onEvent(Event event)
+	{
+		long index = (System.nanoTime() - startNanos) / slideNanos;
+		Pane pane = paneOf(index);
+		int stripe = stripeOf(Thread.currentThread()) * STRIPE_WIDTH;
+		pane.cells.getAndIncrement(stripe + COUNT);
+		if (aggregation == Aggregation.COUNT)
+		{
+			return;
+		}
+		Object value = valueExtractor.extractKey(event);
+		if (value == null)
+		{
+			return;
+		}
+		if (aggregation == Aggregation.DISTINCT)
+		{
+			pane.offer(value);
+		}
+		else if (value instanceof Number)
+		{
+			accumulate(pane.cells, stripe + VALUE,
+					((Number) value).doubleValue());
+		}
+	}
+
+	/**
+	 * Returns the pane of the given index, recycling its slot of the ring
+	 * if it still holds an older pane.
+	 */
+	private Pane paneOf(long index)
+	{
+		Pane pane = ring[(int) (index % ring.length)];
+		if (pane.index != index)
+		{
+			synchronized (pane)
+			{
+				if (pane.index < index)
+				{
+					pane.reset();
+					pane.index = index;
+				}
+			}
+		}
+		return pane;
+	}
+
+	/**
+	 * Adds a value to an accumulator by compare-and-set, as the bits of a
+	 * double.
+	 */
+	private void accumulate(AtomicLongArray cells, int cell, double value)
+	{
+		while (true)
+		{
+			long bits = cells.get(cell);
+			double current = Double.longBitsToDouble(bits);
+			double next;
+			switch (aggregation)
+			{
+			case SUM:
+				next = current + value;
+				break;
+			case MIN:
+				next = Math.min(current, value);
+				break;
+			default:
+				next = Math.max(current, value);
+				break;
+			}
+			if (next == current
+					|| cells.compareAndSet(cell, bits, Double.doubleToRawLongBits(next)))
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Closes all panes which have ended and fires the results of their
+	 * windows. Called periodically on the timer thread.
+	 */
+	private void closePanes()
+	{
+		DefaultEventSource target = source;
+		if (target == null)
+		{
+			return;
+		}
+		long current = (System.nanoTime() - startNanos) / slideNanos;
+		while (nextPane < current)
+		{
+			target.fireDetached(resultType, result(nextPane));
+			nextPane++;
+		}
+	}
+
+	/**
+	 * Merges the panes of the window ending with the given pane.
+	 */
+	private Map<String, Object> result(long last)
+	{
+		long first = Math.max(0, last - windowPanes + 1);
+		long count = 0;
+		double value = identity();
+		int[] registers = aggregation == Aggregation.DISTINCT
+				? new int[SKETCH_SIZE] : null;
+		for (long index = first; index <= last; index++)
+		{
+			Pane pane = ring[(int) (index % ring.length)];
+			if (pane.index != index)
+			{
+				// no event in this pane, or already recycled
+				continue;
+			}
+			for (int s = 0; s < stripes; s++)
+			{
+				int base = s * STRIPE_WIDTH;
+				count += pane.cells.get(base + COUNT);
+				double v = Double.longBitsToDouble(pane.cells.get(base + VALUE));
+				switch (aggregation)
+				{
+				case SUM:
+					value += v;
+					break;
+				case MIN:
+					value = Math.min(value, v);
+					break;
+				case MAX:
+					value = Math.max(value, v);
+					break;
+				default:
+					break;
+				}
+			}
+			if (registers != null)
+			{
+				for (int r = 0; r < SKETCH_SIZE; r++)
+				{
+					registers[r] = Math.max(registers[r], pane.sketch.get(r));
+				}
+			}
+		}
+
+		Map<String, Object> result = new HashMap<String, Object>();
+		switch (aggregation)
+		{
+		case COUNT:
+			result.put(RESULT_VALUE, count);
+			break;
+		case DISTINCT:
+			result.put(RESULT_VALUE, estimate(registers));
+			break;
+		default:
+			result.put(RESULT_VALUE, Double.isInfinite(value) ? null : value);
+			break;
+		}
+		result.put(RESULT_COUNT, count);
+		long slideMillis = TimeUnit.NANOSECONDS.toMillis(slideNanos);
+		result.put(RESULT_WINDOW_START, startMillis + first * slideMillis);
+		result.put(RESULT_WINDOW_END, startMillis + (last + 1) * slideMillis);
+		return result;
+	}
+
+	/** Return the initial value of the accumulators */
+	private double identity()
+	{
+		switch (aggregation)
+		{
+		case MIN:
+			return Double.POSITIVE_INFINITY;
+		case MAX:
+			return Double.NEGATIVE_INFINITY;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Computes the stripe of a thread, by multiplicative hashing of its id.
+	 */
+	private int stripeOf(Thread thread)
+	{
+		return ((int) thread.getId() * 0x9E3779B9 >>> 16) & (stripes - 1);
+	}
+
+	/**
+	 * Estimates the number of distinct values from the registers of a
+	 * HyperLogLog sketch, with the linear counting correction for small
+	 * cardinalities.
+	 */
+	private static long estimate(int[] registers)
+	{
+		double sum = 0;
+		int zeros = 0;
+		for (int r : registers)
+		{
+			sum += 1.0 / (1L << r);
+			if (r == 0)
+			{
+				zeros++;
+			}
+		}
+		double m = SKETCH_SIZE;
+		double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0)
+		{
+			estimate = m * Math.log(m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * <p>
+	 * The accumulators of a pane.
+	 * </p>
+	 */
+	private final class Pane
+	{
+		/** the stripes of the event count and the accumulated value */
+		private final AtomicLongArray cells =
+				new AtomicLongArray(stripes * STRIPE_WIDTH);
+
+		/** the registers of the distinct value sketch, null if not needed */
+		private final AtomicIntegerArray sketch =
+				aggregation == Aggregation.DISTINCT
+						? new AtomicIntegerArray(SKETCH_SIZE) : null;
+
+		/** the index of the pane held, -1 if none */
+		private volatile long index = -1;
+
+		/**
+		 * Clears the accumulators for a new pane.
+		 */
+		private void reset()
+		{
+			long initial = Double.doubleToRawLongBits(identity());
+			for (int s = 0; s < stripes; s++)
+			{
+				cells.set(s * STRIPE_WIDTH + COUNT, 0L);
+				cells.set(s * STRIPE_WIDTH + VALUE, initial);
+			}
+			if (sketch != null)
+			{
+				for (int r = 0; r < SKETCH_SIZE; r++)
+				{
+					sketch.set(r, 0);
+				}
+			}
+		}
+
+		/**
+		 * Adds a value to the distinct value sketch.
+		 */
+		private void offer(Object value)
+		{
+			long h = value.hashCode() * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= h >>> 33;
+			int register = (int) (h >>> (64 - SKETCH_BITS));
+			int rank = Long.numberOfLeadingZeros(
+					(h << SKETCH_BITS) | (1L << (SKETCH_BITS - 1))) + 1;
+			while (true)
+			{
+				int current = sketch.get(register);
+				if (rank <= current
+						|| sketch.compareAndSet(register, current, rank))
+				{
+					return;
+				}
+			}
+		}
+	}
+}
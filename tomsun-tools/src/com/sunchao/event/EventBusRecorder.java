@@ -0,0 +1,101 @@
+package com.sunchao.event;
+
+/**
+ * <p>
+ * The hooks through which the event bus reports its activity to a
+ * monitoring facility.
+ * </p>
+ * <p>
+ * This version does nothing, so the calls are removed by the JIT. The
+ * multi-release layer for java 11 replaces it with one emitting JDK Flight
+ * Recorder events, which are only created while a recording enables them.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class EventBusRecorder {
+
+	private EventBusRecorder()
+	{
+	}
+
+	/**
+	 * Starts recording the delivery of an event.
+	 *
+	 * @return
+	 *        the token passed to {@link #endFire}, <b>null</b> if disabled.
+	 */
+	static Object beginFire()
+	{
+		return null;
+	}
+
+	/**
+	 * Ends recording the delivery of an event.
+	 *
+	 * @param token
+	 *            the token returned by {@link #beginFire()}.
+	 * @param eventType
+	 *            the type of the delivered event.
+	 * @param listenerCount
+	 *            the number of listeners the event was delivered to.
+	 */
+	static void endFire(Object token, EventType<?> eventType, int listenerCount)
+	{
+	}
+
+	/**
+	 * Returns whether the invocations of listeners are to be timed.
+	 */
+	static boolean isListenerTimingEnabled()
+	{
+		return false;
+	}
+
+	/**
+	 * Wraps a listener, so that its slow invocations are recorded.
+	 *
+	 * @param listener
+	 *            the listener to be invoked.
+	 * @param listenerClass
+	 *            the class of the registered listener.
+	 * @param eventType
+	 *            the type of the delivered event.
+	 * @return
+	 *            the timed listener.
+	 */
+	static EventListener<?> timeListener(EventListener<?> listener,
+			Class<?> listenerClass, EventType<?> eventType)
+	{
+		return listener;
+	}
+
+	/**
+	 * Records an error event.
+	 *
+	 * @param eventType
+	 *            the type of the error event.
+	 * @param operationType
+	 *            the operation type which occurs the error.
+	 * @param cause
+	 *            the error.
+	 */
+	static void recordError(EventType<?> eventType, EventType<?> operationType,
+			Throwable cause)
+	{
+	}
+
+	/**
+	 * Records a change of a list of event listeners.
+	 *
+	 * @param action
+	 *            the kind of the change, like "ADD", "REMOVE" or "CLEAR".
+	 * @param registration
+	 *            the added or removed registration, <b>null</b> for "CLEAR".
+	 */
+	static void recordRegistryChange(String action,
+			EventListenerRegistrationData<?> registration)
+	{
+	}
+}
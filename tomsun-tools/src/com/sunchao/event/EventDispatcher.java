@@ -0,0 +1,30 @@
+package com.sunchao.event;
+
+/**
+ * <p>
+ * Definition of a strategy which decides on which thread and when an event
+ * fired by a {@link DefaultEventSource} is delivered to its listeners.
+ * </p>
+ * <p>
+ * The event source resolves the listeners of the event and wraps the
+ * delivery into a {@code Runnable}; the dispatcher only has to run it,
+ * either directly or later on another thread. If no dispatcher is set,
+ * the event source delivers the events synchronously on the firing thread.
+ * </p>
+ * 
+ * @author sunchao
+ *
+ */
+public interface EventDispatcher {
+
+	/**
+	 * Dispatches the delivery of an event. The delivery must be run exactly
+	 * once.
+	 * 
+	 * @param event
+	 *              the event which will be delivered.
+	 * @param delivery
+	 *              the task which invokes the listeners of the event.
+	 */
+	void dispatch(Event event, Runnable delivery);
+}
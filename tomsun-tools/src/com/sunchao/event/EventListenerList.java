@@ -1,373 +1,772 @@
-package com.sunchao.event;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
-/**
- * <p>
- * A class for managing event listeners for an event source.
- * </p>
- * <p>
- * This class allows registering an arbitrary number of event listeners for
- * specific event types. Event types are specified using the {@link EventType}
- * class. Due to the type parameters in method signatures, it is guaranteed that
- * registered listeners are compatible with the event types they are interested
- * in.
- * </p>
- * <p>
- * There are also methods for firing events. Here all registered listeners are
- * determined - based on the event type specified at registration  - which
- * should receive the event to be fired. So basically, the event type at
- * listener registration serves as a filter list. Because of the
- * hierarchical nature of event types it can be determined in a fine-grained way
- * which events are propagated to which listeners. It is also possible to
- * register a listener multiple times for different event types.
- * </p>
- * <p>
- * Implementation note: This class is thread-safe.
- * </p>
- *
- */
-public class EventListenerList {
-	
-	/** The list hold metadata of tuple of({@link Event} , {@link EventListener})      */
-	private final List<EventListenerRegistrationData<?>> listeners;
-	
-	/**
-	 * Creates a new instance of {@link EventListenerList}}
-	 */
-	public EventListenerList() {
-		/**
-		 * There use the {@code CopyOnWriterArrayList}, because most of the event listeners
-		 * added in the initialization phase, so in the concurrent. the collection perform can well.
-		 * thread-safe. 
-		 */
-		listeners = 
-				new CopyOnWriteArrayList<EventListenerRegistrationData<?>>();
-	}
-	
-	/**
-	 * the method also permit dynamic add the event listener.
-	 * add the flexibility of component.
-	 * 
-	 * @param type
-	 *           the event type.
-	 * @param listener
-	 *            the event listener which match to the event.
-	 */
-	public <T extends Event> void addEventListener(EventType<T> type,
-			EventListener<? super T> listener)// <?  super T> to assure the father's event listener also fit to the son
-	{
-	
-		listeners.add(new EventListenerRegistrationData<T>(type, listener));
-	}
-	
-	public <T extends Event> void addEventListener(
-			EventListenerRegistrationData<T> reData)
-	{
-	       if(reData == null)
-	       {
-	    	   throw new IllegalArgumentException(
-	    			   "EventListenerRegistrationData must not be null!");
-	       }
-	       
-	       listeners.add(reData);
-	}
-	
-	public <T extends Event> boolean removeEventListener(
-			EventType<T> eventType, EventListener<? super T> listener)
-	{
-	       return !(listener == null || eventType  == null)
-		          && removeEventListener(new EventListenerRegistrationData<T>
-		          (eventType, listener));
-	}
-
-	public <T extends Event> boolean removeEventListener(
-			EventListenerRegistrationData<T> eventListenerRegistrationData) 
-	{
-		
-		   return listeners.remove(eventListenerRegistrationData);
-	}
-	
-	/**
-	 * The method invoke the registered event listeners to
-	 * handle the event ,one by one. And if there is not event
-	 * listener exist matched to the event, nothing will happen.
-	 * 
-	 * @param event
-	 *            the event need be handled.
-	 */
-	public void fire(Event event) {
-		
-		if (event == null)
-		{
-			throw new IllegalArgumentException(
-					"Event to be fired must not be null!");
-		}
-		
-		for (EventListenerIterator<? extends Event>  iterator = 
-				getEventListenerIterator(event.getEventType()); iterator
-				.hasNext();)
-		{
-			iterator.invokeNextListenerUnchecked(event);
-		}
-	}
-
-	/**
-	 * Get the iterator of the {@code EventListenerList} decorate with
-	 * the underlying {@code CopyOnWriteArrayList} 
-	 * 
-	 * @param eventType
-	 *            the event type
-	 * @return
-	 *       the iterator of this class.
-	 */
-	public <T extends Event> Iterable<EventListener<? super T>> getEventListeners(
-		    final EventType<T> eventType)
-    {
-		return new Iterable<EventListener<? super T>>() 
-		{
-			@Override
-			public Iterator<EventListener<? super T>> iterator()
-			{
-				return getEventListenerIterator(eventType);
-			}
-		};
-	}
-	
-	/**
-	 * @param eventType
-	 *             event type
-	 * @return
-	 *       the iterator of event listener.
-	 */
-	public <T extends Event> EventListenerIterator<T> getEventListenerIterator(
-			EventType<T> eventType)
-	{
-	     return new EventListenerIterator<T>(listeners.iterator(), eventType);	
-	}
-	
-	/**
-	 * Get the collection of the metadata information which contains
-	 * the tuple(event, event listener),and return the snapshot of
-	 * the collection.
-	 * @return
-	 *        the metadata information for registered snapshot.
-	 */
-	public List<EventListenerRegistrationData<?>> getRegistrations()
-	{
-	     return Collections.unmodifiableList(listeners);	
-	}
-	
-	/**
-	 * The method intent to get metadata which contains the tuple
-	 * (event, super event type), which contains the super event type direct
-	 * and  indirectly and return  as a list.
-	 * 
-	 * @param eventType
-	 *            the event type specified.
-	 * @return
-     *         the list contains the metadata information.
-	 */
-	@SuppressWarnings("unchecked")
-	public <T extends Event> List<EventListenerRegistrationData<? extends T>>  getRegistrationsForSuperType(
-			EventType<T> eventType)
-	{
-	    Map<EventType<?>, Set<EventType<?>>> superTypes = 
-	    		new HashMap<EventType<?>, Set<EventType<?>>>();
-	    List<EventListenerRegistrationData<? extends T>> results =
-	    		new LinkedList<EventListenerRegistrationData<? extends T>>();
-	    
-	    for (EventListenerRegistrationData<?> reg : listeners)
-	    {
-	    	Set<EventType<?>> base = superTypes.get(reg.getEventType());
-	    	if (base == null)
-	    	{
-	    		base  = EventType.fetchSuperEventType(reg.getEventType());
-	    		superTypes.put(reg.getEventType(), base);
-	    	}
-	    	if (base.contains(eventType))//the event type check assure 
-	    	{
-	    		EventListenerRegistrationData<? extends T> result =
-	    				(EventListenerRegistrationData<? extends T>) reg;
-	    		results.add(result);
-	    	}
-	    }
-	   return results;
-	}
-	
-	public void addAll(EventListenerList c)
-	{
-		if (c == null)
-		{
-			throw new IllegalArgumentException(
-				"List to be copied must not be null!");
-		}
-		
-		for (EventListenerRegistrationData<?> regData : c.getRegistrations())
-		{
-			addEventListener(regData);
-		}
-	}
-	
-	
-	public void clear() 
-	{
-	   listeners.clear();	
-	}
-	
-	/**
-	 * the callback method call by the iterator
-	 * of the event listeners. invoke the event
-	 * listener to handle the event.
-	 * 
-	 * @param listener
-	 *           the registered event listener
-	 * @param event
-	 *           the event which need be handled
-	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static void callListener(EventListener<?> listener, Event event)
-	{
-	   EventListener rowListener = listener	;
-	   rowListener.onEvent(event);
-	}
-	
-	/**
-	 * <p>
-	 * The class represent the iterator of event listener.
-	 * </p>
-	 * <p>
-	 * when the event was delivered to the event listeners which
-	 * were registered on the event,and iterator all of the listeners
-	 * to handle the event.
-	 * </p>
-	 * 
-	 * @author sunchao
-	 *
-	 * @param <T>
-	 *          the subclass of event
-	 */
-	public static class EventListenerIterator<T extends Event> implements 
-	          Iterator<EventListener<? super T>> {
-		/** the underlying iterator of the underlying list {@link EventListenerList.CopyOnWriterArrayList} */
-		private final Iterator<EventListenerRegistrationData<?>> underlyingIterator;
-		
-		/** the base event type of the event */
-		private final EventType<T> baseEventType;
-		
-		/** a set of event type which base on the baseEventType and contains the  super event types */
-		private final Set<EventType<?>> acceptedTypes;
-		
-		/** the next event listener which will be return and handle the event */
-		private EventListener<? super T> nextElement;
-		
-		/**
-		 * 
-		 * @param it
-		 * @param base
-		 */
-		private EventListenerIterator(
-				Iterator<EventListenerRegistrationData<?>> it, EventType<T> base)
-		{
-			this.underlyingIterator = it;
-			this.baseEventType = base;
-			this.acceptedTypes = EventType.fetchSuperEventType(base);
-			initNextElement();
-		}
-
-
-		@Override
-		public boolean hasNext() 
-		{
-			return nextElement != null;
-		}
-
-		@Override
-		public EventListener<? super T> next()
-		{
-			if (nextElement == null)
-			{
-				throw new NoSuchElementException("No more event listeners!");
-			}
-			
-			EventListener<? super T> result = nextElement;
-			initNextElement();
-			return result;
-		}
-
-		@Override
-		public void remove() 
-		{
-		   throw  new UnsupportedOperationException(
-				   "Removing elements is not supported!");	
-		}
-		
-		/** 
-		 * directly to invoke the next event listener
-		 * to handle the event
-		 * @param event
-		 */
-		public void invokeNext(Event event) 
-		{
-			validateEvent(event);
-			invokeNextListenerUnchecked(event);
-		}
-		
-		/** 
-		 * the method be called by the iterator method{@code next()}
-		 * to initialize the next element which will return to
-		 * the client.
-		 */
-		private void initNextElement() 
-		{
-		    nextElement = null;
-		    while (underlyingIterator.hasNext() && nextElement == null)
-		    {
-		    	EventListenerRegistrationData<?> regData =
-		    			underlyingIterator.next();
-		    	if (acceptedTypes.contains(regData.getEventType()))
-		    	{
-		    		nextElement = castListener(regData);
-		    	}
-		    }
-		}
-		
-		/**
-		 * the method is used to validate the variable event
-		 * whether suite to the event listener.
-		 * @param event
-		 *          the event parameter.
-		 */
-		private void validateEvent(Event event)
-		{
-			if(event == null
-					|| !EventType.fetchSuperEventType(event.getEventType()).contains(
-							baseEventType))
-			{
-				throw new IllegalArgumentException(
-						"Event incomptible with listener iteration: " + event);
-			}
-		}
-		
-		private void invokeNextListenerUnchecked(Event event) 
-		{
-			EventListener<? super T> listener = next();
-			callListener(listener, event);
-		}
-		
-		@SuppressWarnings({ "rawtypes", "unchecked" })
-		private EventListener<? super T> castListener(
-				EventListenerRegistrationData<?> regData)
-		{
-		     EventListener listener = regData.getListener();
-		     return listener;
-		}
-	}
-}
+package com.sunchao.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * <p>
+ * A class for managing event listeners for an event source.
+ * </p>
+ * <p>
+ * This class allows registering an arbitrary number of event listeners for
+ * specific event types. Event types are specified using the {@link EventType}
+ * class. Due to the type parameters in method signatures, it is guaranteed that
+ * registered listeners are compatible with the event types they are interested
+ * in.
+ * </p>
+ * <p>
+ * There are also methods for firing events. Here all registered listeners are
+ * determined - based on the event type specified at registration  - which
+ * should receive the event to be fired. So basically, the event type at
+ * listener registration serves as a filter list. Because of the
+ * hierarchical nature of event types it can be determined in a fine-grained way
+ * which events are propagated to which listeners. It is also possible to
+ * register a listener multiple times for different event types.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ */
+public class EventListenerList {
+	
+	/** The list hold metadata of tuple of({@link Event} , {@link EventListener})      */
+	private final List<EventListenerRegistrationData<?>> listeners;
+	
+	/** The version of the registry, incremented on each change */
+	private final AtomicLong version = new AtomicLong();
+	
+	/** The flag whether the events are delivered by compiled chains */
+	private volatile boolean compiledDispatch;
+	
+	/** The compiled dispatch chains by event type */
+	private final ConcurrentMap<EventType<?>, DispatchChain> chains =
+			new ConcurrentHashMap<EventType<?>, DispatchChain>();
+	
+	/**
+	 * Creates a new instance of {@link EventListenerList}}
+	 */
+	public EventListenerList() {
+		/**
+		 * There use the {@code CopyOnWriterArrayList}, because most of the event listeners
+		 * added in the initialization phase, so in the concurrent. the collection perform can well.
+		 * thread-safe. 
+		 */
+		listeners = 
+				new CopyOnWriteArrayList<EventListenerRegistrationData<?>>();
+	}
+	
+	/**
+	 * the method also permit dynamic add the event listener.
+	 * add the flexibility of component.
+	 * 
+	 * @param type
+	 *           the event type.
+	 * @param listener
+	 *            the event listener which match to the event.
+	 */
+	public <T extends Event> void addEventListener(EventType<T> type,
+			EventListener<? super T> listener)// <?  super T> to assure the father's event listener also fit to the son
+	{
+	
+		addEventListener(new EventListenerRegistrationData<T>(type, listener));
+	}
+	
+	/**
+	 * Adds an event listener which is optionally marked as parallel-safe.
+	 * Parallel-safe listeners of a single event may be invoked concurrently
+	 * by {@link #invokeParallel(List, Event, ForkJoinPool)}.
+	 * 
+	 * @param type
+	 *           the event type.
+	 * @param listener
+	 *            the event listener which match to the event.
+	 * @param parallelSafe
+	 *            whether the listener may run concurrently with the other
+	 *            parallel-safe listeners of the same event.
+	 */
+	public <T extends Event> void addEventListener(EventType<T> type,
+			EventListener<? super T> listener, boolean parallelSafe)
+	{
+		addEventListener(new EventListenerRegistrationData<T>(type, listener,
+				parallelSafe));
+	}
+	
+	public <T extends Event> void addEventListener(
+			EventListenerRegistrationData<T> reData)
+	{
+	       if(reData == null)
+	       {
+	    	   throw new IllegalArgumentException(
+	    			   "EventListenerRegistrationData must not be null!");
+	       }
+	       
+	       listeners.add(reData);
+	       version.incrementAndGet();
+	       EventBusRecorder.recordRegistryChange("ADD", reData);
+	}
+	
+	public <T extends Event> boolean removeEventListener(
+			EventType<T> eventType, EventListener<? super T> listener)
+	{
+	       return !(listener == null || eventType  == null)
+		          && removeEventListener(new EventListenerRegistrationData<T>
+		          (eventType, listener));
+	}
+
+	public <T extends Event> boolean removeEventListener(
+			EventListenerRegistrationData<T> eventListenerRegistrationData) 
+	{
+		
+		   if (listeners.remove(eventListenerRegistrationData))
+		   {
+			   version.incrementAndGet();
+			   EventBusRecorder.recordRegistryChange("REMOVE",
+					   eventListenerRegistrationData);
+			   return true;
+		   }
+		   return false;
+	}
+	
+	/**
+	 * The method invoke the registered event listeners to
+	 * handle the event ,one by one. And if there is not event
+	 * listener exist matched to the event, nothing will happen.
+	 * 
+	 * @param event
+	 *            the event need be handled.
+	 */
+	public void fire(Event event) {
+		
+		if (event == null)
+		{
+			throw new IllegalArgumentException(
+					"Event to be fired must not be null!");
+		}
+		
+		if (compiledDispatch)
+		{
+			getDispatchChain(event.getEventType()).invoke(event);
+			return;
+		}
+		for (EventListenerIterator<? extends Event>  iterator = 
+				getEventListenerIterator(event.getEventType()); iterator
+				.hasNext();)
+		{
+			iterator.invokeNextListenerUnchecked(event);
+		}
+	}
+	
+	/**
+	 * Enables or disables the compiled dispatch. If enabled, the listeners
+	 * of each event type are compiled into a chain of method handles on the
+	 * first event of the type, which gives each listener a call site of its
+	 * own. A chain is compiled again lazily on the next event after the
+	 * registry was changed.
+	 * 
+	 * @param enable
+	 *            whether the events are delivered by compiled chains.
+	 */
+	public void setCompiledDispatch(boolean enable)
+	{
+		compiledDispatch = enable;
+		if (!enable)
+		{
+			chains.clear();
+		}
+	}
+	
+	/** Return whether the events are delivered by compiled chains */
+	public boolean isCompiledDispatch()
+	{
+		return compiledDispatch;
+	}
+	
+	/**
+	 * Returns the dispatch chain of the event type, compiling it if there is
+	 * none or the registry was changed since.
+	 * 
+	 * @param eventType
+	 *            the event type.
+	 * @return
+	 *            the dispatch chain.
+	 */
+	DispatchChain getDispatchChain(EventType<?> eventType)
+	{
+		// read before the snapshot, so a concurrent change outdates the chain
+		long current = version.get();
+		DispatchChain chain = chains.get(eventType);
+		if (chain == null || chain.getVersion() != current)
+		{
+			List<EventListenerRegistrationData<?>> registrations =
+					new ArrayList<EventListenerRegistrationData<?>>();
+			for (EventListenerIterator<?> it = getEventListenerIterator(
+					eventType); it.hasNext();)
+			{
+				registrations.add(it.nextRegistration());
+			}
+			chain = DispatchChain.compile(registrations, current);
+			chains.put(eventType, chain);
+		}
+		return chain;
+	}
+	
+	/**
+	 * Returns the dispatch chain of the event type for the listeners of an
+	 * iterator, i.e. only if the registry was not changed since the
+	 * iterator took its snapshot.
+	 * 
+	 * @param eventType
+	 *            the event type.
+	 * @param it
+	 *            the iterator of the listeners of the event type.
+	 * @return
+	 *            the dispatch chain, <b>null</b> if the registry was changed
+	 *            or the version of the snapshot is unknown.
+	 */
+	DispatchChain getDispatchChain(EventType<?> eventType,
+			EventListenerIterator<?> it)
+	{
+		long snapshot = it.version;
+		if (snapshot < 0 || version.get() != snapshot)
+		{
+			return null;
+		}
+		DispatchChain chain = getDispatchChain(eventType);
+		return chain.getVersion() == snapshot ? chain : null;
+	}
+	
+	/** Return the current version of the registry */
+	long getVersion()
+	{
+		return version.get();
+	}
+
+	/**
+	 * Get the iterator of the {@code EventListenerList} decorate with
+	 * the underlying {@code CopyOnWriteArrayList} 
+	 * 
+	 * @param eventType
+	 *            the event type
+	 * @return
+	 *       the iterator of this class.
+	 */
+	public <T extends Event> Iterable<EventListener<? super T>> getEventListeners(
+		    final EventType<T> eventType)
+    {
+		return new Iterable<EventListener<? super T>>() 
+		{
+			@Override
+			public Iterator<EventListener<? super T>> iterator()
+			{
+				return getEventListenerIterator(eventType);
+			}
+		};
+	}
+	
+	/**
+	 * @param eventType
+	 *             event type
+	 * @return
+	 *       the iterator of event listener.
+	 */
+	public <T extends Event> EventListenerIterator<T> getEventListenerIterator(
+			EventType<T> eventType)
+	{
+	     // read before the snapshot, like the version of a dispatch chain
+	     long current = version.get();
+	     return new EventListenerIterator<T>(listeners.iterator(), eventType,
+	    		 current);	
+	}
+	
+	/**
+	 * Returns an iterator of event listener over registrations which were
+	 * already resolved for the event type, for instance by
+	 * {@link #resolve(Collection)}.
+	 * 
+	 * @param eventType
+	 *             event type
+	 * @param registrations
+	 *             the resolved registrations of the event type.
+	 * @return
+	 *       the iterator of event listener.
+	 */
+	public <T extends Event> EventListenerIterator<T> getEventListenerIterator(
+			EventType<T> eventType,
+			List<EventListenerRegistrationData<?>> registrations)
+	{
+		return getEventListenerIterator(eventType, registrations, -1L);
+	}
+	
+	/**
+	 * Returns an iterator of event listener over registrations which were
+	 * resolved for the event type at the given version of the registry.
+	 * 
+	 * @param eventType
+	 *             event type
+	 * @param registrations
+	 *             the resolved registrations of the event type.
+	 * @param version
+	 *             the version of the registry read before the registrations
+	 *             were resolved, -1 if unknown.
+	 * @return
+	 *       the iterator of event listener.
+	 */
+	<T extends Event> EventListenerIterator<T> getEventListenerIterator(
+			EventType<T> eventType,
+			List<EventListenerRegistrationData<?>> registrations, long version)
+	{
+		return new EventListenerIterator<T>(registrations.iterator(), eventType,
+				version);
+	}
+	
+	/**
+	 * Resolves the registrations of several event types in a single pass
+	 * over the registered listeners. For each event type the result
+	 * contains the registrations of the type and of its super types, in
+	 * the registration order, as they would be returned by the iterator of
+	 * the event type.
+	 * 
+	 * @param eventTypes
+	 *             the event types to be resolved.
+	 * @return
+	 *        the map from the event types to their registrations.
+	 */
+	public Map<EventType<?>, List<EventListenerRegistrationData<?>>> resolve(
+			Collection<? extends EventType<?>> eventTypes)
+	{
+		Map<EventType<?>, List<EventListenerRegistrationData<?>>> results =
+				new HashMap<EventType<?>, List<EventListenerRegistrationData<?>>>();
+		Map<EventType<?>, List<List<EventListenerRegistrationData<?>>>> targets =
+				new HashMap<EventType<?>, List<List<EventListenerRegistrationData<?>>>>();
+		
+		for (EventType<?> eventType : eventTypes)
+		{
+			if (results.containsKey(eventType))
+			{
+				continue;
+			}
+			List<EventListenerRegistrationData<?>> result =
+					new ArrayList<EventListenerRegistrationData<?>>();
+			results.put(eventType, result);
+			for (EventType<?> superType : EventType.fetchSuperEventType(eventType))
+			{
+				List<List<EventListenerRegistrationData<?>>> target =
+						targets.get(superType);
+				if (target == null)
+				{
+					target = new ArrayList<List<EventListenerRegistrationData<?>>>();
+					targets.put(superType, target);
+				}
+				target.add(result);
+			}
+		}
+		
+		for (EventListenerRegistrationData<?> reg : listeners)
+		{
+			List<List<EventListenerRegistrationData<?>>> target =
+					targets.get(reg.getEventType());
+			if (target != null)
+			{
+				for (List<EventListenerRegistrationData<?>> result : target)
+				{
+					result.add(reg);
+				}
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Get the collection of the metadata information which contains
+	 * the tuple(event, event listener),and return the snapshot of
+	 * the collection.
+	 * @return
+	 *        the metadata information for registered snapshot.
+	 */
+	public List<EventListenerRegistrationData<?>> getRegistrations()
+	{
+	     return Collections.unmodifiableList(listeners);	
+	}
+	
+	/**
+	 * The method intent to get metadata which contains the tuple
+	 * (event, super event type), which contains the super event type direct
+	 * and  indirectly and return  as a list.
+	 * 
+	 * @param eventType
+	 *            the event type specified.
+	 * @return
+     *         the list contains the metadata information.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Event> List<EventListenerRegistrationData<? extends T>>  getRegistrationsForSuperType(
+			EventType<T> eventType)
+	{
+	    Map<EventType<?>, Set<EventType<?>>> superTypes = 
+	    		new HashMap<EventType<?>, Set<EventType<?>>>();
+	    List<EventListenerRegistrationData<? extends T>> results =
+	    		new LinkedList<EventListenerRegistrationData<? extends T>>();
+	    
+	    for (EventListenerRegistrationData<?> reg : listeners)
+	    {
+	    	Set<EventType<?>> base = superTypes.get(reg.getEventType());
+	    	if (base == null)
+	    	{
+	    		base  = EventType.fetchSuperEventType(reg.getEventType());
+	    		superTypes.put(reg.getEventType(), base);
+	    	}
+	    	if (base.contains(eventType))//the event type check assure 
+	    	{
+	    		EventListenerRegistrationData<? extends T> result =
+	    				(EventListenerRegistrationData<? extends T>) reg;
+	    		results.add(result);
+	    	}
+	    }
+	   return results;
+	}
+	
+	public void addAll(EventListenerList c)
+	{
+		if (c == null)
+		{
+			throw new IllegalArgumentException(
+				"List to be copied must not be null!");
+		}
+		
+		for (EventListenerRegistrationData<?> regData : c.getRegistrations())
+		{
+			addEventListener(regData);
+		}
+	}
+	
+	
+	public void clear() 
+	{
+	   listeners.clear();	
+	   version.incrementAndGet();
+	   EventBusRecorder.recordRegistryChange("CLEAR", null);
+	}
+	
+	/**
+	 * the callback method call by the iterator
+	 * of the event listeners. invoke the event
+	 * listener to handle the event.
+	 * 
+	 * @param listener
+	 *           the registered event listener
+	 * @param event
+	 *           the event which need be handled
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void callListener(EventListener<?> listener, Event event)
+	{
+	   EventListener rowListener = listener	;
+	   rowListener.onEvent(event);
+	}
+	
+	/**
+	 * Invokes a single listener for the event, which must be compatible
+	 * with the listener.
+	 * 
+	 * @param listener
+	 *           the registered event listener
+	 * @param event
+	 *           the event which need be handled
+	 */
+	static void invoke(EventListener<?> listener, Event event)
+	{
+		callListener(listener, event);
+	}
+	
+	/**
+	 * Invokes the given listeners for a single event concurrently on the
+	 * given fork-join pool, and waits until all of them are done. So the
+	 * caller still sees a synchronous delivery, but the latency is about
+	 * the one of the slowest listener. The first exception thrown by a
+	 * listener is rethrown to the caller.
+	 * 
+	 * @param listeners
+	 *           the listeners to be invoked, which must be compatible with
+	 *           the event.
+	 * @param event
+	 *           the event which need be handled.
+	 * @param pool
+	 *           the pool to fork the invocations on; if <b>null</b> a shared
+	 *           default pool is used.
+	 */
+	public static void invokeParallel(List<? extends EventListener<?>> listeners,
+			Event event, ForkJoinPool pool)
+	{
+		int size = listeners.size();
+		if (size == 0)
+		{
+			return;
+		}
+		if (size == 1)
+		{
+			callListener(listeners.get(0), event);
+			return;
+		}
+		
+		ParallelInvocation task = new ParallelInvocation(listeners, event, 0, size);
+		if (ForkJoinTask.inForkJoinPool())
+		{
+			task.invoke();
+		}
+		else
+		{
+			(pool != null ? pool : DefaultPoolHolder.POOL).invoke(task);
+		}
+	}
+	
+	/**
+	 * The lazily created pool used for parallel invocations if the client
+	 * does not supply its own one.
+	 */
+	private static class DefaultPoolHolder
+	{
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+	
+	/**
+	 * <p>
+	 * The task which invokes a range of listeners for a single event,
+	 * splitting the range in halves until a single listener is left.
+	 * </p>
+	 * 
+	 * @author sunchao
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class ParallelInvocation extends RecursiveAction
+	{
+		/** the listeners to be invoked */
+		private final List<? extends EventListener<?>> listeners;
+		
+		/** the event which need be handled */
+		private final Event event;
+		
+		/** the first index of the range (inclusive) */
+		private final int from;
+		
+		/** the last index of the range (exclusive) */
+		private final int to;
+		
+		private ParallelInvocation(List<? extends EventListener<?>> listeners,
+				Event event, int from, int to)
+		{
+			this.listeners = listeners;
+			this.event = event;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				callListener(listeners.get(from), event);
+			}
+			else
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ParallelInvocation(listeners, event, from, middle),
+						new ParallelInvocation(listeners, event, middle, to));
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 * The class represent the iterator of event listener.
+	 * </p>
+	 * <p>
+	 * when the event was delivered to the event listeners which
+	 * were registered on the event,and iterator all of the listeners
+	 * to handle the event.
+	 * </p>
+	 * 
+	 * @author sunchao
+	 *
+	 * @param <T>
+	 *          the subclass of event
+	 */
+	public static class EventListenerIterator<T extends Event> implements 
+	          Iterator<EventListener<? super T>> {
+		/** the underlying iterator of the underlying list {@link EventListenerList.CopyOnWriterArrayList} */
+		private final Iterator<EventListenerRegistrationData<?>> underlyingIterator;
+		
+		/** the base event type of the event */
+		private final EventType<T> baseEventType;
+		
+		/** a set of event type which base on the baseEventType and contains the  super event types */
+		private final Set<EventType<?>> acceptedTypes;
+		
+		/** the next event listener which will be return and handle the event */
+		private EventListener<? super T> nextElement;
+		
+		/** the registration of the next event listener */
+		private EventListenerRegistrationData<?> nextRegistration;
+		
+		/** the version of the registry of the snapshot, -1 if unknown */
+		private final long version;
+		
+		/**
+		 * 
+		 * @param it
+		 * @param base
+		 * @param version
+		 */
+		private EventListenerIterator(
+				Iterator<EventListenerRegistrationData<?>> it, EventType<T> base,
+				long version)
+		{
+			this.underlyingIterator = it;
+			this.baseEventType = base;
+			this.version = version;
+			this.acceptedTypes = EventType.fetchSuperEventType(base);
+			initNextElement();
+		}
+
+
+		@Override
+		public boolean hasNext() 
+		{
+			return nextElement != null;
+		}
+
+		@Override
+		public EventListener<? super T> next()
+		{
+			if (nextElement == null)
+			{
+				throw new NoSuchElementException("No more event listeners!");
+			}
+			
+			EventListener<? super T> result = nextElement;
+			initNextElement();
+			return result;
+		}
+
+		@Override
+		public void remove() 
+		{
+		   throw  new UnsupportedOperationException(
+				   "Removing elements is not supported!");	
+		}
+		
+		/** 
+		 * directly to invoke the next event listener
+		 * to handle the event
+		 * @param event
+		 */
+		public void invokeNext(Event event) 
+		{
+			validateEvent(event);
+			invokeNextListenerUnchecked(event);
+		}
+		
+		/**
+		 * Returns the registration of the next event listener, and moves on
+		 * like {@code next()}.
+		 * 
+		 * @return
+		 *        the registration of the next listener.
+		 */
+		public EventListenerRegistrationData<?> nextRegistration()
+		{
+			if (nextRegistration == null)
+			{
+				throw new NoSuchElementException("No more event listeners!");
+			}
+			
+			EventListenerRegistrationData<?> result = nextRegistration;
+			initNextElement();
+			return result;
+		}
+		
+		/**
+		 * Returns whether the next event listener was registered as
+		 * parallel-safe.
+		 * 
+		 * @return
+		 *        whether the next listener may run concurrently with others.
+		 */
+		public boolean isNextParallelSafe()
+		{
+			if (nextRegistration == null)
+			{
+				throw new NoSuchElementException("No more event listeners!");
+			}
+			return nextRegistration.isParallelSafe();
+		}
+		
+		/** 
+		 * the method be called by the iterator method{@code next()}
+		 * to initialize the next element which will return to
+		 * the client.
+		 */
+		private void initNextElement() 
+		{
+		    nextElement = null;
+		    nextRegistration = null;
+		    while (underlyingIterator.hasNext() && nextElement == null)
+		    {
+		    	EventListenerRegistrationData<?> regData =
+		    			underlyingIterator.next();
+		    	if (acceptedTypes.contains(regData.getEventType()))
+		    	{
+		    		nextElement = castListener(regData);
+		    		nextRegistration = regData;
+		    	}
+		    }
+		}
+		
+		/**
+		 * the method is used to validate the variable event
+		 * whether suite to the event listener.
+		 * @param event
+		 *          the event parameter.
+		 */
+		private void validateEvent(Event event)
+		{
+			if(event == null
+					|| !EventType.fetchSuperEventType(event.getEventType()).contains(
+							baseEventType))
+			{
+				throw new IllegalArgumentException(
+						"Event incomptible with listener iteration: " + event);
+			}
+		}
+		
+		private void invokeNextListenerUnchecked(Event event) 
+		{
+			EventListener<? super T> listener = next();
+			callListener(listener, event);
+		}
+		
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private EventListener<? super T> castListener(
+				EventListenerRegistrationData<?> regData)
+		{
+		     EventListener listener = regData.getListener();
+		     return listener;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.sunchao.event;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Utility methods for registering subscriber objects, whose methods are
+ * annotated with {@link Subscribe}, as event listeners.
+ * </p>
+ * <p>
+ * The subscriber is scanned once when it is registered: the event type of
+ * each annotated method is resolved, and a listener invoking the method
+ * directly is created for it. So there is no reflection involved in
+ * delivering an event. The created registrations are returned, because
+ * they are needed for removing the listeners again.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public final class EventSubscribers {
+
+	private EventSubscribers()
+	{
+	}
+
+	/**
+	 * Creates the listener registrations for all the annotated methods of
+	 * the subscriber, including the inherited ones, without registering
+	 * them anywhere.
+	 *
+	 * @param subscriber
+	 *             the subscriber object (must not be <b>null</b>).
+	 * @return
+	 *             the list of registrations.
+	 * @throws IllegalArgumentException
+	 *             if an annotated method or its event type is invalid.
+	 */
+	public static List<EventListenerRegistrationData<?>> createRegistrations(
+			Object subscriber)
+	{
+		if (subscriber == null)
+		{
+			throw new IllegalArgumentException("Subscriber must not be null!");
+		}
+
+		List<EventListenerRegistrationData<?>> registrations =
+				new ArrayList<EventListenerRegistrationData<?>>();
+		Set<String> signatures = new HashSet<String>();
+		for (Class<?> c = subscriber.getClass(); c != null; c = c.getSuperclass())
+		{
+			for (Method method : c.getDeclaredMethods())
+			{
+				Subscribe annotation = method.getAnnotation(Subscribe.class);
+				if (annotation != null && !method.isBridge()
+						&& signatures.add(method.getName()
+								+ Arrays.toString(method.getParameterTypes())))
+				{
+					registrations.add(createRegistration(subscriber, method,
+							annotation));
+				}
+			}
+		}
+		return registrations;
+	}
+
+	/**
+	 * Registers the annotated methods of the subscriber at the event
+	 * source.
+	 *
+	 * @param source
+	 *             the event source.
+	 * @param subscriber
+	 *             the subscriber object.
+	 * @return
+	 *             the registrations, needed for {@link #unsubscribe}.
+	 */
+	public static List<EventListenerRegistrationData<?>> subscribe(
+			EventSource source, Object subscriber)
+	{
+		List<EventListenerRegistrationData<?>> registrations =
+				createRegistrations(subscriber);
+		for (EventListenerRegistrationData<?> registration : registrations)
+		{
+			addEventListener(source, registration);
+		}
+		return registrations;
+	}
+
+	/**
+	 * Registers the annotated methods of the subscriber at the list of
+	 * event listeners.
+	 *
+	 * @param list
+	 *             the list of event listeners.
+	 * @param subscriber
+	 *             the subscriber object.
+	 * @return
+	 *             the registrations, needed for removing the listeners.
+	 */
+	public static List<EventListenerRegistrationData<?>> subscribe(
+			EventListenerList list, Object subscriber)
+	{
+		List<EventListenerRegistrationData<?>> registrations =
+				createRegistrations(subscriber);
+		for (EventListenerRegistrationData<?> registration : registrations)
+		{
+			list.addEventListener(registration);
+		}
+		return registrations;
+	}
+
+	/**
+	 * Removes the registrations of a subscriber from the event source.
+	 *
+	 * @param source
+	 *             the event source.
+	 * @param registrations
+	 *             the registrations returned by {@link #subscribe}.
+	 */
+	public static void unsubscribe(EventSource source,
+			Collection<EventListenerRegistrationData<?>> registrations)
+	{
+		for (EventListenerRegistrationData<?> registration : registrations)
+		{
+			removeEventListener(source, registration);
+		}
+	}
+
+	private static <T extends Event> void addEventListener(EventSource source,
+			EventListenerRegistrationData<T> registration)
+	{
+		source.addEventListener(registration.getEventType(),
+				registration.getListener());
+	}
+
+	private static <T extends Event> void removeEventListener(
+			EventSource source, EventListenerRegistrationData<T> registration)
+	{
+		source.removeEventListener(registration.getEventType(),
+				registration.getListener());
+	}
+
+	/**
+	 * Validates a subscriber method, resolves its event type and creates
+	 * its registration.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static EventListenerRegistrationData<?> createRegistration(
+			Object subscriber, Method method, Subscribe annotation)
+	{
+		Class<?>[] parameters = method.getParameterTypes();
+		if (!Modifier.isPublic(method.getModifiers())
+				|| method.getReturnType() != void.class
+				|| parameters.length != 1
+				|| !Event.class.isAssignableFrom(parameters[0]))
+		{
+			throw new IllegalArgumentException(
+					"Subscriber method must be public, return void and take "
+					+ "a single event: " + method);
+		}
+
+		EventType<?> eventType = resolveEventType(annotation, parameters[0]);
+		EventListener listener = ListenerInvokers.create(subscriber, method);
+		return new EventListenerRegistrationData(eventType, listener);
+	}
+
+	/**
+	 * Looks up the event type named by the annotation, and checks that its
+	 * events can be passed to the given parameter type.
+	 */
+	private static EventType<?> resolveEventType(Subscribe annotation,
+			Class<?> parameterType)
+	{
+		Class<?> holder = annotation.declaringClass() == void.class
+				? parameterType : annotation.declaringClass();
+		Field field;
+		try
+		{
+			field = holder.getField(annotation.value());
+		}
+		catch (NoSuchFieldException e)
+		{
+			throw new IllegalArgumentException("No public event type field "
+					+ annotation.value() + " in " + holder.getName(), e);
+		}
+		if (!Modifier.isStatic(field.getModifiers())
+				|| !EventType.class.isAssignableFrom(field.getType()))
+		{
+			throw new IllegalArgumentException(
+					"Not a static event type field: " + field);
+		}
+
+		Type fieldType = field.getGenericType();
+		if (fieldType instanceof ParameterizedType)
+		{
+			Type argument = ((ParameterizedType) fieldType)
+					.getActualTypeArguments()[0];
+			if (argument instanceof Class
+					&& !parameterType.isAssignableFrom((Class<?>) argument))
+			{
+				throw new IllegalArgumentException("Events of " + field
+						+ " are incompatible with " + parameterType.getName());
+			}
+		}
+
+		EventType<?> eventType;
+		try
+		{
+			eventType = (EventType<?>) field.get(null);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalArgumentException(
+					"Event type field is not accessible: " + field, e);
+		}
+		if (eventType == null)
+		{
+			throw new IllegalArgumentException("Event type field is null: "
+					+ field);
+		}
+		return eventType;
+	}
+}
@@ -0,0 +1,573 @@
+package com.sunchao.event;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A sampling tracer of the latency between firing an event and delivering
+ * it to each of its listeners.
+ * </p>
+ * <p>
+ * A sampled subset of the fired events get a trace; an event fired from
+ * inside a listener of a traced event is always traced as well, with the
+ * span of that listener as its causal parent. For each traced event a
+ * <em>fire</em> span from the fire time to the end of the delivery, and a
+ * <em>listener</em> span for each invoked listener are recorded. The spans
+ * are put into a bounded lock-free buffer by the producing threads and
+ * written to a binary trace file by a background thread; if the buffer is
+ * full, spans are dropped rather than blocking the producer.
+ * </p>
+ * <p>
+ * The trace file starts with the magic number {@code 0x45565452} ("EVTR"),
+ * the format version, and the pair of {@code System.currentTimeMillis()}
+ * and {@code System.nanoTime()} taken at the same moment, all as big endian
+ * values. It is followed by records which start with an {@code int} kind:
+ * </p>
+ * <ul>
+ * <li>{@code 0} - a name: the {@code int} id and the {@code int} length of
+ * the UTF-8 bytes of the name, followed by the bytes. A name is always
+ * written before the first span referring to it.</li>
+ * <li>{@code 1} - a fire span, {@code 2} - a listener span: the {@code int}
+ * id of the name of the event type or the listener class, followed by the
+ * {@code long} values trace id, span id, parent span id (0 for none), start
+ * and end time in nanoseconds.</li>
+ * </ul>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class EventTracer implements Closeable {
+
+	/** The magic number at the start of a trace file */
+	public static final int MAGIC = 0x45565452;
+
+	/** The version of the trace file format */
+	public static final int VERSION = 1;
+
+	/** The kind of a name record */
+	public static final int KIND_NAME = 0;
+
+	/** The kind of a fire span record */
+	public static final int KIND_FIRE = 1;
+
+	/** The kind of a listener span record */
+	public static final int KIND_LISTENER = 2;
+
+	/** The default capacity of the span buffer */
+	private static final int DEFAULT_CAPACITY = 8192;
+
+	/** The number of long fields of a buffered span */
+	private static final int FIELDS = 6;
+
+	/** The size of the write buffer of the trace file */
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	/** The time the writer parks if there are no spans */
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** The charset of the names */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** The span of the listener which is currently invoked by this thread */
+	private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+
+	/** A root event is traced with a probability of 1 / sampleRate */
+	private final int sampleRate;
+
+	/** The fields of the buffered spans, {@code FIELDS} per slot */
+	private final long[] spans;
+
+	/** The sequence numbers of the slots of the span buffer */
+	private final AtomicLongArray sequences;
+
+	/** The mask of the slot index */
+	private final int mask;
+
+	/** The position of the next slot to be claimed by a producer */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The number of spans dropped because the buffer was full */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/** The ids of the names of event types and listener classes */
+	private final ConcurrentMap<String, Integer> nameIds =
+			new ConcurrentHashMap<String, Integer>();
+
+	/** The names by id, guarded by itself */
+	private final List<String> names = new ArrayList<String>();
+
+	/** The channel of the trace file, only used by the writer */
+	private final FileChannel channel;
+
+	/** The background thread writing the spans */
+	private final Thread writer;
+
+	/** The flag whether the tracer is closed */
+	private volatile boolean closed;
+
+	/** The failure of the writer thread, if any */
+	private volatile IOException writeFailure;
+
+	/**
+	 * Creates a new instance of {@code EventTracer} with a default buffer
+	 * capacity.
+	 *
+	 * @param traceFile
+	 *             the trace file which is created or overwritten.
+	 * @param sampleRate
+	 *             a root event is traced with a probability of
+	 *             1 / sampleRate (must be greater than 0).
+	 * @throws IOException
+	 *             if the trace file cannot be opened.
+	 */
+	public EventTracer(File traceFile, int sampleRate) throws IOException
+	{
+		this(traceFile, sampleRate, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new instance of {@code EventTracer}.
+	 *
+	 * @param traceFile
+	 *             the trace file which is created or overwritten.
+	 * @param sampleRate
+	 *             a root event is traced with a probability of
+	 *             1 / sampleRate (must be greater than 0).
+	 * @param capacity
+	 *             the number of spans the buffer can hold, rounded up to a
+	 *             power of two.
+	 * @throws IOException
+	 *             if the trace file cannot be opened.
+	 */
+	public EventTracer(File traceFile, int sampleRate, int capacity)
+			throws IOException
+	{
+		if (traceFile == null)
+		{
+			throw new IllegalArgumentException("Trace file must not be null!");
+		}
+		if (sampleRate < 1)
+		{
+			throw new IllegalArgumentException(
+					"Sample rate must be greater than 0: " + sampleRate);
+		}
+		if (capacity < 1 || capacity > 1 << 24)
+		{
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+		{
+			size <<= 1;
+		}
+		this.sampleRate = sampleRate;
+		this.mask = size - 1;
+		this.spans = new long[size * FIELDS];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+		{
+			sequences.set(i, i);
+		}
+
+		this.channel = new FileOutputStream(traceFile).getChannel();
+		ByteBuffer header = ByteBuffer.allocate(24);
+		header.putInt(MAGIC).putInt(VERSION)
+				.putLong(System.currentTimeMillis()).putLong(System.nanoTime());
+		((Buffer) header).flip();
+		writeFully(header);
+
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				writeLoop();
+			}
+		}, "event-tracer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/** Return the number of spans dropped because the buffer was full */
+	public long getDroppedSpans()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Stops tracing, writes the remaining buffered spans and closes the
+	 * trace file.
+	 *
+	 * @throws IOException
+	 *             if the spans could not be written.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		LockSupport.unpark(writer);
+		boolean interrupted = false;
+		while (writer.isAlive())
+		{
+			try
+			{
+				writer.join();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (writeFailure != null)
+		{
+			throw writeFailure;
+		}
+	}
+
+	/**
+	 * Decides whether an event to be fired is traced, and starts its fire
+	 * span. An event is traced if it is fired by a listener of a traced
+	 * event, or if it is sampled.
+	 *
+	 * @param eventType
+	 *             the type of the fired event.
+	 * @return
+	 *             the fire span, or <b>null</b> if the event is not traced.
+	 */
+	Span startFire(EventType<?> eventType)
+	{
+		if (closed || writeFailure != null)
+		{
+			return null;
+		}
+		Span parent = CURRENT.get();
+		if (parent == null)
+		{
+			if (sampleRate > 1
+					&& ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+			{
+				return null;
+			}
+			long id = nextId();
+			return new Span(id, id, 0L, eventType.getName());
+		}
+		return new Span(parent.traceId, nextId(), parent.spanId,
+				eventType.getName());
+	}
+
+	/**
+	 * Returns a new random id which is never 0.
+	 */
+	private static long nextId()
+	{
+		long id;
+		do
+		{
+			id = ThreadLocalRandom.current().nextLong();
+		}
+		while (id == 0L);
+		return id;
+	}
+
+	/**
+	 * Returns the id of the given name, assigning a new id on first use.
+	 */
+	private int nameId(String name)
+	{
+		Integer id = nameIds.get(name);
+		if (id == null)
+		{
+			synchronized (names)
+			{
+				id = nameIds.get(name);
+				if (id == null)
+				{
+					id = names.size();
+					names.add(name);
+					nameIds.put(name, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Puts a span into the buffer, or drops it if the buffer is full.
+	 */
+	private void record(int kind, String name, long traceId, long spanId,
+			long parentId, long start, long end)
+	{
+		long packed = ((long) kind << 32) | (nameId(name) & 0xFFFFFFFFL);
+		long pos = tail.get();
+		for (;;)
+		{
+			int index = (int) pos & mask;
+			long diff = sequences.get(index) - pos;
+			if (diff == 0)
+			{
+				if (tail.compareAndSet(pos, pos + 1))
+				{
+					int base = index * FIELDS;
+					spans[base] = packed;
+					spans[base + 1] = traceId;
+					spans[base + 2] = spanId;
+					spans[base + 3] = parentId;
+					spans[base + 4] = start;
+					spans[base + 5] = end;
+					sequences.lazySet(index, pos + 1);
+					return;
+				}
+				pos = tail.get();
+			}
+			else if (diff < 0)
+			{
+				dropped.incrementAndGet();
+				return;
+			}
+			else
+			{
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * The loop of the writer thread, which moves the spans from the buffer
+	 * into the trace file until the tracer is closed.
+	 */
+	private void writeLoop()
+	{
+		ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		long head = 0;
+		int writtenNames = 0;
+		try
+		{
+			for (;;)
+			{
+				boolean done = closed;
+				int count = 0;
+				for (;;)
+				{
+					int index = (int) head & mask;
+					if (sequences.get(index) != head + 1)
+					{
+						break;
+					}
+					int base = index * FIELDS;
+					int nameId = (int) spans[base];
+					if (nameId >= writtenNames)
+					{
+						writtenNames = writeNames(out, writtenNames, nameId);
+					}
+					if (out.remaining() < 48)
+					{
+						flush(out);
+					}
+					out.putInt((int) (spans[base] >>> 32)).putInt(nameId);
+					for (int i = 1; i < 6; i++)
+					{
+						out.putLong(spans[base + i]);
+					}
+					sequences.lazySet(index, head + mask + 1);
+					head++;
+					count++;
+				}
+				flush(out);
+				if (done)
+				{
+					return;
+				}
+				if (count == 0)
+				{
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			writeFailure = e;
+		}
+	}
+
+	/**
+	 * Writes the name records up to the given id.
+	 *
+	 * @return
+	 *         the number of names written so far.
+	 */
+	private int writeNames(ByteBuffer out, int from, int to) throws IOException
+	{
+		for (int id = from; id <= to; id++)
+		{
+			String name;
+			synchronized (names)
+			{
+				name = names.get(id);
+			}
+			byte[] bytes = name.getBytes(UTF8);
+			if (out.remaining() < 12 + bytes.length)
+			{
+				flush(out);
+			}
+			if (out.remaining() < 12 + bytes.length)
+			{
+				ByteBuffer large = ByteBuffer.allocate(12 + bytes.length);
+				large.putInt(KIND_NAME).putInt(id).putInt(bytes.length).put(bytes);
+				((Buffer) large).flip();
+				writeFully(large);
+			}
+			else
+			{
+				out.putInt(KIND_NAME).putInt(id).putInt(bytes.length).put(bytes);
+			}
+		}
+		return to + 1;
+	}
+
+	/**
+	 * Writes the content of the write buffer to the trace file. The buffers
+	 * are flipped and cleared through {@link Buffer}, as the covariant
+	 * overrides of the byte buffer exist only since java 9.
+	 */
+	private void flush(ByteBuffer out) throws IOException
+	{
+		((Buffer) out).flip();
+		writeFully(out);
+		((Buffer) out).clear();
+	}
+
+	/** Writes the remaining bytes of the buffer to the trace file. */
+	private void writeFully(ByteBuffer buf) throws IOException
+	{
+		while (buf.hasRemaining())
+		{
+			channel.write(buf);
+		}
+	}
+
+	/**
+	 * <p>
+	 * The span of a traced event, from its fire time to the end of its
+	 * delivery.
+	 * </p>
+	 */
+	final class Span
+	{
+		/** the id of the trace, which is the id of the root span */
+		private final long traceId;
+
+		/** the id of this span */
+		private final long spanId;
+
+		/** the id of the causal parent span, 0 for none */
+		private final long parentId;
+
+		/** the name of the event type */
+		private final String name;
+
+		/** the fire time */
+		private final long start;
+
+		private Span(long traceId, long spanId, long parentId, String name)
+		{
+			this.traceId = traceId;
+			this.spanId = spanId;
+			this.parentId = parentId;
+			this.name = name;
+			this.start = System.nanoTime();
+		}
+
+		/**
+		 * Wraps a listener of the traced event, so that its invocation is
+		 * recorded as a child span, and the events fired by it are traced
+		 * as well.
+		 *
+		 * @param listener
+		 *             the listener of the event.
+		 * @return
+		 *             the tracing listener.
+		 */
+		EventListener<Event> wrap(EventListener<?> listener)
+		{
+			return new TracingListener(this, listener);
+		}
+
+		/** Records the end of the delivery of the traced event. */
+		void end()
+		{
+			record(KIND_FIRE, name, traceId, spanId, parentId, start,
+					System.nanoTime());
+		}
+	}
+
+	/**
+	 * <p>
+	 * A listener which records the invocation of the wrapped listener as
+	 * a listener span, which is the current span of the invoking thread
+	 * meanwhile.
+	 * </p>
+	 */
+	private class TracingListener implements EventListener<Event>
+	{
+		/** the fire span of the event */
+		private final Span fire;
+
+		/** the wrapped listener */
+		private final EventListener<?> listener;
+
+		private TracingListener(Span fire, EventListener<?> listener)
+		{
+			this.fire = fire;
+			this.listener = listener;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		@Override
+		public void onEvent(Event event)
+		{
+			Span span = new Span(fire.traceId, nextId(), fire.spanId,
+					listener.getClass().getName());
+			Span previous = CURRENT.get();
+			CURRENT.set(span);
+			try
+			{
+				EventListener rawListener = listener;
+				rawListener.onEvent(event);
+			}
+			finally
+			{
+				CURRENT.set(previous);
+				record(KIND_LISTENER, span.name, span.traceId, span.spanId,
+						span.parentId, span.start, System.nanoTime());
+			}
+		}
+	}
+}
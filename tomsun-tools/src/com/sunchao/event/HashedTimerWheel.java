@@ -0,0 +1,461 @@
+package com.sunchao.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A hashed hierarchical timer wheel, used for scheduling large numbers of
+ * delayed and periodic timeouts.
+ * </p>
+ * <p>
+ * The time is divided into ticks. The wheel has {@value #LEVELS} levels of
+ * {@value #SLOTS} slots, each slot holding a doubly linked list of
+ * timeouts; a slot of level <em>n</em> covers {@code SLOTS^n} ticks. A
+ * timeout is put into the lowest level whose range covers its deadline,
+ * and moved down a level when the wheel reaches its slot. So scheduling and
+ * cancelling a timeout take constant time, independent of the number of
+ * scheduled timeouts.
+ * </p>
+ * <p>
+ * The slots are only touched by the worker thread of the wheel; other
+ * threads hand their new and cancelled timeouts over through lock-free
+ * queues. All the timeouts expired at a tick are passed to the
+ * {@link ExpirationHandler} as one batch, on the worker thread.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class HashedTimerWheel {
+
+	/** The number of bits of the slot index of a level */
+	private static final int SLOT_BITS = 8;
+
+	/** The number of slots of a level */
+	static final int SLOTS = 1 << SLOT_BITS;
+
+	/** The number of levels */
+	static final int LEVELS = 4;
+
+	/** The mask of the slot index */
+	private static final int SLOT_MASK = SLOTS - 1;
+
+	/** The maximum number of ticks a timeout can be placed ahead */
+	private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	/** The state of a scheduled timeout */
+	private static final int STATE_SCHEDULED = 0;
+
+	/** The state of a cancelled timeout */
+	private static final int STATE_CANCELLED = 1;
+
+	/** The state of an expired one-shot timeout */
+	private static final int STATE_EXPIRED = 2;
+
+	/** The handler of the expired timeouts */
+	private final ExpirationHandler handler;
+
+	/** The duration of a tick in nanoseconds */
+	private final long tickNanos;
+
+	/** The heads of the slot lists, by level and slot */
+	private final Timeout[][] wheel = new Timeout[LEVELS][SLOTS];
+
+	/** The timeouts scheduled but not yet put into the wheel */
+	private final Queue<Timeout> pendingTimeouts =
+			new ConcurrentLinkedQueue<Timeout>();
+
+	/** The timeouts cancelled but not yet removed from the wheel */
+	private final Queue<Timeout> cancelledTimeouts =
+			new ConcurrentLinkedQueue<Timeout>();
+
+	/** The worker thread */
+	private final Thread worker;
+
+	/** The start time of the wheel, tick 0 */
+	private final long startTime;
+
+	/** The current tick, only accessed by the worker */
+	private long currentTick;
+
+	/** The number of timeouts in the wheel, only accessed by the worker */
+	private int size;
+
+	/** The flag whether the wheel is stopped */
+	private volatile boolean stopped;
+
+	/**
+	 * Creates a new instance of {@code HashedTimerWheel} and starts its
+	 * worker thread.
+	 *
+	 * @param tickDuration
+	 *             the duration of a tick.
+	 * @param unit
+	 *             the time unit of the tick duration.
+	 * @param handler
+	 *             the handler of the expired timeouts.
+	 * @param name
+	 *             the name of the worker thread.
+	 */
+	HashedTimerWheel(long tickDuration, TimeUnit unit,
+			ExpirationHandler handler, String name)
+	{
+		this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+		this.handler = handler;
+		this.startTime = System.nanoTime();
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				workerLoop();
+			}
+		}, name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Schedules a timeout.
+	 *
+	 * @param payload
+	 *             the payload passed to the handler.
+	 * @param delay
+	 *             the delay until the first expiration.
+	 * @param period
+	 *             the period of the following expirations, 0 for a
+	 *             one-shot timeout.
+	 * @param unit
+	 *             the time unit of delay and period.
+	 * @return
+	 *             the timeout.
+	 */
+	Timeout schedule(Object payload, long delay, long period, TimeUnit unit)
+	{
+		if (stopped)
+		{
+			throw new IllegalStateException("Timer wheel is stopped!");
+		}
+		long periodTicks = period <= 0 ? 0 : Math.max(1L,
+				unit.toNanos(period) / tickNanos);
+		Timeout timeout = new Timeout(payload, System.nanoTime()
+				+ Math.max(0L, unit.toNanos(delay)), periodTicks);
+		pendingTimeouts.add(timeout);
+		LockSupport.unpark(worker);
+		return timeout;
+	}
+
+	/**
+	 * Stops the worker thread. The timeouts not yet expired are discarded.
+	 */
+	void stop()
+	{
+		stopped = true;
+		LockSupport.unpark(worker);
+	}
+
+	/**
+	 * The loop of the worker thread, which advances the wheel tick by tick
+	 * and passes the expired timeouts to the handler.
+	 */
+	private void workerLoop()
+	{
+		List<Timeout> expired = new ArrayList<Timeout>();
+		while (!stopped)
+		{
+			transferCancelled();
+			long now = System.nanoTime();
+			long nowTick = (now - startTime) / tickNanos;
+			if (size == 0)
+			{
+				// nothing to expire in between, so skip the idle ticks
+				currentTick = Math.max(currentTick, nowTick);
+				if (pendingTimeouts.isEmpty())
+				{
+					LockSupport.park(this);
+					continue;
+				}
+			}
+			transferPending();
+			while (currentTick < nowTick)
+			{
+				currentTick++;
+				cascade(1);
+				expireSlot(expired);
+			}
+			if (!expired.isEmpty())
+			{
+				handleExpired(expired);
+				expired.clear();
+			}
+			else
+			{
+				LockSupport.parkNanos(this, startTime + (currentTick + 1)
+						* tickNanos - System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * Puts the pending timeouts into the wheel.
+	 */
+	private void transferPending()
+	{
+		Timeout timeout;
+		while ((timeout = pendingTimeouts.poll()) != null)
+		{
+			if (timeout.state.get() == STATE_SCHEDULED)
+			{
+				long deadline = (timeout.deadlineNanos - startTime + tickNanos - 1)
+						/ tickNanos;
+				// a timeout already due expires on the next tick
+				timeout.deadline = Math.max(deadline, currentTick + 1);
+				place(timeout);
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Removes the cancelled timeouts from the wheel.
+	 */
+	private void transferCancelled()
+	{
+		Timeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null)
+		{
+			if (timeout.level >= 0)
+			{
+				unlink(timeout);
+				size--;
+			}
+		}
+	}
+
+	/**
+	 * Puts the timeout into the slot of the lowest level which covers its
+	 * deadline. A timeout cascaded at its deadline tick is put into the
+	 * current slot of the lowest level, which is expired right after the
+	 * cascade.
+	 */
+	private void place(Timeout timeout)
+	{
+		long deadline = timeout.deadline;
+		long delta = Math.min(deadline - currentTick, MAX_TICKS);
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1)))
+		{
+			level++;
+		}
+		if (delta == MAX_TICKS)
+		{
+			deadline = currentTick + MAX_TICKS;
+		}
+		int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+
+		timeout.level = level;
+		timeout.slot = slot;
+		timeout.prev = null;
+		timeout.next = wheel[level][slot];
+		if (timeout.next != null)
+		{
+			timeout.next.prev = timeout;
+		}
+		wheel[level][slot] = timeout;
+	}
+
+	/**
+	 * Removes the timeout from its slot.
+	 */
+	private void unlink(Timeout timeout)
+	{
+		if (timeout.prev == null)
+		{
+			wheel[timeout.level][timeout.slot] = timeout.next;
+		}
+		else
+		{
+			timeout.prev.next = timeout.next;
+		}
+		if (timeout.next != null)
+		{
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.level = -1;
+	}
+
+	/**
+	 * Moves the timeouts of the current slot of the given level down, if
+	 * the current tick starts a new round of the level below. The levels
+	 * above are cascaded first.
+	 */
+	private void cascade(int level)
+	{
+		if (level >= LEVELS
+				|| (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+		{
+			return;
+		}
+		cascade(level + 1);
+		int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+		Timeout timeout = wheel[level][slot];
+		wheel[level][slot] = null;
+		while (timeout != null)
+		{
+			Timeout next = timeout.next;
+			place(timeout);
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Removes the timeouts of the current slot of the lowest level, which
+	 * are due now.
+	 */
+	private void expireSlot(List<Timeout> expired)
+	{
+		int slot = (int) currentTick & SLOT_MASK;
+		Timeout timeout = wheel[0][slot];
+		wheel[0][slot] = null;
+		while (timeout != null)
+		{
+			Timeout next = timeout.next;
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.level = -1;
+			size--;
+			if (timeout.periodTicks == 0)
+			{
+				if (timeout.state.compareAndSet(STATE_SCHEDULED, STATE_EXPIRED))
+				{
+					expired.add(timeout);
+				}
+			}
+			else if (timeout.state.get() == STATE_SCHEDULED)
+			{
+				expired.add(timeout);
+				timeout.deadline = currentTick + timeout.periodTicks;
+				place(timeout);
+				size++;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Passes a batch of expired timeouts to the handler. An exception of
+	 * the handler is passed to the uncaught exception handler of the worker,
+	 * which keeps running.
+	 */
+	private void handleExpired(List<Timeout> expired)
+	{
+		try
+		{
+			handler.expired(expired);
+		}
+		catch (RuntimeException ex)
+		{
+			Thread.UncaughtExceptionHandler ueh = worker
+					.getUncaughtExceptionHandler();
+			ueh.uncaughtException(worker, ex);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Definition of the callback receiving the expired timeouts.
+	 * </p>
+	 */
+	interface ExpirationHandler
+	{
+		/**
+		 * Handles the timeouts expired at the same tick.
+		 *
+		 * @param timeouts
+		 *             the expired timeouts, in no particular order.
+		 */
+		void expired(List<Timeout> timeouts);
+	}
+
+	/**
+	 * <p>
+	 * A timeout scheduled in the wheel. The links and the position are only
+	 * accessed by the worker thread.
+	 * </p>
+	 */
+	final class Timeout implements ScheduledEvent
+	{
+		/** the payload passed to the handler */
+		private final Object payload;
+
+		/** the time of the first expiration in nanoseconds */
+		private final long deadlineNanos;
+
+		/** the period in ticks, 0 for a one-shot timeout */
+		private final long periodTicks;
+
+		/** the state of the timeout */
+		private final AtomicInteger state = new AtomicInteger(STATE_SCHEDULED);
+
+		/** the tick of the next expiration */
+		private long deadline;
+
+		/** the level of the slot, -1 if not in the wheel */
+		private int level = -1;
+
+		/** the slot index */
+		private int slot;
+
+		/** the previous timeout of the slot list */
+		private Timeout prev;
+
+		/** the next timeout of the slot list */
+		private Timeout next;
+
+		private Timeout(Object payload, long deadlineNanos, long periodTicks)
+		{
+			this.payload = payload;
+			this.deadlineNanos = deadlineNanos;
+			this.periodTicks = periodTicks;
+		}
+
+		/** Return the payload of the timeout */
+		Object getPayload()
+		{
+			return payload;
+		}
+
+		@Override
+		public boolean cancel()
+		{
+			if (!state.compareAndSet(STATE_SCHEDULED, STATE_CANCELLED))
+			{
+				return false;
+			}
+			cancelledTimeouts.add(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return state.get() == STATE_CANCELLED;
+		}
+
+		@Override
+		public boolean isPeriodic()
+		{
+			return periodTicks != 0;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.sunchao.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * <p>
+ * Factory of the event listeners invoking subscriber methods.
+ * </p>
+ * <p>
+ * This version binds a method handle to the subscriber. The multi-release
+ * layer for java 8 replaces it with one generating a direct implementation
+ * of {@link EventListener} through the {@code LambdaMetafactory}.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class ListenerInvokers {
+
+	/** The type of the {@code onEvent()} method */
+	static final MethodType ON_EVENT = MethodType.methodType(void.class,
+			Event.class);
+
+	private ListenerInvokers()
+	{
+	}
+
+	/**
+	 * Creates an event listener invoking the given subscriber method.
+	 *
+	 * @param subscriber
+	 *             the subscriber object, ignored for a static method.
+	 * @param method
+	 *             the public subscriber method with a single event parameter.
+	 * @return
+	 *             the event listener.
+	 */
+	static EventListener<Event> create(Object subscriber, Method method)
+	{
+		return createHandleListener(subscriber, method);
+	}
+
+	/**
+	 * Creates an event listener invoking the given subscriber method through
+	 * a method handle.
+	 *
+	 * @param subscriber
+	 *             the subscriber object, ignored for a static method.
+	 * @param method
+	 *             the public subscriber method with a single event parameter.
+	 * @return
+	 *             the event listener.
+	 */
+	static EventListener<Event> createHandleListener(Object subscriber,
+			Method method)
+	{
+		MethodHandle handle;
+		try
+		{
+			handle = MethodHandles.publicLookup().unreflect(method);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalArgumentException(
+					"Subscriber method is not accessible: " + method, e);
+		}
+		if (!Modifier.isStatic(method.getModifiers()))
+		{
+			handle = handle.bindTo(subscriber);
+		}
+		return new MethodHandleListener(handle.asType(ON_EVENT), method);
+	}
+}
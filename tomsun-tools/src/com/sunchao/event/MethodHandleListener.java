@@ -0,0 +1,63 @@
+package com.sunchao.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+
+/**
+ * <p>
+ * An event listener which invokes a subscriber method through a method
+ * handle of the exact type {@code (Event)void}.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+final class MethodHandleListener implements EventListener<Event> {
+
+	/** The handle of the subscriber method, bound to the subscriber */
+	private final MethodHandle handle;
+
+	/** The subscriber method */
+	private final Method method;
+
+	/**
+	 * Creates a new instance of {@code MethodHandleListener}.
+	 *
+	 * @param handle
+	 *             the handle of the type {@code (Event)void}.
+	 * @param method
+	 *             the subscriber method.
+	 */
+	MethodHandleListener(MethodHandle handle, Method method)
+	{
+		this.handle = handle;
+		this.method = method;
+	}
+
+	@Override
+	public void onEvent(Event event)
+	{
+		try
+		{
+			handle.invokeExact(event);
+		}
+		catch (RuntimeException ex)
+		{
+			throw ex;
+		}
+		catch (Error err)
+		{
+			throw err;
+		}
+		catch (Throwable t)
+		{
+			throw new RuntimeException("Subscriber method failed: " + method, t);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + " [ " + method + " ]";
+	}
+}
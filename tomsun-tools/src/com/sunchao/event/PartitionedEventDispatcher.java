@@ -0,0 +1,204 @@
+package com.sunchao.event;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * An event dispatcher which keeps the order of the events only per key.
+ * </p>
+ * <p>
+ * A key is extracted from each dispatched event, for instance an entry of
+ * the attachment, and hashed to one of a fixed number of lanes. Each lane
+ * is served by a single thread, so the events with the same key are
+ * delivered in the order they were fired, while events with different keys
+ * proceed in parallel. Events without a key all go to the first lane.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe. The lane threads are
+ * daemon threads, they are stopped by {@link #shutdown()}.
+ * </p>
+ * 
+ * @author sunchao
+ *
+ */
+public class PartitionedEventDispatcher implements EventDispatcher {
+
+	/** The single threaded executors, one for each lane */
+	private final ExecutorService[] lanes;
+	
+	/** The extractor of the partition key of an event */
+	private final KeyExtractor keyExtractor;
+	
+	/**
+	 * Creates a new instance of {@code PartitionedEventDispatcher} with
+	 * the given number of lanes.
+	 * 
+	 * @param laneCount
+	 *              the number of lanes (must be greater than 0).
+	 * @param keyExtractor
+	 *              the extractor of the partition key (must not be <b>null</b>).
+	 */
+	public PartitionedEventDispatcher(int laneCount, KeyExtractor keyExtractor)
+	{
+		if (laneCount < 1)
+		{
+			throw new IllegalArgumentException(
+					"Lane count must be greater than 0: " + laneCount);
+		}
+		if (keyExtractor == null)
+		{
+			throw new IllegalArgumentException("Key extractor must not be null!");
+		}
+		
+		this.keyExtractor = keyExtractor;
+		this.lanes = new ExecutorService[laneCount];
+		for (int i = 0; i < laneCount; i++)
+		{
+			lanes[i] = Executors.newSingleThreadExecutor(
+					new LaneThreadFactory("event-lane-" + i));
+		}
+	}
+	
+	/**
+	 * Creates a key extractor which uses the value of the given attachment
+	 * entry of a {@link DefaultEvent} or {@link DefaultErrorEvent}.
+	 * 
+	 * @param name
+	 *             the name of the attachment entry.
+	 * @return
+	 *             the key extractor.
+	 */
+	public static KeyExtractor attachmentEntry(final String name)
+	{
+		return new KeyExtractor() {
+			@Override
+			public Object extractKey(Event event)
+			{
+				Map<String, Object> attachment = null;
+				if (event instanceof DefaultEvent)
+				{
+					attachment = ((DefaultEvent) event).getAttachment();
+				}
+				else if (event instanceof DefaultErrorEvent)
+				{
+					attachment = ((DefaultErrorEvent) event).getAttactName();
+				}
+				return attachment == null ? null : attachment.get(name);
+			}
+		};
+	}
+	
+	@Override
+	public void dispatch(Event event, Runnable delivery)
+	{
+		lanes[laneOf(keyExtractor.extractKey(event))].execute(delivery);
+	}
+	
+	/** Return the number of lanes */
+	public int getLaneCount()
+	{
+		return lanes.length;
+	}
+	
+	/**
+	 * Stops accepting new events. The events already dispatched are still
+	 * delivered.
+	 */
+	public void shutdown()
+	{
+		for (ExecutorService lane : lanes)
+		{
+			lane.shutdown();
+		}
+	}
+	
+	/**
+	 * Waits until all lanes are terminated after a shutdown.
+	 * 
+	 * @param timeout
+	 *             the maximum time to wait.
+	 * @param unit
+	 *             the time unit of the timeout.
+	 * @return
+	 *             whether all lanes were terminated in time.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ExecutorService lane : lanes)
+		{
+			if (!lane.awaitTermination(deadline - System.nanoTime(),
+					TimeUnit.NANOSECONDS))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Computes the lane of the given key. The hash code is spread, so
+	 * that keys which only differ in the high bits use different lanes.
+	 */
+	private int laneOf(Object key)
+	{
+		if (key == null)
+		{
+			return 0;
+		}
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return (h & 0x7fffffff) % lanes.length;
+	}
+	
+	/**
+	 * <p>
+	 * Definition of the function which extracts the partition key of an
+	 * event. Events with equal keys are delivered in order.
+	 * </p>
+	 * 
+	 * @author sunchao
+	 *
+	 */
+	public interface KeyExtractor {
+		
+		/**
+		 * Returns the partition key of the event.
+		 * 
+		 * @param event
+		 *             the event.
+		 * @return
+		 *             the key, or <b>null</b> if the event has no key.
+		 */
+		Object extractKey(Event event);
+	}
+	
+	/**
+	 * The factory of the daemon threads serving a lane.
+	 */
+	private static class LaneThreadFactory implements ThreadFactory
+	{
+		/** the name of the lane thread */
+		private final String name;
+		
+		private LaneThreadFactory(String name)
+		{
+			this.name = name;
+		}
+		
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.sunchao.event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * An asynchronous event dispatcher with priority lanes, so that urgent
+ * events overtake the queued routine ones.
+ * </p>
+ * <p>
+ * A {@link Priority} is assigned to an event type and applies to its whole
+ * subtree, unless a sub type has a priority of its own. Types without an
+ * assigned priority are {@link Priority#NORMAL}; {@link DefaultErrorEvent#ERROR}
+ * is {@link Priority#HIGH} by default. Each priority has a lane of its own,
+ * served by a single worker thread, which always takes the next delivery
+ * from the highest non-empty lane.
+ * </p>
+ * <p>
+ * To avoid starvation, a waiting lane counts how many deliveries of higher
+ * lanes were taken before it. When the count reaches the starvation limit,
+ * the lane gets the next delivery, so low-priority events still make
+ * progress under a steady stream of urgent ones. The events of one lane are
+ * delivered in the order they were fired.
+ * </p>
+ * <p>
+ * Implementation note: This class is thread-safe. The worker thread is a
+ * daemon thread, it is stopped by {@link #shutdown()}.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class PriorityEventDispatcher implements EventDispatcher {
+
+	/**
+	 * <p>
+	 * The priorities of the lanes, from the highest to the lowest.
+	 * </p>
+	 */
+	public enum Priority
+	{
+		HIGH, NORMAL, LOW
+	}
+
+	/** The default number of overtakes a waiting lane tolerates */
+	public static final int DEFAULT_STARVATION_LIMIT = 16;
+
+	/** The lanes, indexed by the ordinal of the priority */
+	private final Queue<Runnable>[] lanes;
+
+	/** The number of overtakes of each waiting lane */
+	private final int[] overtaken;
+
+	/** The number of queued deliveries of all lanes */
+	private final Semaphore queued = new Semaphore(0);
+
+	/** The priorities assigned to event types */
+	private final ConcurrentMap<EventType<?>, Priority> assigned =
+			new ConcurrentHashMap<EventType<?>, Priority>();
+
+	/** The resolved priorities of the dispatched event types */
+	private final ConcurrentMap<EventType<?>, Priority> resolved =
+			new ConcurrentHashMap<EventType<?>, Priority>();
+
+	/** The number of overtakes a waiting lane tolerates */
+	private final int starvationLimit;
+
+	/** The worker thread */
+	private final Thread worker;
+
+	/** The flag whether the dispatcher is shut down */
+	private volatile boolean shutdown;
+
+	/**
+	 * Creates a new instance of {@code PriorityEventDispatcher} with the
+	 * default starvation limit.
+	 */
+	public PriorityEventDispatcher()
+	{
+		this(DEFAULT_STARVATION_LIMIT);
+	}
+
+	/**
+	 * Creates a new instance of {@code PriorityEventDispatcher}.
+	 *
+	 * @param starvationLimit
+	 *              the number of deliveries of higher lanes after which a
+	 *              waiting lane is served (must be greater than 0).
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public PriorityEventDispatcher(int starvationLimit)
+	{
+		if (starvationLimit < 1)
+		{
+			throw new IllegalArgumentException(
+					"Starvation limit must be greater than 0: " + starvationLimit);
+		}
+		this.starvationLimit = starvationLimit;
+		Priority[] priorities = Priority.values();
+		this.lanes = new Queue[priorities.length];
+		for (int i = 0; i < lanes.length; i++)
+		{
+			lanes[i] = new ConcurrentLinkedQueue<Runnable>();
+		}
+		this.overtaken = new int[priorities.length];
+		assigned.put(DefaultErrorEvent.ERROR, Priority.HIGH);
+
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				workerLoop();
+			}
+		}, "event-priority-dispatcher");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Assigns a priority to an event type and its sub types.
+	 *
+	 * @param type
+	 *              the event type (must not be <b>null</b>).
+	 * @param priority
+	 *              the priority, <b>null</b> to remove the assignment.
+	 */
+	public void setPriority(EventType<?> type, Priority priority)
+	{
+		if (type == null)
+		{
+			throw new IllegalArgumentException("Event type must not be null!");
+		}
+		if (priority == null)
+		{
+			assigned.remove(type);
+		}
+		else
+		{
+			assigned.put(type, priority);
+		}
+		resolved.clear();
+	}
+
+	/**
+	 * Returns the priority of an event type, which is the one assigned to
+	 * the type or to its nearest super type.
+	 *
+	 * @param type
+	 *              the event type.
+	 * @return
+	 *              the priority.
+	 */
+	public Priority getPriority(EventType<?> type)
+	{
+		Priority priority = resolved.get(type);
+		if (priority == null)
+		{
+			priority = Priority.NORMAL;
+			for (EventType<?> t = type; t != null; t = t.getSuperType())
+			{
+				Priority p = assigned.get(t);
+				if (p != null)
+				{
+					priority = p;
+					break;
+				}
+			}
+			resolved.put(type, priority);
+		}
+		return priority;
+	}
+
+	@Override
+	public void dispatch(Event event, Runnable delivery)
+	{
+		if (shutdown)
+		{
+			throw new RejectedExecutionException("Dispatcher is shut down!");
+		}
+		Queue<Runnable> lane = lanes[getPriority(event.getEventType()).ordinal()];
+		lane.add(delivery);
+		queued.release();
+		// a shutdown in between may have stopped the worker already; unless
+		// the worker took the delivery, it is taken back and rejected
+		if (shutdown && lane.remove(delivery))
+		{
+			throw new RejectedExecutionException("Dispatcher is shut down!");
+		}
+	}
+
+	/**
+	 * Returns the number of deliveries queued in the lane of a priority.
+	 *
+	 * @param priority
+	 *             the priority of the lane.
+	 * @return
+	 *             the number of queued deliveries.
+	 */
+	public int getQueuedCount(Priority priority)
+	{
+		return lanes[priority.ordinal()].size();
+	}
+
+	/**
+	 * Stops accepting new events. The events already dispatched are still
+	 * delivered.
+	 */
+	public void shutdown()
+	{
+		shutdown = true;
+		// wakes up the worker, which sees the flag when the lanes are empty
+		queued.release();
+	}
+
+	/**
+	 * Waits until the worker is terminated after a shutdown.
+	 *
+	 * @param timeout
+	 *             the maximum time to wait.
+	 * @param unit
+	 *             the time unit of the timeout.
+	 * @return
+	 *             whether the worker was terminated in time.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit)
+			throws InterruptedException
+	{
+		unit.timedJoin(worker, timeout);
+		return !worker.isAlive();
+	}
+
+	/**
+	 * The loop of the worker thread, which runs one delivery per permit of
+	 * the queued count.
+	 */
+	private void workerLoop()
+	{
+		while (true)
+		{
+			queued.acquireUninterruptibly();
+			Runnable delivery = next();
+			if (delivery == null)
+			{
+				if (shutdown)
+				{
+					return;
+				}
+				continue;
+			}
+			try
+			{
+				delivery.run();
+			}
+			catch (RuntimeException ex)
+			{
+				worker.getUncaughtExceptionHandler().uncaughtException(worker, ex);
+			}
+		}
+	}
+
+	/**
+	 * Takes the next delivery: from the most overtaken waiting lane if it
+	 * reached the starvation limit, otherwise from the highest non-empty
+	 * lane.
+	 */
+	private Runnable next()
+	{
+		int highest = -1;
+		int starved = -1;
+		for (int i = 0; i < lanes.length; i++)
+		{
+			if (lanes[i].isEmpty())
+			{
+				overtaken[i] = 0;
+			}
+			else if (highest < 0)
+			{
+				highest = i;
+			}
+			else if (++overtaken[i] >= starvationLimit
+					&& (starved < 0 || overtaken[i] > overtaken[starved]))
+			{
+				starved = i;
+			}
+		}
+		if (highest < 0)
+		{
+			return null;
+		}
+		int lane = starved < 0 ? highest : starved;
+		overtaken[lane] = 0;
+		return lanes[lane].poll();
+	}
+}
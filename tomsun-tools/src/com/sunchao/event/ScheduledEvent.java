@@ -0,0 +1,28 @@
+package com.sunchao.event;
+
+/**
+ * <p>
+ * A handle of an event scheduled to be fired later, either once or
+ * periodically, by a {@link DefaultEventSource}.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public interface ScheduledEvent {
+
+	/**
+	 * Cancels the scheduled event. A periodic event is not fired any more.
+	 *
+	 * @return
+	 *        whether the event was cancelled; <b>false</b> if it was already
+	 *        fired (and is not periodic) or cancelled.
+	 */
+	boolean cancel();
+
+	/** Return whether the scheduled event was cancelled */
+	boolean isCancelled();
+
+	/** Return whether the event is fired periodically */
+	boolean isPeriodic();
+}
@@ -0,0 +1,326 @@
+package com.sunchao.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * An event source which is confined to a single thread, like an event loop.
+ * </p>
+ * <p>
+ * Unlike {@link DefaultEventSource}, the listeners are kept in plain arrays
+ * and the detail events counter is a plain field, so neither registering
+ * nor firing takes a lock or reads a volatile field. The events are always
+ * delivered synchronously on the owner thread. Listeners may be added and
+ * removed while an event is delivered; a removal then replaces the arrays
+ * instead of shifting them, so the running delivery is not disturbed.
+ * </p>
+ * <p>
+ * The owner is the first thread which uses the source. The ownership is
+ * only checked if assertions are enabled ({@code -ea}); without them the
+ * checks are removed entirely.
+ * </p>
+ * <p>
+ * Implementation note: This class is <b>not</b> thread-safe.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+public class SingleThreadedEventSource implements EventSource {
+
+	/** The initial capacity of the listener arrays */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** The event types of the registrations */
+	private EventType<?>[] types = new EventType<?>[INITIAL_CAPACITY];
+
+	/** The listeners of the registrations */
+	private EventListener<?>[] listeners = new EventListener<?>[INITIAL_CAPACITY];
+
+	/** The number of registrations */
+	private int size;
+
+	/** The nesting depth of the running deliveries */
+	private int firing;
+
+	/** The counter of detail event number */
+	private int detailEvents;
+
+	/** The owner thread, only maintained if assertions are enabled */
+	private Thread owner;
+
+	@Override
+	public <T extends Event> void addEventListener(EventType<T> eventType,
+			EventListener<? super T> listener)
+	{
+		assert checkOwner() : ownerMessage();
+		if (eventType == null)
+		{
+			throw new IllegalArgumentException("Event type must not be null!");
+		}
+		if (listener == null)
+		{
+			throw new IllegalArgumentException("Listener must not be null!");
+		}
+		if (size == types.length)
+		{
+			types = Arrays.copyOf(types, size << 1);
+			listeners = Arrays.copyOf(listeners, size << 1);
+		}
+		types[size] = eventType;
+		listeners[size] = listener;
+		size++;
+	}
+
+	@Override
+	public <T extends Event> boolean removeEventListener(
+			EventType<T> eventType, EventListener<? super T> listener)
+	{
+		assert checkOwner() : ownerMessage();
+		for (int i = 0; i < size; i++)
+		{
+			if (types[i] == eventType && listeners[i] == listener)
+			{
+				if (firing > 0)
+				{
+					// the running delivery keeps iterating the old arrays
+					types = types.clone();
+					listeners = listeners.clone();
+				}
+				int moved = size - i - 1;
+				System.arraycopy(types, i + 1, types, i, moved);
+				System.arraycopy(listeners, i + 1, listeners, i, moved);
+				size--;
+				types[size] = null;
+				listeners[size] = null;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all event listeners.
+	 */
+	public void clearEventListeners()
+	{
+		assert checkOwner() : ownerMessage();
+		types = new EventType<?>[INITIAL_CAPACITY];
+		listeners = new EventListener<?>[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Returns the listeners which are notified about events of the given
+	 * type, i.e. the listeners registered for the type or one of its super
+	 * types.
+	 *
+	 * @param eventType
+	 *            the event type.
+	 * @return
+	 *            a new list of the listeners.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Event> List<EventListener<? super T>> getEventListeners(
+			EventType<T> eventType)
+	{
+		assert checkOwner() : ownerMessage();
+		List<EventListener<? super T>> result =
+				new ArrayList<EventListener<? super T>>();
+		for (int i = 0; i < size; i++)
+		{
+			if (EventType.isInstanceOf(eventType, types[i]))
+			{
+				result.add((EventListener<? super T>) listeners[i]);
+			}
+		}
+		return result;
+	}
+
+	/** Return the number of registered listeners */
+	public int getListenerCount()
+	{
+		assert checkOwner() : ownerMessage();
+		return size;
+	}
+
+	/** Return whether the detail event was generated */
+	public boolean isDetailEvents()
+	{
+		assert checkOwner() : ownerMessage();
+		return detailEvents > 0;
+	}
+
+	/**
+	 * The method recodes the counter of calls number
+	 *
+	 * @param enable
+	 *              a flag which represent whether the details are enable
+	 *              or disable.
+	 */
+	public void setDetailEvents(boolean enable)
+	{
+		assert checkOwner() : ownerMessage();
+		if (enable)
+		{
+			detailEvents++;
+		}
+		else
+		{
+			detailEvents--;
+		}
+	}
+
+	/**
+	 * Makes an event and delivers it to all the registered listeners, if
+	 * sending events is allowed.
+	 *
+	 * @param type
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 */
+	protected <T extends DefaultEvent> void fireEvent(EventType<T> type,
+			Map<String, Object> attachment)
+	{
+		assert checkOwner() : ownerMessage();
+		if (detailEvents >= 0)
+		{
+			deliver(type, attachment);
+		}
+	}
+
+	/**
+	 * Makes an error event and delivers it to all the registered listeners.
+	 *
+	 * @param type
+	 *            the event type.
+	 * @param opType
+	 *            the operation which occurs an exception.
+	 * @param attachment
+	 *            the attachment information.
+	 * @param cause
+	 *            the stored exception.
+	 */
+	public <T extends DefaultErrorEvent> void fireError(EventType<T> type,
+			EventType<?> opType, Map<String, Object> attachment, Throwable cause)
+	{
+		assert checkOwner() : ownerMessage();
+		EventBusRecorder.recordError(type, opType, cause);
+		Event event = null;
+		EventType<?>[] t = types;
+		EventListener<?>[] l = listeners;
+		int n = size;
+		firing++;
+		try
+		{
+			for (int i = 0; i < n; i++)
+			{
+				if (EventType.isInstanceOf(type, t[i]))
+				{
+					if (event == null)
+					{
+						event = createErrorEvent(type, opType, attachment, cause);
+					}
+					EventListenerList.invoke(l[i], event);
+				}
+			}
+		}
+		finally
+		{
+			firing--;
+		}
+	}
+
+	/**
+	 * Creates an new event.
+	 *
+	 * @param eventType
+	 *             the event type.
+	 * @param attachment
+	 *             the attachment information.
+	 * @return
+	 *             the created event.
+	 */
+	protected <T extends DefaultEvent> DefaultEvent createEvent(
+			EventType<T> eventType, Map<String, Object> attachment)
+	{
+		return new DefaultEvent(this, eventType, attachment);
+	}
+
+	/**
+	 * Creates an new error event.
+	 *
+	 * @param type
+	 *            the event type.
+	 * @param opType
+	 *            the operation type ocurrs
+	 * @param attachment
+	 *            the attachment information
+	 * @param cause
+	 *            the exception stored in the event.
+	 * @return
+	 *            the error event.
+	 */
+	protected DefaultErrorEvent createErrorEvent(
+			EventType<? extends DefaultErrorEvent> type, EventType<?> opType,
+			Map<String, Object> attachment, Throwable cause)
+	{
+		return new DefaultErrorEvent(this, type, opType, attachment, cause);
+	}
+
+	/**
+	 * Delivers an event to the matching listeners. The event is only created
+	 * if there is a listener.
+	 */
+	private <T extends DefaultEvent> void deliver(EventType<T> type,
+			Map<String, Object> attachment)
+	{
+		Event event = null;
+		EventType<?>[] t = types;
+		EventListener<?>[] l = listeners;
+		int n = size;
+		firing++;
+		try
+		{
+			for (int i = 0; i < n; i++)
+			{
+				if (EventType.isInstanceOf(type, t[i]))
+				{
+					if (event == null)
+					{
+						event = createEvent(type, attachment);
+					}
+					EventListenerList.invoke(l[i], event);
+				}
+			}
+		}
+		finally
+		{
+			firing--;
+		}
+	}
+
+	/**
+	 * Binds the source to the current thread on first use and checks that
+	 * it is still the current thread. Only called in assertions.
+	 */
+	private boolean checkOwner()
+	{
+		Thread current = Thread.currentThread();
+		if (owner == null)
+		{
+			owner = current;
+		}
+		return owner == current;
+	}
+
+	private String ownerMessage()
+	{
+		return "Event source is confined to thread " + owner.getName()
+				+ ", but used by " + Thread.currentThread().getName() + "!";
+	}
+}
@@ -0,0 +1,47 @@
+package com.sunchao.event;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Marks a method of a subscriber object as an event listener.
+ * </p>
+ * <p>
+ * The method must be public, return {@code void} and take a single
+ * parameter, the event. The event type is named by the public static
+ * {@link EventType} field given as {@link #value()}, which is looked up in
+ * {@link #declaringClass()}, or in the parameter type of the method if no
+ * declaring class is given. For instance:
+ * </p>
+ * <pre>
+ * &#64;Subscribe("EMPTY")
+ * public void onEmpty(DefaultEvent event)
+ * </pre>
+ * <p>
+ * The event type is resolved once when the subscriber is registered by
+ * {@link EventSubscribers}.
+ * </p>
+ *
+ * @author sunchao
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+
+	/**
+	 * Returns the name of the static field holding the event type.
+	 */
+	String value();
+
+	/**
+	 * Returns the class declaring the event type field; {@code void.class}
+	 * stands for the parameter type of the method.
+	 */
+	Class<?> declaringClass() default void.class;
+}